@@ -0,0 +1,52 @@
+import checker.Checker;
+import generator.Generator;
+import generator.GeneratorOptions;
+import nodes.Program;
+import tokens.TokenFactory;
+
+import java.util.Arrays;
+
+// Times the passes that dispatch on the kind of every node, the Checker and the Generator, over one large syntax tree.
+// The tree is parsed once and checked and generated again on every iteration, so the times are dominated by walking
+// the tree rather than by reading the file. Build it with ant bench, which writes dist/Benchmark.jar, and run it with
+// java -jar Benchmark.jar <inputfile> [iterations].
+public class DispatchBenchmark {
+    private static final int WARMUP = 10;
+
+    public static void main(String argv[]) throws java.lang.Exception {
+        if (argv.length == 0) {
+            System.err.println("Usage : java -jar Benchmark.jar <inputfile> [iterations]");
+            System.exit(1);
+        }
+
+        int iterations = argv.length > 1 ? Integer.parseInt(argv[1]) : 30;
+        TokenFactory tokenFactory = new TokenFactory();
+        Program program = (Program) new Parser(new Lexer(new java.io.FileReader(argv[0]), tokenFactory), tokenFactory).parse().value;
+
+        long[] check = new long[iterations];
+        long[] generate = new long[iterations];
+        int instructions = 0;
+
+        for (int i = -WARMUP; i < iterations; i++) {
+            long start = System.nanoTime();
+            new Checker().check(program);
+            long checked = System.nanoTime();
+            instructions = new Generator(GeneratorOptions.unoptimized()).generate(program).size();
+            long generated = System.nanoTime();
+
+            if (i >= 0) {
+                check[i] = checked - start;
+                generate[i] = generated - checked;
+            }
+        }
+
+        System.out.printf("check    : %s%n", summary(check));
+        System.out.printf("generate : %s (%d instructions)%n", summary(generate), instructions);
+    }
+
+    private static String summary(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return String.format("median %.2f ms, min %.2f ms", sorted[sorted.length / 2] / 1e6, sorted[0] / 1e6);
+    }
+}
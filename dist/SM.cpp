@@ -32,7 +32,8 @@ static struct {
 
 enum {ADD, SUB, MULT, DIV, MOD, AND, OR, NEG, NOT, EQ, NE, LT, GT, LE, GE, IN, OUT, NOP,
 	LDC, LDA, LDV, LDI, ST, STI, JMP, JMPF, JMPT, INIT, HALT, ALLOC, CALL, PROC, RET,
-	ENTER, EXIT, DUP, POP, STL, IND, INCH, OUTCH, OUTSTR};
+	ENTER, EXIT, DUP, POP, STL, IND, INCH, OUTCH, OUTSTR,
+	JLT, JLE, JGT, JGE, JEQ, JNE};
 
 void insert(char *opcode, int instr, int arity) {
 	table[tablesize].opcode=opcode;
@@ -98,6 +99,12 @@ int main(int argc, char * argv[ ]) {
 	insert("INCH",INCH,0);
 	insert("OUTCH",OUTCH,0);
 	insert("OUTSTR",OUTSTR,1);
+	insert("JLT",JLT,1);
+	insert("JLE",JLE,1);
+	insert("JGT",JGT,1);
+	insert("JGE",JGE,1);
+	insert("JEQ",JEQ,1);
+	insert("JNE",JNE,1);
 
 	char file[20], str[10];
 	int temp;
@@ -325,6 +332,30 @@ int main(int argc, char * argv[ ]) {
 			for (int k=0; k<a1; k++) cout.put((char)(m[sp--]));
 			cout<<endl;
 			break;
+		case JLT:
+			if (m[sp-1]<m[sp]) pc=a1;
+			sp-=2;
+			break;
+		case JLE:
+			if (m[sp-1]<=m[sp]) pc=a1;
+			sp-=2;
+			break;
+		case JGT:
+			if (m[sp-1]>m[sp]) pc=a1;
+			sp-=2;
+			break;
+		case JGE:
+			if (m[sp-1]>=m[sp]) pc=a1;
+			sp-=2;
+			break;
+		case JEQ:
+			if (m[sp-1]==m[sp]) pc=a1;
+			sp-=2;
+			break;
+		case JNE:
+			if (m[sp-1]!=m[sp]) pc=a1;
+			sp-=2;
+			break;
 		}
 	}
 }
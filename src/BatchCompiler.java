@@ -0,0 +1,142 @@
+import generator.Instruction;
+import vm.ImageFile;
+import vm.Loader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Compiles many programs in one JVM on a fixed number of threads, each of which reuses a Compilation of its own. Every
+// input file.cmm is compiled to file.sm next to it, or to file.smb with -binary. A directory stands for the .cmm files
+// in it. The errors of every file are reported once all of them have been compiled, in the order they were given.
+public class BatchCompiler {
+    private final int threads;
+    private final boolean binary;
+    private final ThreadLocal<Compilation> compilations;
+
+    public BatchCompiler(int threads, boolean optimize, boolean ir, boolean binary) {
+        this.threads = threads;
+        this.binary = binary;
+        this.compilations = ThreadLocal.withInitial(() -> {
+            Compilation compilation = new Compilation(optimize, ir, null);
+            compilation.collectErrors();
+            return compilation;
+        });
+    }
+
+    // Returns how many files failed to compile
+    public int compile(List<String> inputs, PrintStream report) throws InterruptedException {
+        List<File> files = expand(inputs);
+        List<Future<Result>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.threads, files.size())));
+
+        try {
+            for (File file : files) {
+                results.add(executor.submit(() -> compileFile(file)));
+            }
+
+            int failed = 0;
+
+            for (int i = 0; i < files.size(); i++) {
+                Result result = join(results.get(i));
+
+                if (!result.compiled) {
+                    failed++;
+                }
+
+                if (!result.compiled || !result.errors.isEmpty()) {
+                    report.println(files.get(i) + " : " + (result.compiled ? "compiled with errors" : "failed"));
+                    result.errors.forEach(error -> report.println("    " + error));
+                }
+            }
+
+            report.printf("%d files, %d compiled, %d failed%n", files.size(), files.size() - failed, failed);
+            return failed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private List<File> expand(List<String> inputs) {
+        List<File> files = new ArrayList<>();
+
+        for (String input : inputs) {
+            File file = new File(input);
+            File[] sources = file.listFiles((directory, name) -> name.endsWith(".cmm"));
+
+            if (sources == null) {
+                files.add(file);
+            } else {
+                Arrays.sort(sources);
+                files.addAll(Arrays.asList(sources));
+            }
+        }
+
+        return files;
+    }
+
+    private Result compileFile(File file) {
+        Compilation compilation = this.compilations.get();
+        Result result = new Result();
+
+        try (Reader in = new FileReader(file)) {
+            write(compilation.compile(in), output(file));
+            result.compiled = true;
+            result.errors.addAll(compilation.getErrors());
+        } catch (FileNotFoundException e) {
+            result.errors.add("File not found");
+        } catch (Exception e) {
+            // What the Lexer and the Parser reported explains a failed parse better than the exception ending it
+            result.errors.addAll(compilation.getErrors());
+
+            if (result.errors.isEmpty()) {
+                result.errors.add(e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+        }
+
+        return result;
+    }
+
+    private String output(File file) {
+        String path = file.getPath();
+        String base = path.endsWith(".cmm") ? path.substring(0, path.length() - ".cmm".length()) : path;
+        return base + (this.binary ? ".smb" : ".sm");
+    }
+
+    private void write(List<Instruction> instructions, String path) throws Exception {
+        if (this.binary) {
+            ImageFile.write(new Loader().load(instructions), path);
+            return;
+        }
+
+        try (PrintWriter out = new PrintWriter(path)) {
+            instructions.forEach(out::println);
+        }
+    }
+
+    // Errors, such as running out of stack on a deeply nested program, fail only the file they were thrown for
+    private static Result join(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Result result = new Result();
+            result.errors.add(e.getCause().toString());
+            return result;
+        }
+    }
+
+    private static class Result {
+        boolean compiled;
+        final List<String> errors = new ArrayList<>();
+    }
+}
@@ -0,0 +1,97 @@
+import checker.Checker;
+import generator.Generator;
+import generator.GeneratorOptions;
+import generator.Instruction;
+import generator.PeepholeOptimizer;
+import ir.IrBuilder;
+import ir.IrOptimizer;
+import ir.IrProgram;
+import ir.Lowering;
+import nodes.Program;
+import optimizer.Optimizer;
+import tokens.TokenFactory;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// The passes compiling a program, from the Lexer to the PeepholeOptimizer, made once and reset for every program they
+// compile. None of them may be used by two threads at once, so compiling on many threads takes a Compilation each.
+public class Compilation {
+    private final boolean optimize;
+    private final boolean ir;
+    private final ForkJoinPool pool;
+
+    private final Lexer lexer;
+    private final Parser parser;
+    private final Checker checker;
+    private final Optimizer optimizer;
+    private final Generator generator;
+    private final PeepholeOptimizer peepholeOptimizer;
+    private final IrBuilder irBuilder;
+    private final IrOptimizer irOptimizer;
+    private final Lowering lowering;
+
+    // What the Lexer and the Parser reported for the last program, when errors are collected instead of printed
+    private List<String> errors;
+
+    public Compilation(boolean optimize, boolean ir, ForkJoinPool pool) {
+        TokenFactory tokenFactory = new TokenFactory();
+
+        this.optimize = optimize;
+        this.ir = ir;
+        this.pool = pool;
+        this.lexer = new Lexer(new StringReader(""), tokenFactory);
+        this.parser = new Parser(this.lexer, tokenFactory);
+        this.checker = new Checker();
+        this.optimizer = new Optimizer();
+        this.generator = new Generator(optimize ? new GeneratorOptions() : GeneratorOptions.unoptimized());
+        this.peepholeOptimizer = new PeepholeOptimizer();
+        this.irBuilder = new IrBuilder();
+        this.irOptimizer = new IrOptimizer();
+        this.lowering = new Lowering();
+    }
+
+    public void collectErrors() {
+        this.errors = new ArrayList<>();
+        this.lexer.errors = this.errors;
+        this.parser.errors = this.errors;
+    }
+
+    public List<String> getErrors() {
+        return this.errors;
+    }
+
+    public List<Instruction> compile(Reader in) throws java.lang.Exception {
+        if (this.errors != null) {
+            this.errors.clear();
+        }
+
+        this.lexer.yyreset(in);
+        Program program = (Program) this.parser.parse().value;
+        this.checker.check(program, this.pool);
+
+        if (this.optimize) {
+            this.optimizer.optimize(program);
+        }
+
+        List<Instruction> instructions;
+
+        // -O2 goes through the control flow graphs of the ir package instead of generating code from the tree
+        if (this.ir) {
+            IrProgram irProgram = this.irBuilder.build(program);
+            this.irOptimizer.optimize(irProgram);
+            instructions = this.lowering.lower(irProgram);
+        } else {
+            instructions = this.generator.generate(program, this.pool);
+        }
+
+        if (this.optimize) {
+            instructions = this.peepholeOptimizer.optimize(instructions);
+        }
+
+        return instructions;
+    }
+}
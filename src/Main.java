@@ -1,44 +1,173 @@
-import checker.Checker;
-import generator.Generator;
 import generator.Instruction;
-import java_cup.runtime.ComplexSymbolFactory;
-import nodes.Program;
+import vm.Image;
+import vm.ImageFile;
+import vm.Dispatch;
+import vm.Loader;
+import vm.Profiler;
+import vm.VMException;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final String USAGE = "Usage : java -jar Compiler.jar [-O0|-O1|-O2] [-run] [-binary] [-jit] [-dispatch=switch|handlers|closures|registers] [-time] [-profile] [-parallel] [-batch] [-threads=n] <inputfile>...";
 
     public static void main(String argv[]) throws java.io.IOException, java.lang.Exception {
-        Lexer scanner = null;
-        ComplexSymbolFactory csf = new ComplexSymbolFactory();
+        java.io.Reader reader = null;
+        String inputFile = null;
+        List<String> inputFiles = new ArrayList<>();
+        boolean optimize = true;
+        boolean ir = false;
+        boolean run = false;
+        boolean binary = false;
+        boolean jit = false;
+        Dispatch dispatch = Dispatch.SWITCH;
+        boolean time = false;
+        boolean profile = false;
+        ForkJoinPool pool = null;
+        boolean batch = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (String arg : argv) {
+            if (arg.equals("-O0")) {
+                optimize = false;
+                ir = false;
+            } else if (arg.equals("-O1")) {
+                optimize = true;
+                ir = false;
+            } else if (arg.equals("-O2")) {
+                optimize = true;
+                ir = true;
+            } else if (arg.equals("-run")) {
+                run = true;
+            } else if (arg.equals("-binary")) {
+                binary = true;
+            } else if (arg.equals("-jit")) {
+                jit = true;
+            } else if (arg.startsWith("-dispatch=")) {
+                dispatch = Dispatch.of(arg.substring("-dispatch=".length()));
+
+                if (dispatch == null) {
+                    System.err.println(USAGE);
+                    System.exit(1);
+                }
+            } else if (arg.equals("-time")) {
+                time = true;
+            } else if (arg.equals("-profile")) {
+                profile = true;
+            } else if (arg.equals("-parallel")) {
+                pool = ForkJoinPool.commonPool();
+            } else if (arg.equals("-batch")) {
+                batch = true;
+            } else if (arg.startsWith("-threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("-threads=".length()));
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+
+                if (threads < 1) {
+                    System.err.println(USAGE);
+                    System.exit(1);
+                }
+            } else {
+                inputFile = arg;
+                inputFiles.add(arg);
+            }
+        }
+
+        // -batch compiles every input, or every .cmm file in an input directory, to a file of its own next to it
+        if (batch) {
+            if (inputFiles.isEmpty() || run || profile) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+
+            int failed = new BatchCompiler(threads, optimize, ir, binary).compile(inputFiles, System.err);
+            System.exit(failed == 0 ? 0 : 1);
+        }
+
+        // A binary written with -binary is already compiled
+        if (inputFile != null && inputFile.endsWith(".smb")) {
+            try {
+                run(ImageFile.read(inputFile), dispatch, jit, time, profile);
+            } catch (VMException e) {
+                System.err.println("Runtime error : " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
         try {
-            scanner = new Lexer(new java.io.FileReader(argv[0]), csf);
+            reader = new java.io.FileReader(inputFile);
         } catch (java.io.FileNotFoundException e) {
-            System.err.println("File not found : \"" + argv[0] + "\"");
+            System.err.println("File not found : \"" + inputFile + "\"");
             System.exit(1);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.err.println("Usage : java -jar Compiler.jar <inputfile>");
+        } catch (NullPointerException e) {
+            System.err.println(USAGE);
             System.exit(1);
         }
 
         try {
-            Parser p = new Parser(scanner, csf);
-            Program result = (Program) p.parse().value;
-            new Checker().check(result);
-            List<Instruction> instructions = new Generator().generate(result);
+            List<Instruction> instructions = new Compilation(optimize, ir, pool).compile(reader);
 
 //            instructions.forEach(System.out::println);
 
+            if (run) {
+                run(new Loader().load(instructions), dispatch, jit, time, profile);
+                return;
+            }
+
+            if (binary) {
+                ImageFile.write(new Loader().load(instructions), "output.smb");
+                return;
+            }
+
             try (PrintWriter out = new PrintWriter("output.sm")) {
                 instructions.forEach(out::println);
             }
+        } catch (VMException e) {
+            System.err.println("Runtime error : " + e.getMessage());
+            System.exit(1);
         } catch (java.io.IOException e) {
             System.err.println("An I/O error occured while parsing : \n" + e);
             System.exit(1);
         }
     }
+
+    // With -time, how long the program ran for is printed to stderr, so it can be compared between dispatch cores.
+    // With -profile, the program is run by the Profiler instead, which writes where it spent its time to profile.json.
+    // Both together time the Profiler's run, without writing the report.
+    private static void run(Image image, Dispatch dispatch, boolean jit, boolean time, boolean profile) throws VMException, java.io.IOException {
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+        long start = System.nanoTime();
+
+        if (profile) {
+            Profiler profiler = new Profiler(new BufferedInputStream(System.in), out);
+            profiler.run(image);
+
+            if (time) {
+                System.err.printf("profile : %d ms%n", (System.nanoTime() - start) / 1000000);
+            }
+
+            try (PrintWriter report = new PrintWriter("profile.json")) {
+                profiler.write(report);
+            }
+
+            return;
+        }
+
+        dispatch.create(new BufferedInputStream(System.in), out, jit).run(image);
+
+        if (time) {
+            System.err.printf("%s : %d ms%n", dispatch.name().toLowerCase(), (System.nanoTime() - start) / 1000000);
+        }
+    }
 }
 
 
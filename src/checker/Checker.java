@@ -10,10 +10,21 @@ import symbols.Symbol;
 import symbols.SymbolTable;
 import types.*;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 public class Checker {
+    private StatementChecker statementChecker;
+    private ExpressionChecker expressionChecker;
 
     public SymbolTable check(Program program) throws CheckerException {
         CheckerContext context = new CheckerContext();
+        this.statementChecker = new StatementChecker(context);
+        this.expressionChecker = new ExpressionChecker(context);
 
         program.symbolTable = context.symbolTable;
 
@@ -21,11 +32,69 @@ public class Checker {
             checkDeclaration(context, declaration);
         }
 
-        if (!context.symbolTable.hasVariable("main")) {
-            throw new CheckerException("Program must contain a main function");
+        checkMain(program, context.symbolTable);
+        return context.symbolTable;
+    }
+
+    // With a pool, every declaration is made in order first, and the body of every function then checked on the pool
+    // by a Checker of its own. A body only sees the globals declared before it, and the error reported is the first one
+    // checking in order would report, so the outcome is the same either way.
+    public SymbolTable check(Program program, ForkJoinPool pool) throws CheckerException {
+        if (pool == null) {
+            return check(program);
+        }
+
+        CheckerContext context = new CheckerContext();
+        Map<Symbol, Integer> positions = new IdentityHashMap<>();
+        List<FunctionDeclaration> functionDeclarations = new ArrayList<>();
+        List<ForkJoinTask<Exception>> bodies = new ArrayList<>();
+        Exception declarationError = null;
+
+        program.symbolTable = context.symbolTable;
+
+        for (int i = 0; i < program.declarations.size() && declarationError == null; i++) {
+            Declaration declaration = program.declarations.get(i);
+
+            try {
+                if (declaration instanceof VariableDeclaration) {
+                    for (Variable variable : ((VariableDeclaration) declaration).variables) {
+                        checkVariable(context, (VariableDeclaration) declaration, variable);
+                        positions.put(variable.symbol, i);
+                    }
+                } else {
+                    FunctionDeclaration functionDeclaration = (FunctionDeclaration) declaration;
+                    declareFunctionDeclaration(context, functionDeclaration);
+                    positions.put(functionDeclaration.symbol, i);
+
+                    functionDeclarations.add(functionDeclaration);
+                }
+            } catch (CheckerException | RuntimeException e) {
+                declarationError = e;
+            }
+        }
+
+        // The tables are only read from here on
+        for (FunctionDeclaration functionDeclaration : functionDeclarations) {
+            CheckerContext bodyContext = new CheckerContext(functionDeclaration.symbolTable, positions, positions.get(functionDeclaration.symbol));
+            bodies.add(pool.submit(() -> new Checker().checkBody(bodyContext, functionDeclaration)));
         }
 
-        Symbol symbol = context.symbolTable.getVariable("main");
+        for (ForkJoinTask<Exception> body : bodies) {
+            rethrow(body.join());
+        }
+
+        rethrow(declarationError);
+
+        checkMain(program, context.symbolTable);
+        return context.symbolTable;
+    }
+
+    private void checkMain(Program program, SymbolTable symbolTable) throws CheckerException {
+        Symbol symbol = symbolTable.lookup("main");
+
+        if (symbol == null) {
+            throw new CheckerException("Program must contain a main function");
+        }
 
         if (symbol.getTypeKind() != TypeKind.Function) {
             throw new CheckerException("main must be a function");
@@ -37,7 +106,29 @@ public class Checker {
             throw new CheckerException("main must be have 0 fields");
         }
 
-        return context.symbolTable;
+        program.main = symbol;
+    }
+
+    // Runs on the pool. What checking the body throws is returned instead, so it reaches the caller as it was thrown.
+    private Exception checkBody(CheckerContext context, FunctionDeclaration functionDeclaration) {
+        this.statementChecker = new StatementChecker(context);
+        this.expressionChecker = new ExpressionChecker(context);
+
+        try {
+            checkBlockStatement(context, functionDeclaration.blockStatement, false);
+        } catch (CheckerException | RuntimeException e) {
+            return e;
+        }
+
+        return null;
+    }
+
+    private static void rethrow(Exception exception) throws CheckerException {
+        if (exception instanceof CheckerException) {
+            throw (CheckerException) exception;
+        } else if (exception != null) {
+            throw (RuntimeException) exception;
+        }
     }
 
     private void checkDeclaration(CheckerContext context, Declaration declaration) throws CheckerException {
@@ -50,26 +141,38 @@ public class Checker {
 
     private void checkVariableDeclaration(CheckerContext context, VariableDeclaration variableDeclaration) throws CheckerException {
         for (Variable variable : variableDeclaration.variables) {
-            if (variable.number != null) {
-                int size = variable.number;
+            checkVariable(context, variableDeclaration, variable);
+        }
+    }
 
-                ArrayType arrayType;
+    private void checkVariable(CheckerContext context, VariableDeclaration variableDeclaration, Variable variable) {
+        if (variable.number != null) {
+            int size = variable.number;
 
-                if (variableDeclaration.typeKind == TypeKind.Integer) {
-                    arrayType = new ArrayType(new LiteralType(TypeKind.Integer), size);
-                } else {
-                    arrayType = new ArrayType(new LiteralType(TypeKind.Boolean), size);
-                }
+            ArrayType arrayType;
 
-                Symbol symbol = new Symbol(arrayType);
-                context.symbolTable.addVariable(variable.name, symbol);
+            if (variableDeclaration.typeKind == TypeKind.Integer) {
+                arrayType = new ArrayType(new LiteralType(TypeKind.Integer), size);
             } else {
-                context.symbolTable.addVariable(variable.name, new Symbol(new LiteralType(variableDeclaration.typeKind)));
+                arrayType = new ArrayType(new LiteralType(TypeKind.Boolean), size);
             }
+
+            variable.symbol = new Symbol(arrayType);
+        } else {
+            variable.symbol = new Symbol(new LiteralType(variableDeclaration.typeKind));
         }
+
+        context.symbolTable.addVariable(variable.name, variable.symbol);
     }
 
     private void checkFunctionDeclaration(CheckerContext context, FunctionDeclaration functionDeclaration) throws CheckerException {
+        declareFunctionDeclaration(context, functionDeclaration);
+        context.symbolTable = functionDeclaration.symbolTable;
+        checkBlockStatement(context, functionDeclaration.blockStatement, false);
+    }
+
+    // Adds the function to the enclosing table, and its parameters to the table its body is checked in
+    private void declareFunctionDeclaration(CheckerContext context, FunctionDeclaration functionDeclaration) throws CheckerException {
         FunctionType functionType = new FunctionType();
 
         SymbolTable newSymbolTable = new SymbolTable();
@@ -89,15 +192,14 @@ public class Checker {
                 type = new LiteralType(parameter.typeKind);
             }
 
-            newSymbolTable.addVariable(parameter.name, new Symbol(type, parameter.isAddr));
+            parameter.symbol = new Symbol(type, parameter.isAddr);
+            newSymbolTable.addVariable(parameter.name, parameter.symbol);
             functionType.fields.add(new FieldType(parameter.name, type, parameter.isAddr));
         }
 
-        context.symbolTable.addVariable(functionDeclaration.name, new Symbol(functionType, false));
-        context.symbolTable = newSymbolTable;
-        functionDeclaration.symbolTable = context.symbolTable;
-
-        checkBlockStatement(context, functionDeclaration.blockStatement, false);
+        functionDeclaration.symbol = new Symbol(functionType, false);
+        context.symbolTable.addVariable(functionDeclaration.name, functionDeclaration.symbol);
+        functionDeclaration.symbolTable = newSymbolTable;
     }
 
     private void checkBlockStatement(CheckerContext context, BlockStatement blockStatement, boolean createNewTable) throws CheckerException {
@@ -123,25 +225,7 @@ public class Checker {
     }
 
     private void checkStatement(CheckerContext context, Statement statement) throws CheckerException {
-        if (statement instanceof BlockStatement) {
-            checkBlockStatement(context, (BlockStatement) statement, true);
-        } else if (statement instanceof IfStatement) {
-            checkIfStatement(context, (IfStatement) statement);
-        } else if (statement instanceof WhileStatement) {
-            checkWhileStatement(context, (WhileStatement) statement);
-        } else if (statement instanceof DoStatement) {
-            checkDoStatement(context, (DoStatement) statement);
-        } else if (statement instanceof FunctionCallStatement) {
-            checkFunctionCallStatement(context, (FunctionCallStatement) statement);
-        } else if (statement instanceof BreakStatement) {
-            checkBreakStatement(context, (BreakStatement) statement);
-        } else if (statement instanceof ContinueStatement) {
-            checkContinueStatement(context, (ContinueStatement) statement);
-        } else if (statement instanceof ForStatement) {
-            checkForStatement(context, (ForStatement) statement);
-        } else {
-            checkAssignmentStatement(context, (AssignmentStatement) statement);
-        }
+        statement.accept(this.statementChecker);
     }
 
     private void checkForStatement(CheckerContext context, ForStatement statement) throws CheckerException {
@@ -184,16 +268,18 @@ public class Checker {
     }
 
     private void checkFunctionCallStatement(CheckerContext context, FunctionCallStatement functionCallStatement) throws CheckerException {
-        if (!context.symbolTable.hasVariable(functionCallStatement.name)) {
+        Symbol symbol = context.resolve(functionCallStatement.name);
+
+        if (symbol == null) {
             throw new CheckerException("Variable, " + functionCallStatement.name + " does not exist in this scope");
         }
 
-        Symbol symbol = context.symbolTable.getVariable(functionCallStatement.name);
-
         if (symbol.getTypeKind() != TypeKind.Function) {
             throw new CheckerException("Cannot use variable, " + functionCallStatement.name + " with type " + symbol.getType() + " as a function");
         }
 
+        functionCallStatement.symbol = symbol;
+
         FunctionType functionPrimary = (FunctionType) symbol.getType();
 
         if (functionPrimary.fields.size() != functionCallStatement.arguments.size()) {
@@ -264,25 +350,17 @@ public class Checker {
     }
 
     private Type checkExpression(CheckerContext context, Expression expression) throws CheckerException {
-        if (expression instanceof UnaryExpression) {
-            return checkUnaryExpression(context, (UnaryExpression) expression);
-        } else if (expression instanceof BinaryExpression) {
-            return checkBinaryExpression(context, (BinaryExpression) expression);
-        } else if (expression instanceof LocationExpression) {
-            return checkLocationExpression(context, (LocationExpression) expression);
-        } else if (expression instanceof IntegerExpression) {
-            return new LiteralType(TypeKind.Integer);
-        } else {
-            return new LiteralType(TypeKind.Boolean);
-        }
+        return expression.accept(this.expressionChecker);
     }
 
     private Type checkLocationExpression(CheckerContext context, LocationExpression locationExpression) throws CheckerException {
-        if (!context.symbolTable.hasVariable(locationExpression.name)) {
+        Symbol symbol = context.resolve(locationExpression.name);
+
+        if (symbol == null) {
             throw new CheckerException("Variable, " + locationExpression.name + " does not exist in this scope");
         }
 
-        Symbol symbol = context.symbolTable.getVariable(locationExpression.name);
+        locationExpression.symbol = symbol;
 
         // Not an arrayType
         if (locationExpression.expression == null) {
@@ -368,4 +446,101 @@ public class Checker {
 
         throw new CheckerException("Could not recognize operator " + unaryExpression.operator);
     }
+
+    // Calls the check method for the kind of statement visited
+    private class StatementChecker implements StatementVisitor<Void, CheckerException> {
+        private final CheckerContext context;
+
+        StatementChecker(CheckerContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Void visitBlockStatement(BlockStatement statement) throws CheckerException {
+            checkBlockStatement(this.context, statement, true);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStatement(IfStatement statement) throws CheckerException {
+            checkIfStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStatement(WhileStatement statement) throws CheckerException {
+            checkWhileStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitDoStatement(DoStatement statement) throws CheckerException {
+            checkDoStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitForStatement(ForStatement statement) throws CheckerException {
+            checkForStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCallStatement(FunctionCallStatement statement) throws CheckerException {
+            checkFunctionCallStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignmentStatement(AssignmentStatement statement) throws CheckerException {
+            checkAssignmentStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitBreakStatement(BreakStatement statement) throws CheckerException {
+            checkBreakStatement(this.context, statement);
+            return null;
+        }
+
+        @Override
+        public Void visitContinueStatement(ContinueStatement statement) throws CheckerException {
+            checkContinueStatement(this.context, statement);
+            return null;
+        }
+    }
+
+    // Calls the check method for the kind of expression visited, returning the type of the expression
+    private class ExpressionChecker implements ExpressionVisitor<Type, CheckerException> {
+        private final CheckerContext context;
+
+        ExpressionChecker(CheckerContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Type visitUnaryExpression(UnaryExpression expression) throws CheckerException {
+            return checkUnaryExpression(this.context, expression);
+        }
+
+        @Override
+        public Type visitBinaryExpression(BinaryExpression expression) throws CheckerException {
+            return checkBinaryExpression(this.context, expression);
+        }
+
+        @Override
+        public Type visitLocationExpression(LocationExpression expression) throws CheckerException {
+            return checkLocationExpression(this.context, expression);
+        }
+
+        @Override
+        public Type visitIntegerExpression(IntegerExpression expression) {
+            return new LiteralType(TypeKind.Integer);
+        }
+
+        @Override
+        public Type visitBooleanExpression(BooleanExpression expression) {
+            return new LiteralType(TypeKind.Boolean);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package checker;
 
 import nodes.statements.LoopStatement;
+import symbols.Builtin;
 import symbols.Symbol;
 import symbols.SymbolTable;
 import types.FieldType;
@@ -8,23 +9,52 @@ import types.FunctionType;
 import types.LiteralType;
 import types.TypeKind;
 
+import java.util.Map;
 import java.util.Stack;
 
 public class CheckerContext {
     SymbolTable symbolTable;
     Stack<LoopStatement> loopStatementStack;
 
+    // When the body of a function is checked after every global has been declared, the position of the declaration of
+    // each global and of the function, so the body only sees the globals declared before it
+    private Map<Symbol, Integer> positions;
+    private int position;
+
     public CheckerContext() throws CheckerException {
         this.loopStatementStack = new Stack<>();
         initializeSymbolTable();
     }
 
+    public CheckerContext(SymbolTable symbolTable, Map<Symbol, Integer> positions, int position) {
+        this.loopStatementStack = new Stack<>();
+        this.symbolTable = symbolTable;
+        this.positions = positions;
+        this.position = position;
+    }
+
+    // The symbol a name resolves to, or null when it is not declared yet
+    Symbol resolve(String name) {
+        Symbol symbol = this.symbolTable.lookup(name);
+
+        if (symbol != null && this.positions != null) {
+            Integer declared = this.positions.get(symbol);
+
+            if (declared != null && declared > this.position) {
+                return null;
+            }
+        }
+
+        return symbol;
+    }
+
     private void initializeSymbolTable() throws CheckerException {
         symbolTable = new SymbolTable();
         FunctionType scanFunction = new FunctionType();
         FieldType scanFunctionParameter = new FieldType("value", new LiteralType(TypeKind.Integer), true);
         scanFunction.fields.add(scanFunctionParameter);
         Symbol scanSymbol = new Symbol(scanFunction);
+        scanSymbol.builtin = Builtin.SCAN;
 
         symbolTable.addVariable("scan", scanSymbol);
 
@@ -33,6 +63,7 @@ public class CheckerContext {
         printFunction.fields.add(printFunctionParameter);
 
         Symbol printSymbol = new Symbol(printFunction);
+        printSymbol.builtin = Builtin.PRINT;
 
         symbolTable.addVariable("print", printSymbol);
     }
@@ -0,0 +1,190 @@
+package generator;
+
+import symbols.Label;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Instructions in the order they are emitted, with the target of every jump and call resolved to the index of the
+// instruction it labels. A jump to a label that is not emitted yet is patched as soon as the label is.
+public class CodeBuffer {
+    private final List<Instruction> instructions;
+    private final List<Label> labels;
+
+    // Labels named by this buffer, in the order they were named
+    private final List<Label> named;
+
+    // Index of the instruction each jump or call targets, or -1
+    private int[] targets;
+
+    // Instructions waiting for their target to be emitted
+    private final Map<Label, List<Integer>> unresolved;
+
+    private int labelValue;
+
+    public CodeBuffer() {
+        this.instructions = new ArrayList<>();
+        this.labels = new ArrayList<>();
+        this.named = new ArrayList<>();
+        this.targets = new int[64];
+        this.unresolved = new IdentityHashMap<>();
+        this.labelValue = 1;
+    }
+
+    // Emits instructions again, such as those rearranged by the PeepholeOptimizer, so their targets are resolved anew
+    public static CodeBuffer of(List<Instruction> instructions) throws GeneratorException {
+        for (Instruction instruction : instructions) {
+            if (instruction.getLabel() != null) {
+                instruction.getLabel().index = -1;
+            }
+        }
+
+        CodeBuffer codeBuffer = new CodeBuffer();
+
+        for (Instruction instruction : instructions) {
+            codeBuffer.emit(instruction);
+        }
+
+        codeBuffer.checkResolved();
+        return codeBuffer;
+    }
+
+    public Label newLabel() {
+        Label label = new Label();
+        name(label);
+        return label;
+    }
+
+    // Names a label created before this buffer reached it, such as the entry of a procedure that others call, as the
+    // next label of this buffer
+    public void name(Label label) {
+        label.setName("L" + this.labelValue++);
+        this.named.add(label);
+    }
+
+    // Emits the instructions of a buffer filled separately, such as one procedure generated in parallel with others,
+    // renaming its labels as if they had been named by this buffer. Calls to labels of neither buffer stay unresolved
+    // until the buffer binding them is appended too.
+    public void append(CodeBuffer other) throws GeneratorException {
+        for (Label label : other.named) {
+            name(label);
+        }
+
+        for (Label label : other.labels) {
+            label.index = -1;
+        }
+
+        for (Instruction instruction : other.instructions) {
+            emit(instruction);
+        }
+    }
+
+    public void emit(Instruction instruction) throws GeneratorException {
+        int index = this.instructions.size();
+        this.instructions.add(instruction);
+
+        if (index == this.targets.length) {
+            this.targets = Arrays.copyOf(this.targets, this.targets.length * 2);
+        }
+
+        this.targets[index] = -1;
+
+        if (instruction.getLabel() != null) {
+            bind(instruction.getLabel(), index);
+        }
+
+        Label target = instruction.getTarget();
+
+        if (target != null && isBoundHere(target)) {
+            this.targets[index] = target.index;
+        } else if (target != null) {
+            this.unresolved.computeIfAbsent(target, l -> new ArrayList<>()).add(index);
+        }
+    }
+
+    // A label may be bound in another buffer, filled at the same time on another thread, so the index it holds is only
+    // trusted when the instruction there carries it
+    private boolean isBoundHere(Label label) {
+        int index = label.index;
+        return index >= 0 && index < this.instructions.size() && this.instructions.get(index).getLabel() == label;
+    }
+
+    private void bind(Label label, int index) throws GeneratorException {
+        if (label.isBound()) {
+            throw new GeneratorException(String.format("Label %s is defined twice", label));
+        }
+
+        label.index = index;
+        this.labels.add(label);
+
+        List<Integer> jumps = this.unresolved.remove(label);
+
+        if (jumps != null) {
+            for (int jump : jumps) {
+                this.targets[jump] = index;
+            }
+        }
+    }
+
+    // Replaces an instruction that neither has a label nor jumps
+    public void set(int index, Instruction instruction) throws GeneratorException {
+        checkPlain(this.instructions.get(index));
+        checkPlain(instruction);
+        this.instructions.set(index, instruction);
+    }
+
+    // Removes an instruction that neither has a label nor jumps, moving every later index down by one
+    public void remove(int index) throws GeneratorException {
+        checkPlain(this.instructions.get(index));
+        this.instructions.remove(index);
+        System.arraycopy(this.targets, index + 1, this.targets, index, this.instructions.size() - index);
+
+        for (int i = 0; i < this.instructions.size(); i++) {
+            if (this.targets[i] > index) {
+                this.targets[i]--;
+            }
+        }
+
+        for (Label label : this.labels) {
+            if (label.index > index) {
+                label.index--;
+            }
+        }
+
+        for (List<Integer> jumps : this.unresolved.values()) {
+            jumps.replaceAll(jump -> jump > index ? jump - 1 : jump);
+        }
+    }
+
+    public void checkResolved() throws GeneratorException {
+        if (!this.unresolved.isEmpty()) {
+            throw new GeneratorException(String.format("Label %s is not defined", this.unresolved.keySet().iterator().next()));
+        }
+    }
+
+    public int size() {
+        return this.instructions.size();
+    }
+
+    public Instruction get(int index) {
+        return this.instructions.get(index);
+    }
+
+    // The index of the instruction that the jump or call at index targets, or -1 for other instructions
+    public int getTarget(int index) {
+        return this.targets[index];
+    }
+
+    public List<Instruction> getInstructions() {
+        return this.instructions;
+    }
+
+    private void checkPlain(Instruction instruction) throws GeneratorException {
+        if (instruction.getLabel() != null || instruction.getTarget() != null) {
+            throw new GeneratorException("Only instructions without labels or targets can be replaced or removed");
+        }
+    }
+}
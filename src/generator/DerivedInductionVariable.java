@@ -0,0 +1,37 @@
+package generator;
+
+import nodes.expressions.Expression;
+import symbols.Location;
+import symbols.Symbol;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// A value that changes by a constant amount on every iteration of a for loop, because it is derived from the loop's
+// induction variable: either the address of array[i + offset] or the product i * factor. The generator keeps it in a
+// frame slot instead of recomputing it at each use. Elements at other offsets of the same array share the slot.
+public class DerivedInductionVariable {
+    public Symbol inductionVariable;
+
+    // The array whose element address is tracked, or null when tracking a product
+    public Symbol array;
+
+    // The offset added to the induction variable, or the factor it is multiplied by
+    public int constant;
+
+    // How much the value changes each time the induction variable is incremented
+    public int increment;
+
+    // The expressions that read the value, with what must be added to it for each of them
+    public Map<Expression, Integer> uses;
+
+    public Location location;
+
+    public DerivedInductionVariable(Symbol inductionVariable, Symbol array, int constant, int increment) {
+        this.inductionVariable = inductionVariable;
+        this.array = array;
+        this.constant = constant;
+        this.increment = increment;
+        this.uses = new IdentityHashMap<>();
+    }
+}
@@ -1,6 +1,5 @@
 package generator;
 
-import checker.CheckerException;
 import nodes.OperatorKind;
 import nodes.Program;
 import nodes.declarations.FunctionDeclaration;
@@ -8,34 +7,66 @@ import nodes.declarations.Variable;
 import nodes.declarations.VariableDeclaration;
 import nodes.expressions.*;
 import nodes.statements.*;
+import symbols.Builtin;
+import symbols.Label;
 import symbols.Location;
 import symbols.Symbol;
-import symbols.SymbolTable;
 import types.ArrayType;
 import types.FieldType;
 import types.FunctionType;
 import types.TypeKind;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 public class Generator {
-    private SymbolTable symbolTable;
-    private int labelValue;
+    private final GeneratorOptions options;
     private int level;
     private int displacement;
+    private int frameSize;
     private Stack<Integer> previousDisplacement;
-    private List<Instruction> instructions;
+    private CodeBuffer code;
 
-    public List<Instruction> generate(Program program) throws GeneratorException, CheckerException {
-        this.instructions = new ArrayList<>();
-        this.previousDisplacement = new Stack<>();
-        this.level = 0;
-        this.labelValue = 1;
-        this.displacement = 1;
-        this.symbolTable = program.symbolTable;
+    // Expressions that read a value kept up to date by an enclosing for loop
+    private Map<Expression, DerivedInductionVariable> reductions;
+
+    // Calls in tail position of the procedure being generated, and where its frame is released before each one
+    private Set<FunctionCallStatement> tailCalls;
+    private List<Integer> frameReleases;
+    private int arity;
+
+    // What generating a procedure on the pool threw
+    private Exception failure;
+
+    private final StatementGenerator statementGenerator = new StatementGenerator();
+    private final ExpressionGenerator expressionGenerator = new ExpressionGenerator();
+
+    public Generator() {
+        this(new GeneratorOptions());
+    }
+
+    public Generator(GeneratorOptions options) {
+        this.options = options;
+    }
+
+    public List<Instruction> generate(Program program) throws GeneratorException {
+        return generate(program, null);
+    }
+
+    // With a pool, every procedure is generated on it by a Generator of its own into a buffer of its own. The buffers
+    // are appended in the order the procedures are declared, which names their labels as generating them in order
+    // does, so the code is the same either way. Entries are labelled up front, so a procedure can call one that is
+    // still being generated.
+    public List<Instruction> generate(Program program, ForkJoinPool pool) throws GeneratorException {
+        start();
 
         emit(new Instruction(OpCode.INIT));
 
@@ -49,7 +80,7 @@ public class Generator {
             size += this.generateVariableDeclaration(variableDeclaration);
         }
 
-        String label = generateLabel();
+        Label label = generateLabel();
 
         if (size != 0) {
             emit(new Instruction(OpCode.ALLOC, size));
@@ -64,11 +95,35 @@ public class Generator {
                 .collect(Collectors.toList());
 
         for (FunctionDeclaration functionDeclaration : functionDeclarations) {
-            this.generateFunctionDeclaration(functionDeclaration);
+            functionDeclaration.symbol.label = new Label();
+        }
+
+        if (pool == null) {
+            for (FunctionDeclaration functionDeclaration : functionDeclarations) {
+                this.generateFunctionDeclaration(functionDeclaration);
+            }
+        } else {
+            List<ForkJoinTask<Generator>> procedures = new ArrayList<>();
+
+            for (FunctionDeclaration functionDeclaration : functionDeclarations) {
+                procedures.add(pool.submit(() -> generateProcedure(functionDeclaration)));
+            }
+
+            for (ForkJoinTask<Generator> procedure : procedures) {
+                Generator generator = procedure.join();
+
+                if (generator.failure instanceof GeneratorException) {
+                    throw (GeneratorException) generator.failure;
+                } else if (generator.failure != null) {
+                    throw (RuntimeException) generator.failure;
+                }
+
+                this.code.append(generator.code);
+            }
         }
 
         emit(new Instruction(label, OpCode.NOP));
-        emit(new Instruction(OpCode.CALL, symbolTable.getVariable("main").label));
+        emit(new Instruction(OpCode.CALL, program.main.label));
 
         if (size != 0) {
             emit(new Instruction(OpCode.ALLOC, -size));
@@ -76,14 +131,40 @@ public class Generator {
 
         emit(new Instruction(OpCode.HALT));
 
-        return this.instructions;
+        this.code.checkResolved();
+        return this.code.getInstructions();
+    }
+
+    private void start() {
+        this.code = new CodeBuffer();
+        this.previousDisplacement = new Stack<>();
+        this.reductions = new IdentityHashMap<>();
+        this.tailCalls = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.frameReleases = new ArrayList<>();
+        this.level = 0;
+        this.displacement = 1;
+    }
+
+    // Runs on the pool, so it shares nothing with the Generator that submitted it but the options. What generating the
+    // procedure throws is kept instead, so it reaches the submitting thread as it was thrown.
+    private Generator generateProcedure(FunctionDeclaration functionDeclaration) {
+        Generator generator = new Generator(this.options);
+        generator.start();
+
+        try {
+            generator.generateFunctionDeclaration(functionDeclaration);
+        } catch (GeneratorException | RuntimeException e) {
+            generator.failure = e;
+        }
+
+        return generator;
     }
 
-    private int generateVariableDeclaration(VariableDeclaration variableDeclaration) throws CheckerException {
+    private int generateVariableDeclaration(VariableDeclaration variableDeclaration) {
         int size = 0;
 
         for (Variable variable : variableDeclaration.variables) {
-            Symbol symbol = symbolTable.getVariable(variable.name);
+            Symbol symbol = variable.symbol;
             int variableSize = 0;
 
             if (symbol.getTypeKind() == TypeKind.Array) {
@@ -96,42 +177,75 @@ public class Generator {
             symbol.location = new Location(this.level, this.displacement);
 
             this.displacement += variableSize;
+            this.frameSize = Math.max(this.frameSize, this.displacement - 1);
             size += variableSize;
         }
 
         return size;
     }
 
-    private void generateFunctionDeclaration(FunctionDeclaration functionDeclaration) throws GeneratorException, CheckerException {
+    private void generateFunctionDeclaration(FunctionDeclaration functionDeclaration) throws GeneratorException {
         this.incrementLevel();
-        this.symbolTable = functionDeclaration.symbolTable;
 
-        Symbol symbol = this.symbolTable.getVariable(functionDeclaration.name);
+        Symbol symbol = functionDeclaration.symbol;
         FunctionType functionType = (FunctionType) symbol.getType();
 
         // functionType.fields.size() - 1 because after arguments is the return address and then the link data
         for (int i = 0; i < functionType.fields.size(); i++) {
-            Symbol argumentSymbol = symbolTable.getVariable(functionType.fields.get(i).getName());
+            Symbol argumentSymbol = functionDeclaration.parameters.get(i).symbol;
             argumentSymbol.location  = new Location(this.level, i - 1 - functionType.fields.size());
         }
 
-        String label = generateLabel();
+        Label label = symbol.label;
 
-        symbol.label = label;
+        this.code.name(label);
         emit(new Instruction(label, OpCode.PROC, this.level));
 
+        // The frame is allocated once, after every block of the procedure has been given its slots
+        int prologue = this.code.size();
+        this.frameSize = 0;
+
+        if (this.hasFrameLayout()) {
+            emit(new Instruction(OpCode.NOP));
+        }
+
+        this.tailCalls.clear();
+        this.frameReleases.clear();
+        this.arity = functionType.fields.size();
+
+        if (this.hasTailCalls()) {
+            findTailCalls(functionDeclaration.blockStatement);
+        }
+
         this.generateBlockStatement(functionDeclaration.blockStatement, false);
 
+        if (this.hasFrameLayout() && this.frameSize != 0) {
+            this.code.set(prologue, new Instruction(OpCode.ALLOC, this.frameSize));
+            emit(new Instruction(OpCode.ALLOC, -this.frameSize));
+
+            for (int frameRelease : this.frameReleases) {
+                this.code.set(frameRelease, new Instruction(OpCode.ALLOC, -this.frameSize));
+            }
+        } else if (this.hasFrameLayout()) {
+            for (int i = this.frameReleases.size() - 1; i >= 0; i--) {
+                this.code.remove(this.frameReleases.get(i));
+            }
+
+            this.code.remove(prologue);
+        }
+
         this.emit(new Instruction(OpCode.RET, this.level));
 
         this.decrementLevel();
-        this.symbolTable = this.symbolTable.parent;
     }
 
-    private void generateBlockStatement(BlockStatement blockStatement, boolean isNewLevel) throws GeneratorException, CheckerException {
-        if (isNewLevel) {
+    private void generateBlockStatement(BlockStatement blockStatement, boolean isNewLevel) throws GeneratorException {
+        // Flattened blocks keep the level of the enclosing procedure and place their locals after its locals
+        boolean isFlattened = isNewLevel && this.options.flattenBlocks;
+        int enclosingDisplacement = this.displacement;
+
+        if (isNewLevel && !isFlattened) {
             this.incrementLevel();
-            this.symbolTable = blockStatement.symbolTable;
             this.emit(new Instruction(null, OpCode.ENTER, this.level));
         }
 
@@ -140,7 +254,7 @@ public class Generator {
             size += generateVariableDeclaration(variableDeclaration);
         }
 
-        if (size != 0) {
+        if (size != 0 && !this.hasFrameLayout()) {
             emit(new Instruction(OpCode.ALLOC, size));
         }
 
@@ -148,57 +262,51 @@ public class Generator {
             this.generateStatement(statement);
         }
 
-        if (size != 0) {
+        if (size != 0 && !this.hasFrameLayout()) {
             emit(new Instruction(OpCode.ALLOC, -size));
         }
 
-        if (isNewLevel) {
+        if (isFlattened) {
+            this.displacement = enclosingDisplacement;
+        } else if (isNewLevel) {
             this.emit(new Instruction(OpCode.EXIT, this.level));
             this.decrementLevel();
-            this.symbolTable = this.symbolTable.parent;
         }
     }
 
 
-    private void generateStatement(Statement statement) throws CheckerException, GeneratorException {
-        if (statement instanceof BlockStatement) {
-            generateBlockStatement((BlockStatement) statement, true);
-        } else if (statement instanceof IfStatement) {
-            generateIfStatement((IfStatement) statement);
-        } else if (statement instanceof WhileStatement) {
-            generateWhileStatement((WhileStatement) statement);
-        } else if (statement instanceof DoStatement) {
-            generateDoStatement((DoStatement) statement);
-        } else if (statement instanceof FunctionCallStatement) {
-            generateFunctionCallStatement((FunctionCallStatement) statement);
-        } else if (statement instanceof ForStatement) {
-            generateForStatement((ForStatement) statement);
-        } else if (statement instanceof BreakStatement) {
-            generateBreakStatement((BreakStatement) statement);
-        } else if (statement instanceof ContinueStatement) {
-            generateContinueStatement((ContinueStatement) statement);
-        } else if (statement instanceof AssignmentStatement){
-            generateAssignmentStatement((AssignmentStatement) statement);
-        } else {
-            throw new GeneratorException("Could not generate SM code for statement");
-        }
+    private void generateStatement(Statement statement) throws GeneratorException {
+        statement.accept(this.statementGenerator);
     }
 
-    private void generateForStatement(ForStatement forStatement) throws CheckerException, GeneratorException {
+    private void generateForStatement(ForStatement forStatement) throws GeneratorException {
         forStatement.level = this.level;
+        forStatement.displacement = this.displacement;
         if (forStatement.initializer != null) {
             this.generateAssignmentStatement(forStatement.initializer);
         }
 
-        String conditionalLabel = this.generateLabel();
+        List<DerivedInductionVariable> derivedInductionVariables = new ArrayList<>();
+
+        if (this.hasStrengthReduction()) {
+            derivedInductionVariables = new InductionVariableAnalysis().analyze(forStatement);
+            this.generateDerivedInductionVariables(derivedInductionVariables);
+        }
+
+        Label conditionalLabel = this.generateLabel();
         forStatement.startLabel = this.generateLabel();
         forStatement.exitLabel = this.generateLabel();
 
+        if (this.options.loopInversion) {
+            this.generateInvertedForStatement(forStatement, conditionalLabel, derivedInductionVariables);
+            this.releaseDerivedInductionVariables(derivedInductionVariables, forStatement.displacement);
+            return;
+        }
+
         emit(new Instruction(conditionalLabel, OpCode.NOP));
 
         if (forStatement.condition != null) {
-            this.generateExpression(forStatement.condition);
-            emit(new Instruction(OpCode.JMPF, forStatement.exitLabel));
+            this.generateBranch(forStatement.condition, false, forStatement.exitLabel);
         }
 
         this.generateStatement(forStatement.statement);
@@ -209,33 +317,135 @@ public class Generator {
             this.generateAssignmentStatement(forStatement.incrementer);
         }
 
+        this.generateDerivedInductionVariableUpdates(derivedInductionVariables);
         emit(new Instruction(OpCode.JMP, conditionalLabel));
 
         emit(new Instruction(forStatement.exitLabel, OpCode.NOP));
+        this.releaseDerivedInductionVariables(derivedInductionVariables, forStatement.displacement);
     }
 
-    private void generateContinueStatement(ContinueStatement statement) throws GeneratorException {
-        for (int i = level; i > statement.loopStatement.level; i--) {
-            emit(new Instruction(OpCode.EXIT, i));
+    // The condition is tested once before entering the loop and then at the bottom of every iteration
+    private void generateInvertedForStatement(ForStatement forStatement, Label bodyLabel, List<DerivedInductionVariable> derivedInductionVariables) throws GeneratorException {
+        if (forStatement.condition != null) {
+            this.generateBranch(forStatement.condition, false, forStatement.exitLabel);
         }
+
+        emit(new Instruction(bodyLabel, OpCode.NOP));
+        this.generateStatement(forStatement.statement);
+
+        emit(new Instruction(forStatement.startLabel, OpCode.NOP));
+
+        if (forStatement.incrementer != null) {
+            this.generateAssignmentStatement(forStatement.incrementer);
+        }
+
+        this.generateDerivedInductionVariableUpdates(derivedInductionVariables);
+
+        if (forStatement.condition != null) {
+            this.generateBranch(forStatement.condition, true, bodyLabel);
+        } else {
+            emit(new Instruction(OpCode.JMP, bodyLabel));
+        }
+
+        emit(new Instruction(forStatement.exitLabel, OpCode.NOP));
+    }
+
+    // Gives each derived value a slot after the locals in scope and computes it from the induction variable's initial value
+    private void generateDerivedInductionVariables(List<DerivedInductionVariable> derivedInductionVariables) throws GeneratorException {
+        for (DerivedInductionVariable derivedInductionVariable : derivedInductionVariables) {
+            derivedInductionVariable.location = new Location(this.level, this.displacement);
+            this.displacement++;
+            this.frameSize = Math.max(this.frameSize, this.displacement - 1);
+
+            Symbol array = derivedInductionVariable.array;
+
+            if (array != null) {
+                emit(new Instruction(array.isReference() ? OpCode.LDV : OpCode.LDA, array.location));
+                emit(new Instruction(OpCode.LDV, derivedInductionVariable.inductionVariable.location));
+                emit(new Instruction(OpCode.ADD));
+
+                if (derivedInductionVariable.constant != 0) {
+                    emit(new Instruction(OpCode.LDC, String.valueOf(derivedInductionVariable.constant)));
+                    emit(new Instruction(OpCode.ADD));
+                }
+            } else {
+                emit(new Instruction(OpCode.LDV, derivedInductionVariable.inductionVariable.location));
+                emit(new Instruction(OpCode.LDC, String.valueOf(derivedInductionVariable.constant)));
+                emit(new Instruction(OpCode.MULT));
+            }
+
+            emit(new Instruction(OpCode.ST, derivedInductionVariable.location));
+
+            for (Expression use : derivedInductionVariable.uses.keySet()) {
+                this.reductions.put(use, derivedInductionVariable);
+            }
+        }
+    }
+
+    // Follows the incrementer, so continue advances the derived values along with the induction variable
+    private void generateDerivedInductionVariableUpdates(List<DerivedInductionVariable> derivedInductionVariables) throws GeneratorException {
+        for (DerivedInductionVariable derivedInductionVariable : derivedInductionVariables) {
+            emit(new Instruction(OpCode.LDV, derivedInductionVariable.location));
+            emit(new Instruction(OpCode.LDC, String.valueOf(derivedInductionVariable.increment)));
+            emit(new Instruction(OpCode.ADD));
+            emit(new Instruction(OpCode.ST, derivedInductionVariable.location));
+        }
+    }
+
+    // Loads the derived value an expression reads, adjusted for an element at another offset than the tracked one
+    private void generateReduction(Expression expression) throws GeneratorException {
+        DerivedInductionVariable derivedInductionVariable = this.reductions.get(expression);
+        int adjustment = derivedInductionVariable.uses.get(expression);
+
+        emit(new Instruction(OpCode.LDV, derivedInductionVariable.location));
+
+        if (adjustment != 0) {
+            emit(new Instruction(OpCode.LDC, String.valueOf(adjustment)));
+            emit(new Instruction(OpCode.ADD));
+        }
+    }
+
+    private void releaseDerivedInductionVariables(List<DerivedInductionVariable> derivedInductionVariables, int displacement) {
+        for (DerivedInductionVariable derivedInductionVariable : derivedInductionVariables) {
+            derivedInductionVariable.uses.keySet().forEach(this.reductions::remove);
+        }
+
+        this.displacement = displacement;
+    }
+
+    private void generateContinueStatement(ContinueStatement statement) throws GeneratorException {
+        generateLoopExit(statement.loopStatement);
         emit(new Instruction(OpCode.JMP, statement.loopStatement.startLabel));
     }
 
     private void generateBreakStatement(BreakStatement statement) throws GeneratorException {
-        for (int i = level; i > statement.loopStatement.level; i--) {
+        generateLoopExit(statement.loopStatement);
+        emit(new Instruction(OpCode.JMP, statement.loopStatement.exitLabel));
+    }
+
+    // Leaves the blocks between a break or continue and its loop
+    private void generateLoopExit(LoopStatement loopStatement) throws GeneratorException {
+        for (int i = level; i > loopStatement.level; i--) {
             emit(new Instruction(OpCode.EXIT, i));
         }
-        emit(new Instruction(OpCode.JMP, statement.loopStatement.exitLabel));
+
+        if (this.options.flattenBlocks && !this.hasFrameLayout() && this.displacement != loopStatement.displacement) {
+            emit(new Instruction(OpCode.ALLOC, loopStatement.displacement - this.displacement));
+        }
     }
 
-    private void generateScanFunctionCall(LocationExpression locationExpression) throws CheckerException, GeneratorException {
-        Symbol symbol = this.symbolTable.getVariable(locationExpression.name);
+    private void generateScanFunctionCall(LocationExpression locationExpression) throws GeneratorException {
+        Symbol symbol = locationExpression.symbol;
 
-        if (symbol.getTypeKind() == TypeKind.Array) {
+        if (this.reductions.containsKey(locationExpression)) {
+            generateReduction(locationExpression);
+            emit(new Instruction(OpCode.IN));
+            emit(new Instruction(OpCode.STL));
+        } else if (symbol.getTypeKind() == TypeKind.Array) {
             if (symbol.isReference()) {
                 emit(new Instruction(OpCode.LDV, symbol.location));
             } else {
-                emit(new Instruction(OpCode.LDV, symbol.location));
+                emit(new Instruction(OpCode.LDA, symbol.location));
             }
 
             generateExpression(locationExpression.expression);
@@ -254,10 +464,14 @@ public class Generator {
         }
     }
 
-    private void generateAssignmentStatement(AssignmentStatement assignmentStatement) throws CheckerException, GeneratorException {
-        Symbol symbol = this.symbolTable.getVariable(assignmentStatement.locationExpression.name);
+    private void generateAssignmentStatement(AssignmentStatement assignmentStatement) throws GeneratorException {
+        Symbol symbol = assignmentStatement.locationExpression.symbol;
 
-        if (symbol.getTypeKind() == TypeKind.Array) {
+        if (this.reductions.containsKey(assignmentStatement.locationExpression)) {
+            generateReduction(assignmentStatement.locationExpression);
+            generateExpression(assignmentStatement.expression);
+            emit(new Instruction(OpCode.STL));
+        } else if (symbol.getTypeKind() == TypeKind.Array) {
             if (symbol.isReference()) {
                 emit(new Instruction(OpCode.LDV, symbol.location));
             } else {
@@ -280,9 +494,10 @@ public class Generator {
         }
     }
 
-    private void generateDoStatement(DoStatement doStatement) throws GeneratorException, CheckerException {
+    private void generateDoStatement(DoStatement doStatement) throws GeneratorException {
         doStatement.level = this.level;
-        String startLabel = generateLabel();
+        doStatement.displacement = this.displacement;
+        Label startLabel = generateLabel();
 
         doStatement.startLabel = this.generateLabel();
         doStatement.exitLabel = this.generateLabel();
@@ -292,37 +507,51 @@ public class Generator {
 
         emit(new Instruction(doStatement.startLabel, OpCode.NOP));
 
-        generateExpression(doStatement.conditional);
-        emit(new Instruction(OpCode.JMPT, startLabel));
+        generateBranch(doStatement.conditional, true, startLabel);
 
         emit(new Instruction(doStatement.exitLabel, OpCode.NOP));
     }
 
-    private void generateWhileStatement(WhileStatement whileStatement) throws GeneratorException, CheckerException {
+    private void generateWhileStatement(WhileStatement whileStatement) throws GeneratorException {
         whileStatement.level = this.level;
+        whileStatement.displacement = this.displacement;
         whileStatement.startLabel = generateLabel();
         whileStatement.exitLabel = generateLabel();
 
+        if (this.options.loopInversion) {
+            Label bodyLabel = generateLabel();
+
+            generateBranch(whileStatement.conditional, false, whileStatement.exitLabel);
+            emit(new Instruction(bodyLabel, OpCode.NOP));
+            generateStatement(whileStatement.statement);
+            emit(new Instruction(whileStatement.startLabel, OpCode.NOP));
+            generateBranch(whileStatement.conditional, true, bodyLabel);
+            emit(new Instruction(whileStatement.exitLabel, OpCode.NOP));
+            return;
+        }
+
         emit(new Instruction(whileStatement.startLabel, OpCode.NOP));
-        generateExpression(whileStatement.conditional);
-        emit(new Instruction(OpCode.JMPF, whileStatement.exitLabel));
+        generateBranch(whileStatement.conditional, false, whileStatement.exitLabel);
         generateStatement(whileStatement.statement);
         emit(new Instruction(OpCode.JMP, whileStatement.startLabel));
         emit(new Instruction(whileStatement.exitLabel, OpCode.NOP));
     }
 
-    private void generateFunctionCallStatement(FunctionCallStatement functionCallStatement) throws CheckerException, GeneratorException {
-        Symbol symbol = this.symbolTable.getVariable(functionCallStatement.name);
+    private void generateFunctionCallStatement(FunctionCallStatement functionCallStatement) throws GeneratorException {
+        Symbol symbol = functionCallStatement.symbol;
         FunctionType functionType = (FunctionType) symbol.getType();
 
-        if (functionCallStatement.name.equals("scan")) {
+        if (symbol.builtin == Builtin.SCAN) {
             LocationExpression locationExpression = (LocationExpression) functionCallStatement.arguments.get(0);
             generateScanFunctionCall(locationExpression);
             return;
-        } else if (functionCallStatement.name.equals("print")) {
+        } else if (symbol.builtin == Builtin.PRINT) {
             generateExpression(functionCallStatement.arguments.get(0));
             emit(new Instruction(OpCode.OUT));
             return;
+        } else if (isTailCall(functionCallStatement, symbol)) {
+            generateTailCall(functionCallStatement, symbol);
+            return;
         }
 
         for (int i  = 0; i < functionType.fields.size(); i++) {
@@ -344,18 +573,112 @@ public class Generator {
 
     }
 
-    private void generateIfStatement(IfStatement ifStatement) throws GeneratorException, CheckerException {
-        generateExpression(ifStatement.conditional);
+    // Statements that are the last thing a procedure does, at the end of its body or of an if in tail position
+    private void findTailCalls(Statement statement) {
+        if (statement instanceof FunctionCallStatement) {
+            this.tailCalls.add((FunctionCallStatement) statement);
+        } else if (statement instanceof BlockStatement) {
+            List<Statement> statements = ((BlockStatement) statement).statements;
+
+            if (!statements.isEmpty()) {
+                findTailCalls(statements.get(statements.size() - 1));
+            }
+        } else if (statement instanceof IfStatement) {
+            findTailCalls(((IfStatement) statement).statement);
+
+            if (((IfStatement) statement).elseStatement != null) {
+                findTailCalls(((IfStatement) statement).elseStatement);
+            }
+        }
+    }
+
+    // The callee must take as many arguments, so they occupy the same slots. No argument may be the address of a slot
+    // in the frame being released, or of an argument being overwritten.
+    private boolean isTailCall(FunctionCallStatement functionCallStatement, Symbol symbol) {
+        FunctionType functionType = (FunctionType) symbol.getType();
+
+        if (!this.tailCalls.contains(functionCallStatement) || functionType.fields.size() != this.arity) {
+            return false;
+        }
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+
+            if (!field.isReference() && field.getTypeKind() != TypeKind.Array) {
+                continue;
+            }
+
+            LocationExpression locationExpression = (LocationExpression) functionCallStatement.arguments.get(i);
+            Symbol argumentSymbol = locationExpression.symbol;
+
+            if (this.reductions.containsKey(locationExpression)
+                    || (!argumentSymbol.isReference() && argumentSymbol.location.frame == this.level)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Every argument is evaluated before any is overwritten, since they may read the arguments of this call. The
+    // frame is then released and the display restored, leaving the stack as it was when this procedure was called,
+    // so the callee returns straight to our caller. Procedures are all declared at the same level.
+    private void generateTailCall(FunctionCallStatement functionCallStatement, Symbol symbol) throws GeneratorException {
+        FunctionType functionType = (FunctionType) symbol.getType();
+        List<Integer> overwritten = new ArrayList<>();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+            Expression expression = functionCallStatement.arguments.get(i);
+            boolean byAddress = field.isReference() || field.getTypeKind() == TypeKind.Array;
+
+            if (isPassedThrough(expression, byAddress, i)) {
+                continue;
+            }
+
+            if (byAddress) {
+                generateLocationExpressionAddress((LocationExpression) expression);
+            } else {
+                generateExpression(expression);
+            }
+
+            overwritten.add(i);
+        }
+
+        for (int i = overwritten.size() - 1; i >= 0; i--) {
+            emit(new Instruction(OpCode.ST, new Location(this.level, overwritten.get(i) - 1 - functionType.fields.size())));
+        }
+
+        this.frameReleases.add(this.code.size());
+        emit(new Instruction(OpCode.NOP));
+        emit(new Instruction(OpCode.EXIT, this.level));
+        emit(new Instruction(OpCode.JMP, symbol.label));
+    }
+
+    // Whether an argument is the argument of this call in the same slot, passed the same way, so it is already in place
+    private boolean isPassedThrough(Expression expression, boolean byAddress, int index) {
+        if (!(expression instanceof LocationExpression) || ((LocationExpression) expression).expression != null) {
+            return false;
+        }
+
+        Symbol argumentSymbol = ((LocationExpression) expression).symbol;
+
+        return argumentSymbol.location.frame == this.level
+                && argumentSymbol.location.displacement == index - 1 - this.arity
+                && argumentSymbol.isReference() == byAddress
+                && (byAddress || argumentSymbol.getTypeKind() != TypeKind.Array);
+    }
 
+    private void generateIfStatement(IfStatement ifStatement) throws GeneratorException {
         if (ifStatement.elseStatement == null) {
-            String label = generateLabel();
-            emit(new Instruction(OpCode.JMPF, label));
+            Label label = generateLabel();
+            generateBranch(ifStatement.conditional, false, label);
             generateStatement(ifStatement.statement);
             emit(new Instruction(label, OpCode.NOP));
         } else {
-            String elseLabel = generateLabel();
-            String endLabel = generateLabel();
-            emit(new Instruction(OpCode.JMPF, elseLabel));
+            Label elseLabel = generateLabel();
+            Label endLabel = generateLabel();
+            generateBranch(ifStatement.conditional, false, elseLabel);
             generateStatement(ifStatement.statement);
             emit(new Instruction(OpCode.JMP, endLabel));
             emit(new Instruction(elseLabel, OpCode.NOP));
@@ -364,29 +687,75 @@ public class Generator {
         }
     }
 
-    private void generateExpression(Expression expression) throws CheckerException, GeneratorException {
-        if (expression instanceof UnaryExpression) {
-            generateUnaryExpression((UnaryExpression) expression);
-        } else if (expression instanceof BinaryExpression) {
-            generateBinaryExpression((BinaryExpression) expression);
-        } else if (expression instanceof LocationExpression) {
-            generateLocationExpressionValue((LocationExpression) expression);
-        } else if (expression instanceof IntegerExpression) {
-            emit(new Instruction(null, OpCode.LDC, String.valueOf(((IntegerExpression) expression).value), null));
+    // Jumps to label when the condition evaluates to jumpWhen and falls through otherwise
+    private void generateBranch(Expression condition, boolean jumpWhen, Label label) throws GeneratorException {
+        if (this.options.jumpingCode) {
+            generateConditionalJump(condition, jumpWhen, label);
         } else {
-            BooleanExpression booleanExpression = (BooleanExpression)  expression;
-            if (booleanExpression.value) {
-                emit(new Instruction(OpCode.LDC, "1"));
-            } else {
-                emit(new Instruction(OpCode.LDC, "0"));
+            generateExpression(condition);
+            emit(new Instruction(jumpWhen ? OpCode.JMPT : OpCode.JMPF, label));
+        }
+    }
+
+    // Conditions are never materialized as 0 or 1 unless they are neither constant, logical nor a comparison
+    private void generateConditionalJump(Expression condition, boolean jumpWhen, Label label) throws GeneratorException {
+        if (condition instanceof BooleanExpression) {
+            if (((BooleanExpression) condition).value == jumpWhen) {
+                emit(new Instruction(OpCode.JMP, label));
+            }
+            return;
+        }
+
+        if (condition instanceof UnaryExpression && ((UnaryExpression) condition).operator == OperatorKind.Not) {
+            generateConditionalJump(((UnaryExpression) condition).expression, !jumpWhen, label);
+            return;
+        }
+
+        if (condition instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) condition;
+            OperatorKind operatorKind = binaryExpression.operator;
+
+            // The right-hand side is skipped once the left-hand side decides the outcome
+            if (operatorKind == OperatorKind.And || operatorKind == OperatorKind.Or) {
+                boolean shortCircuitsOn = operatorKind == OperatorKind.Or;
+
+                if (jumpWhen == shortCircuitsOn) {
+                    generateConditionalJump(binaryExpression.left, jumpWhen, label);
+                    generateConditionalJump(binaryExpression.right, jumpWhen, label);
+                } else {
+                    Label skipLabel = generateLabel();
+                    generateConditionalJump(binaryExpression.left, shortCircuitsOn, skipLabel);
+                    generateConditionalJump(binaryExpression.right, jumpWhen, label);
+                    emit(new Instruction(skipLabel, OpCode.NOP));
+                }
+                return;
+            }
+
+            OpCode comparisonJump = operatorKind.jump(jumpWhen);
+
+            if (comparisonJump != null) {
+                generateExpression(binaryExpression.left);
+                generateExpression(binaryExpression.right);
+                emit(new Instruction(comparisonJump, label));
+                return;
             }
         }
+
+        generateExpression(condition);
+        emit(new Instruction(jumpWhen ? OpCode.JMPT : OpCode.JMPF, label));
     }
 
-    private void generateLocationExpressionValue(LocationExpression locationExpression) throws CheckerException, GeneratorException {
-        Symbol symbol = this.symbolTable.getVariable(locationExpression.name);
+    private void generateExpression(Expression expression) throws GeneratorException {
+        expression.accept(this.expressionGenerator);
+    }
+
+    private void generateLocationExpressionValue(LocationExpression locationExpression) throws GeneratorException {
+        Symbol symbol = locationExpression.symbol;
 
-        if (symbol.getTypeKind() == TypeKind.Array && symbol.isReference()) {
+        if (this.reductions.containsKey(locationExpression)) {
+            generateReduction(locationExpression);
+            emit(new Instruction(OpCode.IND));
+        } else if (symbol.getTypeKind() == TypeKind.Array && symbol.isReference()) {
             emit(new Instruction(OpCode.LDV, symbol.location));
 
             if (locationExpression.expression != null) {
@@ -411,10 +780,12 @@ public class Generator {
     }
 
     // Used for creating arguments for reference parameters (& or [])
-    private void generateLocationExpressionAddress(LocationExpression locationExpression) throws CheckerException, GeneratorException {
-        Symbol symbol = this.symbolTable.getVariable(locationExpression.name);
+    private void generateLocationExpressionAddress(LocationExpression locationExpression) throws GeneratorException {
+        Symbol symbol = locationExpression.symbol;
 
-        if (symbol.getTypeKind() == TypeKind.Array && symbol.isReference()) {
+        if (this.reductions.containsKey(locationExpression)) {
+            generateReduction(locationExpression);
+        } else if (symbol.getTypeKind() == TypeKind.Array && symbol.isReference()) {
             emit(new Instruction(OpCode.LDV, symbol.location));
 
             if (locationExpression.expression != null) {
@@ -435,43 +806,40 @@ public class Generator {
         }
     }
 
-    private void generateBinaryExpression(BinaryExpression binaryExpression) throws CheckerException, GeneratorException {
-        generateExpression(binaryExpression.left);
-        generateExpression(binaryExpression.right);
-
+    private void generateBinaryExpression(BinaryExpression binaryExpression) throws GeneratorException {
         OperatorKind operatorKind = binaryExpression.operator;
 
-        if (operatorKind == OperatorKind.Add) {
-            emit(new Instruction(OpCode.ADD));
-        } else if (operatorKind == OperatorKind.Subtract) {
-            emit(new Instruction(OpCode.SUB));
-        } else if (operatorKind == OperatorKind.Multiply) {
-            emit(new Instruction(OpCode.MULT));
-        } else if (operatorKind == OperatorKind.Divide) {
-            emit(new Instruction(OpCode.DIV));
-        } else if (operatorKind == OperatorKind.Mod) {
-            emit(new Instruction(OpCode.MOD));
-        } else if (operatorKind == OperatorKind.LessThan) {
-            emit(new Instruction(OpCode.LT));
-        } else if (operatorKind == OperatorKind.GreaterThan) {
-            emit(new Instruction(OpCode.GT));
-        } else if (operatorKind == OperatorKind.LessThanEquals) {
-            emit(new Instruction(OpCode.LE));
-        } else if (operatorKind == OperatorKind.GreaterThanEquals) {
-            emit(new Instruction(OpCode.GE));
-        } else if (operatorKind == OperatorKind.Equals) {
-            emit(new Instruction(OpCode.EQ));
-        } else if (operatorKind == OperatorKind.NotEquals) {
-            emit(new Instruction(OpCode.NE));
-        } else if (operatorKind == OperatorKind.And) {
-            emit(new Instruction(OpCode.AND));
-        } else {
-            emit(new Instruction(OpCode.OR));
+        if (this.reductions.containsKey(binaryExpression)) {
+            generateReduction(binaryExpression);
+            return;
+        }
+
+        // Doubling adds the value to itself instead of multiplying
+        if (this.hasStrengthReduction() && operatorKind == OperatorKind.Multiply) {
+            Expression doubled = null;
+
+            if (binaryExpression.right instanceof IntegerExpression && ((IntegerExpression) binaryExpression.right).value == 2) {
+                doubled = binaryExpression.left;
+            } else if (binaryExpression.left instanceof IntegerExpression && ((IntegerExpression) binaryExpression.left).value == 2) {
+                doubled = binaryExpression.right;
+            }
+
+            if (doubled != null) {
+                generateExpression(doubled);
+                emit(new Instruction(OpCode.DUP));
+                emit(new Instruction(OpCode.ADD));
+                return;
+            }
         }
+
+        generateExpression(binaryExpression.left);
+        generateExpression(binaryExpression.right);
+
+        emit(new Instruction(operatorKind.opCode));
     }
 
     // Ignoring + operator since it does nothing
-    private void generateUnaryExpression(UnaryExpression expression) throws CheckerException, GeneratorException {
+    private void generateUnaryExpression(UnaryExpression expression) throws GeneratorException {
         generateExpression(expression.expression);
         if (expression.operator == OperatorKind.Minus) {
             emit(new Instruction(OpCode.NEG));
@@ -480,12 +848,24 @@ public class Generator {
         }
     }
 
+    private boolean hasFrameLayout() {
+        return this.options.frameLayout && this.options.flattenBlocks;
+    }
+
+    private boolean hasTailCalls() {
+        return this.options.tailCalls && this.hasFrameLayout();
+    }
+
+    private boolean hasStrengthReduction() {
+        return this.options.strengthReduction && this.hasFrameLayout();
+    }
+
     private void emit(Instruction instruction) throws GeneratorException {
-        this.instructions.add(instruction);
+        this.code.emit(instruction);
     }
 
-    private String generateLabel() {
-        return "L" + this.labelValue++;
+    private Label generateLabel() {
+        return this.code.newLabel();
     }
 
     private void incrementLevel() {
@@ -498,4 +878,94 @@ public class Generator {
         this.level--;
         this.displacement = this.previousDisplacement.pop();
     }
+
+    // Calls the generate method for the kind of statement visited
+    private class StatementGenerator implements StatementVisitor<Void, GeneratorException> {
+        @Override
+        public Void visitBlockStatement(BlockStatement statement) throws GeneratorException {
+            generateBlockStatement(statement, true);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStatement(IfStatement statement) throws GeneratorException {
+            generateIfStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStatement(WhileStatement statement) throws GeneratorException {
+            generateWhileStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitDoStatement(DoStatement statement) throws GeneratorException {
+            generateDoStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitForStatement(ForStatement statement) throws GeneratorException {
+            generateForStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCallStatement(FunctionCallStatement statement) throws GeneratorException {
+            generateFunctionCallStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignmentStatement(AssignmentStatement statement) throws GeneratorException {
+            generateAssignmentStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitBreakStatement(BreakStatement statement) throws GeneratorException {
+            generateBreakStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitContinueStatement(ContinueStatement statement) throws GeneratorException {
+            generateContinueStatement(statement);
+            return null;
+        }
+    }
+
+    // Calls the generate method for the kind of expression visited, leaving its value on the stack
+    private class ExpressionGenerator implements ExpressionVisitor<Void, GeneratorException> {
+        @Override
+        public Void visitUnaryExpression(UnaryExpression expression) throws GeneratorException {
+            generateUnaryExpression(expression);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpression(BinaryExpression expression) throws GeneratorException {
+            generateBinaryExpression(expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLocationExpression(LocationExpression expression) throws GeneratorException {
+            generateLocationExpressionValue(expression);
+            return null;
+        }
+
+        @Override
+        public Void visitIntegerExpression(IntegerExpression expression) throws GeneratorException {
+            emit(new Instruction(null, OpCode.LDC, String.valueOf(expression.value), null));
+            return null;
+        }
+
+        @Override
+        public Void visitBooleanExpression(BooleanExpression expression) throws GeneratorException {
+            emit(new Instruction(OpCode.LDC, expression.value ? "1" : "0"));
+            return null;
+        }
+    }
 }
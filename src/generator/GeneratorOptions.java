@@ -0,0 +1,36 @@
+package generator;
+
+public class GeneratorOptions {
+    // Conditions compile to jumps, so && and || short-circuit and comparisons fuse with their branch
+    public boolean jumpingCode = true;
+
+    // while and for loops test their condition at the bottom, behind a single guard before the loop
+    public boolean loopInversion = true;
+
+    // Nested blocks share the frame of their procedure instead of entering a display level of their own
+    public boolean flattenBlocks = true;
+
+    // Each procedure allocates one frame, sized for its deepest nesting of flattened blocks, in its prologue.
+    // Only applies together with flattenBlocks.
+    public boolean frameLayout = true;
+
+    // Array element addresses and products derived from the induction variable of a for loop are kept in slots and
+    // advanced with the loop, and multiplication by 2 becomes an addition. Only applies together with frameLayout.
+    public boolean strengthReduction = true;
+
+    // A call that is the last thing a procedure does, to a procedure taking as many arguments, overwrites the arguments
+    // in place and jumps to it instead of calling it. Only applies together with frameLayout.
+    public boolean tailCalls = true;
+
+    // The code generated before any optimizations were added, instruction for instruction
+    public static GeneratorOptions unoptimized() {
+        GeneratorOptions options = new GeneratorOptions();
+        options.jumpingCode = false;
+        options.loopInversion = false;
+        options.flattenBlocks = false;
+        options.frameLayout = false;
+        options.strengthReduction = false;
+        options.tailCalls = false;
+        return options;
+    }
+}
@@ -0,0 +1,306 @@
+package generator;
+
+import nodes.OperatorKind;
+import nodes.declarations.Variable;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import optimizer.Effects;
+import symbols.Symbol;
+import types.TypeKind;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Finds the array element addresses and products derived from the induction variable of a for loop that are worth
+// keeping up to date in a slot of their own.
+//
+// The induction variable must be a local that only the incrementer changes, by adding or subtracting a constant.
+// Reads inside nested loops count for more, since they are executed more often.
+public class InductionVariableAnalysis {
+    // Instructions executed per iteration to advance a derived value: LDV, LDC, ADD, ST
+    private static final int UPDATE_COST = 4;
+
+    private static final int NESTED_LOOP_WEIGHT = 10;
+    private static final int MAXIMUM_WEIGHT = 1000;
+
+    private Symbol inductionVariable;
+    private int step;
+
+    // Element reads by array with their offsets, products by factor, and how often each read is expected to run
+    private Map<Symbol, Map<Expression, Integer>> elements;
+    private Map<Integer, List<Expression>> products;
+    private Map<Expression, Integer> weights;
+
+    // Arrays declared inside the loop, which have no storage yet where the derived values are first computed
+    private Set<Symbol> declared;
+
+    public List<DerivedInductionVariable> analyze(ForStatement forStatement) {
+        List<DerivedInductionVariable> profitable = new ArrayList<>();
+
+        if (!findInductionVariable(forStatement)) {
+            return profitable;
+        }
+
+        this.elements = new LinkedHashMap<>();
+        this.products = new LinkedHashMap<>();
+        this.weights = new IdentityHashMap<>();
+        this.declared = new HashSet<>();
+
+        if (forStatement.condition != null) {
+            collectUses(forStatement.condition, 1);
+        }
+
+        collectUses(forStatement.statement, 1);
+
+        for (Map.Entry<Symbol, Map<Expression, Integer>> entry : this.elements.entrySet()) {
+            DerivedInductionVariable address = deriveAddress(entry.getKey(), entry.getValue());
+
+            if (address != null) {
+                profitable.add(address);
+            }
+        }
+
+        // LDV, LDC, MULT become a single LDV
+        for (Map.Entry<Integer, List<Expression>> entry : this.products.entrySet()) {
+            int factor = entry.getKey();
+            int savings = 0;
+            DerivedInductionVariable product = new DerivedInductionVariable(this.inductionVariable, null, factor, factor * this.step);
+
+            for (Expression use : entry.getValue()) {
+                product.uses.put(use, 0);
+                savings += 2 * this.weights.get(use);
+            }
+
+            if (savings > UPDATE_COST) {
+                profitable.add(product);
+            }
+        }
+
+        return profitable;
+    }
+
+    // Tracks the address of the element at the offset that saves the most, or returns null when none pays off
+    private DerivedInductionVariable deriveAddress(Symbol array, Map<Expression, Integer> offsets) {
+        int bestOffset = 0;
+        int bestSavings = 0;
+
+        for (int candidate : new LinkedHashSet<>(offsets.values())) {
+            int savings = 0;
+
+            for (Map.Entry<Expression, Integer> use : offsets.entrySet()) {
+                savings += savings(use.getValue(), candidate) * this.weights.get(use.getKey());
+            }
+
+            if (savings > bestSavings) {
+                bestOffset = candidate;
+                bestSavings = savings;
+            }
+        }
+
+        if (bestSavings <= UPDATE_COST) {
+            return null;
+        }
+
+        DerivedInductionVariable address = new DerivedInductionVariable(this.inductionVariable, array, bestOffset, this.step);
+
+        for (Map.Entry<Expression, Integer> use : offsets.entrySet()) {
+            address.uses.put(use.getKey(), use.getValue() - bestOffset);
+        }
+
+        return address;
+    }
+
+    // An element read costs the base, LDV, ADD and two more for a nonzero offset. From the slot it costs LDV and two
+    // more when its offset differs from the tracked one.
+    private int savings(int offset, int tracked) {
+        int before = offset == 0 ? 3 : 5;
+        int after = offset == tracked ? 1 : 3;
+        return before - after;
+    }
+
+    private boolean findInductionVariable(ForStatement forStatement) {
+        AssignmentStatement incrementer = forStatement.incrementer;
+
+        if (incrementer == null || incrementer.locationExpression.expression != null || !(incrementer.expression instanceof BinaryExpression)) {
+            return false;
+        }
+
+        Symbol symbol = incrementer.locationExpression.symbol;
+
+        // Globals and reference parameters may change behind the loop's back
+        if (symbol.getTypeKind() != TypeKind.Integer || symbol.isReference() || symbol.location.frame == 0) {
+            return false;
+        }
+
+        BinaryExpression binaryExpression = (BinaryExpression) incrementer.expression;
+        Integer step = null;
+
+        if (binaryExpression.operator == OperatorKind.Add) {
+            if (isVariable(binaryExpression.left, symbol) && binaryExpression.right instanceof IntegerExpression) {
+                step = ((IntegerExpression) binaryExpression.right).value;
+            } else if (isVariable(binaryExpression.right, symbol) && binaryExpression.left instanceof IntegerExpression) {
+                step = ((IntegerExpression) binaryExpression.left).value;
+            }
+        } else if (binaryExpression.operator == OperatorKind.Subtract) {
+            if (isVariable(binaryExpression.left, symbol) && binaryExpression.right instanceof IntegerExpression) {
+                step = -((IntegerExpression) binaryExpression.right).value;
+            }
+        }
+
+        if (step == null || Effects.of(forStatement.statement).written.contains(symbol)) {
+            return false;
+        }
+
+        this.inductionVariable = symbol;
+        this.step = step;
+        return true;
+    }
+
+    private void collectUses(Statement statement, int weight) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (VariableDeclaration variableDeclaration : blockStatement.variableDeclarations) {
+                for (Variable variable : variableDeclaration.variables) {
+                    this.declared.add(variable.symbol);
+                }
+            }
+
+            for (Statement child : blockStatement.statements) {
+                collectUses(child, weight);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collectUses(ifStatement.conditional, weight);
+            collectUses(ifStatement.statement, weight);
+
+            if (ifStatement.elseStatement != null) {
+                collectUses(ifStatement.elseStatement, weight);
+            }
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            int nestedWeight = nestedWeight(weight);
+            collectUses(whileStatement.conditional, nestedWeight);
+            collectUses(whileStatement.statement, nestedWeight);
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            int nestedWeight = nestedWeight(weight);
+            collectUses(doStatement.conditional, nestedWeight);
+            collectUses(doStatement.statement, nestedWeight);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+            int nestedWeight = nestedWeight(weight);
+
+            if (forStatement.initializer != null) {
+                collectUses(forStatement.initializer, weight);
+            }
+
+            if (forStatement.condition != null) {
+                collectUses(forStatement.condition, nestedWeight);
+            }
+
+            if (forStatement.incrementer != null) {
+                collectUses(forStatement.incrementer, nestedWeight);
+            }
+
+            collectUses(forStatement.statement, nestedWeight);
+        } else if (statement instanceof FunctionCallStatement) {
+            for (Expression argument : ((FunctionCallStatement) statement).arguments) {
+                collectUses(argument, weight);
+            }
+        } else if (statement instanceof AssignmentStatement) {
+            AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+            collectUses(assignmentStatement.locationExpression, weight);
+            collectUses(assignmentStatement.expression, weight);
+        }
+    }
+
+    private void collectUses(Expression expression, int weight) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+
+            if (binaryExpression.operator == OperatorKind.Multiply) {
+                Integer factor = null;
+
+                if (isVariable(binaryExpression.left, this.inductionVariable) && binaryExpression.right instanceof IntegerExpression) {
+                    factor = ((IntegerExpression) binaryExpression.right).value;
+                } else if (isVariable(binaryExpression.right, this.inductionVariable) && binaryExpression.left instanceof IntegerExpression) {
+                    factor = ((IntegerExpression) binaryExpression.left).value;
+                }
+
+                if (factor != null) {
+                    this.products.computeIfAbsent(factor, f -> new ArrayList<>()).add(expression);
+                    this.weights.put(expression, weight);
+                    return;
+                }
+            }
+
+            collectUses(binaryExpression.left, weight);
+            collectUses(binaryExpression.right, weight);
+        } else if (expression instanceof UnaryExpression) {
+            collectUses(((UnaryExpression) expression).expression, weight);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+
+            if (locationExpression.expression == null) {
+                return;
+            }
+
+            Integer offset = offset(locationExpression.expression);
+
+            if (offset != null && !this.declared.contains(locationExpression.symbol)) {
+                Symbol array = locationExpression.symbol;
+                this.elements.computeIfAbsent(array, a -> new LinkedHashMap<>()).put(expression, offset);
+                this.weights.put(expression, weight);
+                return;
+            }
+
+            collectUses(locationExpression.expression, weight);
+        }
+    }
+
+    // The constant c of an index of the form i, i + c, c + i or i - c, or null for any other index
+    private Integer offset(Expression index) {
+        if (isVariable(index, this.inductionVariable)) {
+            return 0;
+        } else if (!(index instanceof BinaryExpression)) {
+            return null;
+        }
+
+        BinaryExpression binaryExpression = (BinaryExpression) index;
+
+        if (binaryExpression.operator == OperatorKind.Add) {
+            if (isVariable(binaryExpression.left, this.inductionVariable) && binaryExpression.right instanceof IntegerExpression) {
+                return ((IntegerExpression) binaryExpression.right).value;
+            } else if (isVariable(binaryExpression.right, this.inductionVariable) && binaryExpression.left instanceof IntegerExpression) {
+                return ((IntegerExpression) binaryExpression.left).value;
+            }
+        } else if (binaryExpression.operator == OperatorKind.Subtract) {
+            if (isVariable(binaryExpression.left, this.inductionVariable) && binaryExpression.right instanceof IntegerExpression) {
+                return -((IntegerExpression) binaryExpression.right).value;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isVariable(Expression expression, Symbol symbol) {
+        if (!(expression instanceof LocationExpression)) {
+            return false;
+        }
+
+        LocationExpression locationExpression = (LocationExpression) expression;
+        return locationExpression.expression == null && locationExpression.symbol == symbol;
+    }
+
+    private int nestedWeight(int weight) {
+        return Math.min(weight * NESTED_LOOP_WEIGHT, MAXIMUM_WEIGHT);
+    }
+}
@@ -1,14 +1,16 @@
 package generator;
 
+import symbols.Label;
 import symbols.Location;
 
 public class Instruction {
-    private String label;
+    private Label label;
     private OpCode opCode;
+    private Label target;
     private String arg1;
     private String arg2;
 
-    public Instruction(String label, OpCode opCode, String arg1, String arg2) throws GeneratorException {
+    public Instruction(Label label, OpCode opCode, String arg1, String arg2) throws GeneratorException {
         if (opCode == null) {
             throw new GeneratorException("OpCode cannot be null in instruction");
         }
@@ -18,7 +20,21 @@ public class Instruction {
         this.arg2 = arg2;
     }
 
-    public Instruction(String label, OpCode opCode, int arg1) throws GeneratorException {
+    // Jumps and calls refer to their target by label
+    public Instruction(Label label, OpCode opCode, Label target) throws GeneratorException {
+        this(label, opCode, null, null);
+
+        if (!opCode.hasLabelArgument()) {
+            throw new GeneratorException(String.format("%s does not take a label", opCode.name()));
+        }
+        this.target = target;
+    }
+
+    public Instruction(OpCode opCode, Label target) throws GeneratorException {
+        this(null, opCode, target);
+    }
+
+    public Instruction(Label label, OpCode opCode, int arg1) throws GeneratorException {
         this(label, opCode, String.valueOf(arg1), null);
     }
 
@@ -26,7 +42,7 @@ public class Instruction {
         this(null, opCode, String.valueOf(arg1), String.valueOf(arg2));
     }
 
-    public Instruction(String label, OpCode opCode) throws GeneratorException {
+    public Instruction(Label label, OpCode opCode) throws GeneratorException {
         this(label, opCode, null, null);
     }
 
@@ -46,10 +62,39 @@ public class Instruction {
         this(null, opCode, String.valueOf(location.frame), String.valueOf(location.displacement));
     }
 
+    // The same instruction under another label
+    public Instruction withLabel(Label label) throws GeneratorException {
+        if (this.target != null) {
+            return new Instruction(label, this.opCode, this.target);
+        }
+
+        return new Instruction(label, this.opCode, this.arg1, this.arg2);
+    }
+
+    public Label getLabel() {
+        return this.label;
+    }
+
+    public OpCode getOpCode() {
+        return this.opCode;
+    }
+
+    public Label getTarget() {
+        return this.target;
+    }
+
+    public String getArg1() {
+        return (this.target == null) ? this.arg1 : this.target.getName();
+    }
+
+    public String getArg2() {
+        return this.arg2;
+    }
+
     @Override
     public String toString() {
-        String label = (this.label == null) ? "" : this.label;
-        String arg1 = (this.arg1 == null) ? "" : this.arg1;
+        String label = (this.label == null) ? "" : this.label.getName();
+        String arg1 = (this.getArg1() == null) ? "" : this.getArg1();
         String arg2 = (this.arg2 == null) ? "" : this.arg2;
 
         return String.format("%-8s %-8s %-8s %-8s", label, opCode.name(), arg1, arg2);
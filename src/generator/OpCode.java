@@ -39,5 +39,29 @@ public enum OpCode {
     DUP,
     POP,
     STL,
-    IND
+    IND,
+    JLT,
+    JLE,
+    JGT,
+    JGE,
+    JEQ,
+    JNE;
+
+    // Opcodes whose first argument names a label rather than a value
+    public boolean hasLabelArgument() {
+        return this.isJump() || this == CALL;
+    }
+
+    public boolean isJump() {
+        return this == JMP || this.isConditionalJump();
+    }
+
+    public boolean isConditionalJump() {
+        return this == JMPF || this == JMPT || this.isComparisonJump();
+    }
+
+    // Pops two values and jumps when the comparison between them holds
+    public boolean isComparisonJump() {
+        return this == JLT || this == JLE || this == JGT || this == JGE || this == JEQ || this == JNE;
+    }
 }
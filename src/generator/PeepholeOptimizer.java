@@ -0,0 +1,297 @@
+package generator;
+
+import symbols.Label;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PeepholeOptimizer {
+
+    public List<Instruction> optimize(List<Instruction> instructions) throws GeneratorException {
+        List<Instruction> result = new ArrayList<>(instructions);
+
+        boolean changed = true;
+        while (changed) {
+            changed = collapseLabels(result);
+            changed |= threadJumps(result);
+            changed |= removeUnreachableCode(result);
+            changed |= removeJumpsToNextInstruction(result);
+            changed |= combineStackAdjustments(result);
+        }
+
+        return result;
+    }
+
+    // Removes NOPs by moving their label onto the next instruction, or by merging it with the label that is already there
+    private boolean collapseLabels(List<Instruction> instructions) throws GeneratorException {
+        Map<Label, Label> aliases = new HashMap<>();
+        List<Instruction> result = new ArrayList<>();
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction.getOpCode() != OpCode.NOP) {
+                result.add(instruction);
+                continue;
+            }
+
+            if (instruction.getLabel() == null) {
+                changed = true;
+                continue;
+            }
+
+            // A trailing labelled NOP has nothing to attach its label to
+            if (i + 1 == instructions.size()) {
+                result.add(instruction);
+                continue;
+            }
+
+            Instruction next = instructions.get(i + 1);
+
+            if (next.getLabel() == null) {
+                instructions.set(i + 1, next.withLabel(instruction.getLabel()));
+            } else {
+                aliases.put(instruction.getLabel(), next.getLabel());
+            }
+
+            changed = true;
+        }
+
+        if (changed) {
+            replace(instructions, result);
+            retarget(instructions, aliases);
+        }
+
+        return changed;
+    }
+
+    // Jumps whose target is an unconditional JMP go straight to the final destination
+    private boolean threadJumps(List<Instruction> instructions) throws GeneratorException {
+        Map<Label, Integer> labels = findLabels(instructions);
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            OpCode opCode = instruction.getOpCode();
+
+            if (!opCode.isJump()) {
+                continue;
+            }
+
+            Label target = instruction.getTarget();
+            Set<Label> visited = new HashSet<>();
+
+            while (visited.add(target) && labels.containsKey(target)) {
+                Instruction destination = instructions.get(labels.get(target));
+
+                if (destination.getOpCode() != OpCode.JMP) {
+                    break;
+                }
+
+                target = destination.getTarget();
+            }
+
+            if (!labels.containsKey(target)) {
+                continue;
+            }
+
+            Instruction destination = instructions.get(labels.get(target));
+
+            if (opCode == OpCode.JMP && (destination.getOpCode() == OpCode.RET || destination.getOpCode() == OpCode.HALT)) {
+                instructions.set(i, new Instruction(instruction.getLabel(), destination.getOpCode(), destination.getArg1(), destination.getArg2()));
+                changed = true;
+            } else if (target != instruction.getTarget()) {
+                instructions.set(i, new Instruction(instruction.getLabel(), opCode, target));
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    // Drops everything following a JMP, RET or HALT up to the next instruction that is the target of a jump or call
+    private boolean removeUnreachableCode(List<Instruction> instructions) throws GeneratorException {
+        Set<Label> referenced = findReferencedLabels(instructions);
+        List<Instruction> result = new ArrayList<>();
+        boolean reachable = true;
+        boolean changed = false;
+
+        for (Instruction instruction : instructions) {
+            boolean isTarget = instruction.getLabel() != null && referenced.contains(instruction.getLabel());
+
+            if (!reachable && !isTarget) {
+                changed = true;
+                continue;
+            }
+
+            if (instruction.getLabel() != null && !isTarget) {
+                instruction = instruction.withLabel(null);
+                changed = true;
+            }
+
+            result.add(instruction);
+
+            OpCode opCode = instruction.getOpCode();
+            reachable = opCode != OpCode.JMP && opCode != OpCode.RET && opCode != OpCode.HALT;
+        }
+
+        if (changed) {
+            replace(instructions, result);
+        }
+
+        return changed;
+    }
+
+    private boolean removeJumpsToNextInstruction(List<Instruction> instructions) throws GeneratorException {
+        List<Instruction> result = new ArrayList<>();
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            OpCode opCode = instruction.getOpCode();
+
+            boolean targetsNext = opCode.isJump() && i + 1 < instructions.size() && instruction.getTarget() == instructions.get(i + 1).getLabel();
+
+            if (!targetsNext) {
+                result.add(instruction);
+                continue;
+            }
+
+            // A conditional jump to the next instruction still has to consume its operands
+            if (opCode == OpCode.JMP) {
+                result.add(new Instruction(instruction.getLabel(), OpCode.NOP));
+            } else if (opCode.isComparisonJump()) {
+                result.add(new Instruction(instruction.getLabel(), OpCode.ALLOC, -2));
+            } else {
+                result.add(new Instruction(instruction.getLabel(), OpCode.POP));
+            }
+
+            changed = true;
+        }
+
+        if (changed) {
+            replace(instructions, result);
+        }
+
+        return changed;
+    }
+
+    // Folds runs of POP and ALLOC, such as the POPs following a CALL, into a single stack adjustment
+    private boolean combineStackAdjustments(List<Instruction> instructions) throws GeneratorException {
+        List<Instruction> result = new ArrayList<>();
+        boolean changed = false;
+
+        int i = 0;
+        while (i < instructions.size()) {
+            Instruction instruction = instructions.get(i);
+
+            if (!isStackAdjustment(instruction)) {
+                result.add(instruction);
+                i++;
+                continue;
+            }
+
+            int amount = stackAdjustment(instruction);
+            int end = i + 1;
+
+            while (end < instructions.size() && instructions.get(end).getLabel() == null && isStackAdjustment(instructions.get(end))) {
+                amount += stackAdjustment(instructions.get(end));
+                end++;
+            }
+
+            if (end - i == 1 && amount != 0) {
+                result.add(instruction);
+                i++;
+                continue;
+            }
+
+            if (amount == 0) {
+                if (instruction.getLabel() != null) {
+                    result.add(new Instruction(instruction.getLabel(), OpCode.NOP));
+                }
+            } else if (amount == -1) {
+                result.add(new Instruction(instruction.getLabel(), OpCode.POP));
+            } else {
+                result.add(new Instruction(instruction.getLabel(), OpCode.ALLOC, amount));
+            }
+
+            changed = true;
+            i = end;
+        }
+
+        if (changed) {
+            replace(instructions, result);
+        }
+
+        return changed;
+    }
+
+    private boolean isStackAdjustment(Instruction instruction) {
+        return instruction.getOpCode() == OpCode.POP || instruction.getOpCode() == OpCode.ALLOC;
+    }
+
+    private int stackAdjustment(Instruction instruction) {
+        if (instruction.getOpCode() == OpCode.POP) {
+            return -1;
+        }
+
+        return Integer.parseInt(instruction.getArg1());
+    }
+
+    private void retarget(List<Instruction> instructions, Map<Label, Label> aliases) throws GeneratorException {
+        if (aliases.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (!instruction.getOpCode().hasLabelArgument()) {
+                continue;
+            }
+
+            Label target = instruction.getTarget();
+            while (aliases.containsKey(target)) {
+                target = aliases.get(target);
+            }
+
+            if (target != instruction.getTarget()) {
+                instructions.set(i, new Instruction(instruction.getLabel(), instruction.getOpCode(), target));
+            }
+        }
+    }
+
+    private Map<Label, Integer> findLabels(List<Instruction> instructions) {
+        Map<Label, Integer> labels = new HashMap<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i).getLabel() != null) {
+                labels.put(instructions.get(i).getLabel(), i);
+            }
+        }
+
+        return labels;
+    }
+
+    private Set<Label> findReferencedLabels(List<Instruction> instructions) {
+        Set<Label> referenced = new HashSet<>();
+
+        for (Instruction instruction : instructions) {
+            if (instruction.getOpCode().hasLabelArgument()) {
+                referenced.add(instruction.getTarget());
+            }
+        }
+
+        return referenced;
+    }
+
+    private void replace(List<Instruction> instructions, List<Instruction> replacement) {
+        instructions.clear();
+        instructions.addAll(replacement);
+    }
+}
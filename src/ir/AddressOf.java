@@ -0,0 +1,32 @@
+package ir;
+
+import symbols.Location;
+
+import java.util.Collections;
+import java.util.List;
+
+// The address of the variable at a location, or of the first element of the array there
+public class AddressOf implements Operation {
+    public Value result;
+    public Location location;
+
+    public AddressOf(Value result, Location location) {
+        this.result = result;
+        this.location = location;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = address " + Locations.toString(this.location);
+    }
+}
@@ -0,0 +1,25 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Operations that run one after the other, entered only at the top and left only through the terminator
+public class BasicBlock {
+    public final int id;
+    public List<Operation> operations;
+    public Terminator terminator;
+
+    public BasicBlock(int id) {
+        this.id = id;
+        this.operations = new ArrayList<>();
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return this.terminator.getSuccessors();
+    }
+
+    @Override
+    public String toString() {
+        return "B" + this.id;
+    }
+}
@@ -0,0 +1,35 @@
+package ir;
+
+import nodes.OperatorKind;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BinaryOperation implements Operation {
+    public Value result;
+    public OperatorKind operator;
+    public Value left;
+    public Value right;
+
+    public BinaryOperation(Value result, OperatorKind operator, Value left, Value right) {
+        this.result = result;
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Arrays.asList(this.left, this.right);
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = " + this.operator + " " + this.left + ", " + this.right;
+    }
+}
@@ -0,0 +1,76 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Orders the blocks of each function so that as many of them as possible fall through to the next, after jumps to
+// blocks that only jump on have been sent straight to where they lead. Lowering emits the blocks in this order.
+public class BlockLayout {
+
+    public void layout(IrProgram program) {
+        for (Function function : program.functions) {
+            threadJumps(function);
+            function.removeUnreachableBlocks();
+            function.blocks = order(function);
+        }
+    }
+
+    private void threadJumps(Function function) {
+        for (BasicBlock block : function.blocks) {
+            if (block.terminator instanceof Jump) {
+                Jump jump = (Jump) block.terminator;
+                jump.target = skip(jump.target);
+            } else if (block.terminator instanceof Branch) {
+                Branch branch = (Branch) block.terminator;
+                branch.ifTrue = skip(branch.ifTrue);
+                branch.ifFalse = skip(branch.ifFalse);
+            }
+        }
+    }
+
+    // Where control ends up after empty blocks that just jump, stopping if they loop among themselves
+    private BasicBlock skip(BasicBlock block) {
+        Set<BasicBlock> visited = new HashSet<>();
+
+        while (block.operations.isEmpty() && block.terminator instanceof Jump && visited.add(block)) {
+            block = ((Jump) block.terminator).target;
+        }
+
+        return block;
+    }
+
+    // Follows each block with its jump target or, for a branch, the block taken when the condition holds, unless it
+    // is already placed. Otherwise the next block not yet placed, in the order the blocks were built, comes next.
+    private List<BasicBlock> order(Function function) {
+        List<BasicBlock> ordered = new ArrayList<>();
+        Set<BasicBlock> placed = new HashSet<>();
+        BasicBlock next = function.getEntry();
+        int first = 0;
+
+        while (ordered.size() < function.blocks.size()) {
+            if (next == null || placed.contains(next)) {
+                while (placed.contains(function.blocks.get(first))) {
+                    first++;
+                }
+
+                next = function.blocks.get(first);
+            }
+
+            ordered.add(next);
+            placed.add(next);
+
+            if (next.terminator instanceof Jump) {
+                next = ((Jump) next.terminator).target;
+            } else if (next.terminator instanceof Branch) {
+                Branch branch = (Branch) next.terminator;
+                next = placed.contains(branch.ifTrue) ? branch.ifFalse : branch.ifTrue;
+            } else {
+                next = null;
+            }
+        }
+
+        return ordered;
+    }
+}
@@ -0,0 +1,32 @@
+package ir;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Continues with ifTrue when the condition is non-zero and with ifFalse otherwise
+public class Branch implements Terminator {
+    public Value condition;
+    public BasicBlock ifTrue;
+    public BasicBlock ifFalse;
+
+    public Branch(Value condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+        this.condition = condition;
+        this.ifTrue = ifTrue;
+        this.ifFalse = ifFalse;
+    }
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Arrays.asList(this.ifTrue, this.ifFalse);
+    }
+
+    @Override
+    public Value getCondition() {
+        return this.condition;
+    }
+
+    @Override
+    public String toString() {
+        return "branch " + this.condition + ", " + this.ifTrue + ", " + this.ifFalse;
+    }
+}
@@ -0,0 +1,33 @@
+package ir;
+
+import symbols.Symbol;
+
+import java.util.List;
+
+// Calls a procedure, with the values of its arguments or, for reference parameters, their addresses
+public class Call implements Operation {
+    public String name;
+    public Symbol callee;
+    public List<Value> arguments;
+
+    public Call(String name, Symbol callee, List<Value> arguments) {
+        this.name = name;
+        this.callee = callee;
+        this.arguments = arguments;
+    }
+
+    @Override
+    public Value getResult() {
+        return null;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return this.arguments;
+    }
+
+    @Override
+    public String toString() {
+        return "call " + this.name + " " + this.arguments;
+    }
+}
@@ -0,0 +1,29 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Constant implements Operation {
+    public Value result;
+    public int value;
+
+    public Constant(Value result, int value) {
+        this.result = result;
+        this.value = value;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = " + this.value;
+    }
+}
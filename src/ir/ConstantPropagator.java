@@ -0,0 +1,171 @@
+package ir;
+
+import nodes.OperatorKind;
+import symbols.Location;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Propagates constants through values and through the scalar variables they are stored in, across blocks. A load of
+// a variable that holds the same constant on every path to it becomes that constant, operations on constants are
+// folded and branches on a constant become jumps.
+//
+// Globals are forgotten at every call and every store through an address. Arguments and locals are only followed
+// when their address is never taken, so nothing but a store to them changes them.
+public class ConstantPropagator {
+    private Function function;
+    private Set<Long> addressTaken;
+
+    public void propagate(IrProgram program) {
+        for (Function function : program.functions) {
+            propagate(function);
+        }
+    }
+
+    private void propagate(Function function) {
+        this.function = function;
+        this.addressTaken = function.getAddressTaken();
+
+        // The constants known on entry to each block, or null until some path to it has been followed
+        Map<BasicBlock, Map<Long, Integer>> entryStates = new HashMap<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+        entryStates.put(function.getEntry(), new HashMap<>());
+        pending.add(function.getEntry());
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.poll();
+            Map<Long, Integer> exitState = transfer(block, new HashMap<>(entryStates.get(block)), false);
+
+            for (BasicBlock successor : block.getSuccessors()) {
+                Map<Long, Integer> entryState = entryStates.get(successor);
+                Map<Long, Integer> merged = new HashMap<>(exitState);
+
+                if (entryState != null) {
+                    merged.entrySet().removeIf(e -> !e.getValue().equals(entryState.get(e.getKey())));
+                }
+
+                if (!merged.equals(entryState)) {
+                    entryStates.put(successor, merged);
+                    pending.add(successor);
+                }
+            }
+        }
+
+        for (BasicBlock block : function.blocks) {
+            if (entryStates.containsKey(block)) {
+                transfer(block, entryStates.get(block), true);
+            }
+        }
+
+        function.removeUnreachableBlocks();
+    }
+
+    // The constants known after the block, given those known before it. Rewriting replaces what is found to be
+    // constant as it goes.
+    private Map<Long, Integer> transfer(BasicBlock block, Map<Long, Integer> state, boolean rewrite) {
+        Map<Value, Integer> constants = new HashMap<>();
+        List<Operation> operations = block.operations;
+
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            Integer constant = null;
+
+            if (operation instanceof Constant) {
+                constants.put(operation.getResult(), ((Constant) operation).value);
+                continue;
+            } else if (operation instanceof Load && isTracked(((Load) operation).location)) {
+                constant = state.get(Locations.key(((Load) operation).location));
+            } else if (operation instanceof BinaryOperation) {
+                BinaryOperation binaryOperation = (BinaryOperation) operation;
+                constant = fold(binaryOperation.operator, constants.get(binaryOperation.left), constants.get(binaryOperation.right));
+            } else if (operation instanceof UnaryOperation) {
+                UnaryOperation unaryOperation = (UnaryOperation) operation;
+                constant = fold(unaryOperation.operator, constants.get(unaryOperation.operand));
+            } else if (operation instanceof Store && isTracked(((Store) operation).location)) {
+                Store store = (Store) operation;
+                Integer value = constants.get(store.value);
+
+                if (value != null) {
+                    state.put(Locations.key(store.location), value);
+                } else {
+                    state.remove(Locations.key(store.location));
+                }
+            } else if (operation instanceof StoreIndirect || operation instanceof Call) {
+                state.keySet().removeIf(key -> (key >> 32) == 0);
+            }
+
+            if (constant != null) {
+                constants.put(operation.getResult(), constant);
+
+                if (rewrite) {
+                    operations.set(i, new Constant(operation.getResult(), constant));
+                }
+            }
+        }
+
+        if (rewrite && block.terminator instanceof Branch) {
+            Branch branch = (Branch) block.terminator;
+            Integer condition = constants.get(branch.condition);
+
+            if (condition != null) {
+                block.terminator = new Jump(condition != 0 ? branch.ifTrue : branch.ifFalse);
+            }
+        }
+
+        return state;
+    }
+
+    private boolean isTracked(Location location) {
+        return location.frame == 0 || (location.frame == this.function.level && !this.addressTaken.contains(Locations.key(location)));
+    }
+
+    // Division by zero is left to fail when the program runs
+    private Integer fold(OperatorKind operator, Integer left, Integer right) {
+        if (left == null || right == null) {
+            return null;
+        }
+
+        switch (operator) {
+            case Add:
+                return left + right;
+            case Subtract:
+                return left - right;
+            case Multiply:
+                return left * right;
+            case Divide:
+                return right == 0 ? null : left / right;
+            case Mod:
+                return right == 0 ? null : left % right;
+            case LessThan:
+                return left < right ? 1 : 0;
+            case LessThanEquals:
+                return left <= right ? 1 : 0;
+            case GreaterThan:
+                return left > right ? 1 : 0;
+            case GreaterThanEquals:
+                return left >= right ? 1 : 0;
+            case Equals:
+                return left.intValue() == right.intValue() ? 1 : 0;
+            case NotEquals:
+                return left.intValue() != right.intValue() ? 1 : 0;
+            case And:
+                return left != 0 && right != 0 ? 1 : 0;
+            case Or:
+                return left != 0 || right != 0 ? 1 : 0;
+            default:
+                return null;
+        }
+    }
+
+    private Integer fold(OperatorKind operator, Integer operand) {
+        if (operand == null) {
+            return null;
+        }
+
+        return operator == OperatorKind.Minus ? -operand : (operand == 0 ? 1 : 0);
+    }
+}
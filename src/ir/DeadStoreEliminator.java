@@ -0,0 +1,70 @@
+package ir;
+
+import nodes.OperatorKind;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Removes stores to variables that are not read again before they are overwritten or the procedure returns, and then
+// the operations whose values are no longer used
+public class DeadStoreEliminator {
+
+    public void eliminate(IrProgram program) {
+        for (Function function : program.functions) {
+            Liveness liveness = new Liveness(function);
+
+            for (BasicBlock block : function.blocks) {
+                eliminateStores(block, liveness);
+                eliminateValues(block);
+            }
+        }
+    }
+
+    private void eliminateStores(BasicBlock block, Liveness liveness) {
+        Set<Long> live = new HashSet<>(liveness.getLiveOut(block));
+
+        for (int i = block.operations.size() - 1; i >= 0; i--) {
+            Operation operation = block.operations.get(i);
+
+            if (operation instanceof Store && liveness.isTracked(((Store) operation).location)) {
+                if (!live.remove(Locations.key(((Store) operation).location))) {
+                    block.operations.remove(i);
+                }
+            } else if (operation instanceof Load && liveness.isTracked(((Load) operation).location)) {
+                live.add(Locations.key(((Load) operation).location));
+            }
+        }
+    }
+
+    // Values are only used within the block that defines them
+    private void eliminateValues(BasicBlock block) {
+        Set<Value> used = new HashSet<>();
+
+        if (block.terminator.getCondition() != null) {
+            used.add(block.terminator.getCondition());
+        }
+
+        List<Operation> operations = block.operations;
+
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            Operation operation = operations.get(i);
+
+            if (operation.getResult() != null && !used.contains(operation.getResult()) && isPure(operation)) {
+                operations.remove(i);
+            } else {
+                used.addAll(operation.getOperands());
+            }
+        }
+    }
+
+    // Reading input and dividing, which may fail, have to happen even when their value is not used
+    private boolean isPure(Operation operation) {
+        if (operation instanceof BinaryOperation) {
+            OperatorKind operator = ((BinaryOperation) operation).operator;
+            return operator != OperatorKind.Divide && operator != OperatorKind.Mod;
+        }
+
+        return !(operation instanceof Read) && operation.getResult() != null;
+    }
+}
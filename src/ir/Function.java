@@ -0,0 +1,116 @@
+package ir;
+
+import symbols.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The control flow graph of a procedure. Its arguments and locals are at the display level of the procedure, the
+// arguments below the frame and the locals in a frame of frameSize slots.
+public class Function {
+    public final String name;
+    public final Symbol symbol;
+    public final int level;
+    public final int arity;
+    public int frameSize;
+
+    // The entry is always the first block
+    public List<BasicBlock> blocks;
+
+    private int valueCount;
+    private int blockCount;
+
+    public Function(String name, Symbol symbol, int level, int arity) {
+        this.name = name;
+        this.symbol = symbol;
+        this.level = level;
+        this.arity = arity;
+        this.blocks = new ArrayList<>();
+    }
+
+    public Value newValue(ValueType type) {
+        return new Value(this.valueCount++, type);
+    }
+
+    public BasicBlock newBlock() {
+        BasicBlock block = new BasicBlock(this.blockCount++);
+        this.blocks.add(block);
+        return block;
+    }
+
+    public BasicBlock getEntry() {
+        return this.blocks.get(0);
+    }
+
+    public Map<BasicBlock, List<BasicBlock>> getPredecessors() {
+        Map<BasicBlock, List<BasicBlock>> predecessors = new HashMap<>();
+
+        for (BasicBlock block : this.blocks) {
+            predecessors.put(block, new ArrayList<>());
+        }
+
+        for (BasicBlock block : this.blocks) {
+            for (BasicBlock successor : block.getSuccessors()) {
+                predecessors.get(successor).add(block);
+            }
+        }
+
+        return predecessors;
+    }
+
+    // The keys of the locations whose address is taken, which may therefore change through any indirect store
+    public Set<Long> getAddressTaken() {
+        Set<Long> addressTaken = new HashSet<>();
+
+        for (BasicBlock block : this.blocks) {
+            for (Operation operation : block.operations) {
+                if (operation instanceof AddressOf) {
+                    addressTaken.add(Locations.key(((AddressOf) operation).location));
+                }
+            }
+        }
+
+        return addressTaken;
+    }
+
+    // Drops the blocks that cannot be reached from the entry
+    public void removeUnreachableBlocks() {
+        Set<BasicBlock> reached = new HashSet<>();
+        List<BasicBlock> pending = new ArrayList<>();
+        reached.add(getEntry());
+        pending.add(getEntry());
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.remove(pending.size() - 1);
+
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (reached.add(successor)) {
+                    pending.add(successor);
+                }
+            }
+        }
+
+        this.blocks.removeIf(block -> !reached.contains(block));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(this.name + ":\n");
+
+        for (BasicBlock block : this.blocks) {
+            builder.append(block).append(":\n");
+
+            for (Operation operation : block.operations) {
+                builder.append("    ").append(operation).append('\n');
+            }
+
+            builder.append("    ").append(block.terminator).append('\n');
+        }
+
+        return builder.toString();
+    }
+}
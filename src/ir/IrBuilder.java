@@ -0,0 +1,468 @@
+package ir;
+
+import nodes.OperatorKind;
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.declarations.Variable;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.Builtin;
+import symbols.Location;
+import symbols.Symbol;
+import types.ArrayType;
+import types.FieldType;
+import types.FunctionType;
+import types.TypeKind;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Builds the control flow graph of every procedure of a checked program. Variables are placed as the Generator places
+// them with frame layout: globals at level 0, and the arguments and the locals of every block of a procedure, sharing
+// one frame, at level 1. Loops test their condition at the bottom, behind a guard, and conditions branch on each
+// operand of && and || in turn.
+public class IrBuilder {
+    private static final int LEVEL = 1;
+
+    private int displacement;
+    private Function function;
+    private BasicBlock block;
+
+    // Where break and continue statements of each loop go
+    private Map<LoopStatement, BasicBlock> breakTargets;
+    private Map<LoopStatement, BasicBlock> continueTargets;
+
+    private final StatementBuilder statementBuilder = new StatementBuilder();
+    private final ExpressionBuilder expressionBuilder = new ExpressionBuilder();
+
+    public IrProgram build(Program program) {
+        IrProgram irProgram = new IrProgram();
+        this.displacement = 1;
+        this.function = null;
+        this.breakTargets = new IdentityHashMap<>();
+        this.continueTargets = new IdentityHashMap<>();
+
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof VariableDeclaration) {
+                declare((VariableDeclaration) declaration, 0);
+            }
+        }
+
+        irProgram.globalsSize = this.displacement - 1;
+
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                irProgram.functions.add(buildFunction((FunctionDeclaration) declaration));
+            }
+        }
+
+        return irProgram;
+    }
+
+    private void declare(VariableDeclaration variableDeclaration, int level) {
+        for (Variable variable : variableDeclaration.variables) {
+            Symbol symbol = variable.symbol;
+            symbol.location = new Location(level, this.displacement);
+
+            if (symbol.getTypeKind() == TypeKind.Array) {
+                this.displacement += ((ArrayType) symbol.getType()).getSize();
+            } else {
+                this.displacement++;
+            }
+
+            if (this.function != null) {
+                this.function.frameSize = Math.max(this.function.frameSize, this.displacement - 1);
+            }
+        }
+    }
+
+    private Function buildFunction(FunctionDeclaration functionDeclaration) {
+        Symbol symbol = functionDeclaration.symbol;
+        FunctionType functionType = (FunctionType) symbol.getType();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            Symbol argumentSymbol = functionDeclaration.parameters.get(i).symbol;
+            argumentSymbol.location = new Location(LEVEL, i - 1 - functionType.fields.size());
+        }
+
+        this.function = new Function(functionDeclaration.name, symbol, LEVEL, functionType.fields.size());
+        this.displacement = 1;
+        this.block = this.function.newBlock();
+
+        buildBlockStatement(functionDeclaration.blockStatement, false);
+        this.block.terminator = new Return();
+        return this.function;
+    }
+
+    // The locals of a nested block are placed after those of the blocks around it, and their slots reused after it
+    private void buildBlockStatement(BlockStatement blockStatement, boolean isNested) {
+        int enclosingDisplacement = this.displacement;
+
+        for (VariableDeclaration variableDeclaration : blockStatement.variableDeclarations) {
+            declare(variableDeclaration, LEVEL);
+        }
+
+        for (Statement statement : blockStatement.statements) {
+            buildStatement(statement);
+        }
+
+        if (isNested) {
+            this.displacement = enclosingDisplacement;
+        }
+    }
+
+    private void buildStatement(Statement statement) {
+        statement.accept(this.statementBuilder);
+    }
+
+    private void buildIfStatement(IfStatement ifStatement) {
+        BasicBlock thenBlock = this.function.newBlock();
+        BasicBlock elseBlock = ifStatement.elseStatement != null ? this.function.newBlock() : null;
+        BasicBlock joinBlock = this.function.newBlock();
+
+        buildBranch(ifStatement.conditional, thenBlock, elseBlock != null ? elseBlock : joinBlock);
+
+        this.block = thenBlock;
+        buildStatement(ifStatement.statement);
+        jump(joinBlock);
+
+        if (elseBlock != null) {
+            this.block = elseBlock;
+            buildStatement(ifStatement.elseStatement);
+            jump(joinBlock);
+        }
+
+        this.block = joinBlock;
+    }
+
+    private void buildWhileStatement(WhileStatement whileStatement) {
+        BasicBlock bodyBlock = this.function.newBlock();
+        BasicBlock conditionBlock = this.function.newBlock();
+        BasicBlock exitBlock = this.function.newBlock();
+
+        this.breakTargets.put(whileStatement, exitBlock);
+        this.continueTargets.put(whileStatement, conditionBlock);
+
+        buildBranch(whileStatement.conditional, bodyBlock, exitBlock);
+
+        this.block = bodyBlock;
+        buildStatement(whileStatement.statement);
+        jump(conditionBlock);
+
+        this.block = conditionBlock;
+        buildBranch(whileStatement.conditional, bodyBlock, exitBlock);
+        this.block = exitBlock;
+    }
+
+    private void buildDoStatement(DoStatement doStatement) {
+        BasicBlock bodyBlock = this.function.newBlock();
+        BasicBlock conditionBlock = this.function.newBlock();
+        BasicBlock exitBlock = this.function.newBlock();
+
+        this.breakTargets.put(doStatement, exitBlock);
+        this.continueTargets.put(doStatement, conditionBlock);
+
+        jump(bodyBlock);
+        this.block = bodyBlock;
+        buildStatement(doStatement.statement);
+        jump(conditionBlock);
+
+        this.block = conditionBlock;
+        buildBranch(doStatement.conditional, bodyBlock, exitBlock);
+        this.block = exitBlock;
+    }
+
+    // The incrementer and the condition after it share a block, which continue jumps to
+    private void buildForStatement(ForStatement forStatement) {
+        if (forStatement.initializer != null) {
+            buildAssignment(forStatement.initializer.locationExpression, forStatement.initializer.expression);
+        }
+
+        BasicBlock bodyBlock = this.function.newBlock();
+        BasicBlock incrementerBlock = this.function.newBlock();
+        BasicBlock exitBlock = this.function.newBlock();
+
+        this.breakTargets.put(forStatement, exitBlock);
+        this.continueTargets.put(forStatement, incrementerBlock);
+
+        buildLoopCondition(forStatement.condition, bodyBlock, exitBlock);
+
+        this.block = bodyBlock;
+        buildStatement(forStatement.statement);
+        jump(incrementerBlock);
+
+        this.block = incrementerBlock;
+
+        if (forStatement.incrementer != null) {
+            buildAssignment(forStatement.incrementer.locationExpression, forStatement.incrementer.expression);
+        }
+
+        buildLoopCondition(forStatement.condition, bodyBlock, exitBlock);
+        this.block = exitBlock;
+    }
+
+    // A for loop without a condition loops until it breaks
+    private void buildLoopCondition(Expression condition, BasicBlock bodyBlock, BasicBlock exitBlock) {
+        if (condition != null) {
+            buildBranch(condition, bodyBlock, exitBlock);
+        } else {
+            jump(bodyBlock);
+        }
+    }
+
+    private void buildFunctionCallStatement(FunctionCallStatement functionCallStatement) {
+        Symbol symbol = functionCallStatement.symbol;
+
+        if (symbol.builtin == Builtin.SCAN) {
+            LocationExpression locationExpression = (LocationExpression) functionCallStatement.arguments.get(0);
+            Symbol variable = locationExpression.symbol;
+
+            if (variable.getTypeKind() == TypeKind.Array || variable.isReference()) {
+                Value address = buildAddress(locationExpression);
+                Value value = this.function.newValue(ValueType.INTEGER);
+                emit(new Read(value));
+                emit(new StoreIndirect(address, value));
+            } else {
+                Value value = this.function.newValue(ValueType.INTEGER);
+                emit(new Read(value));
+                emit(new Store(variable.location, value));
+            }
+            return;
+        } else if (symbol.builtin == Builtin.PRINT) {
+            emit(new Print(buildExpression(functionCallStatement.arguments.get(0))));
+            return;
+        }
+
+        FunctionType functionType = (FunctionType) symbol.getType();
+        List<Value> arguments = new ArrayList<>();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+            Expression expression = functionCallStatement.arguments.get(i);
+
+            if (field.isReference() || field.getTypeKind() == TypeKind.Array) {
+                arguments.add(buildAddress((LocationExpression) expression));
+            } else {
+                arguments.add(buildExpression(expression));
+            }
+        }
+
+        emit(new Call(functionCallStatement.name, symbol, arguments));
+    }
+
+    private void buildAssignment(LocationExpression locationExpression, Expression expression) {
+        Symbol symbol = locationExpression.symbol;
+
+        if (symbol.getTypeKind() == TypeKind.Array || symbol.isReference()) {
+            Value address = buildAddress(locationExpression);
+            emit(new StoreIndirect(address, buildExpression(expression)));
+        } else {
+            emit(new Store(symbol.location, buildExpression(expression)));
+        }
+    }
+
+    // Continues with ifTrue when the condition holds and with ifFalse otherwise, ending the current block
+    private void buildBranch(Expression condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+        if (condition instanceof BooleanExpression) {
+            jump(((BooleanExpression) condition).value ? ifTrue : ifFalse);
+            return;
+        }
+
+        if (condition instanceof UnaryExpression && ((UnaryExpression) condition).operator == OperatorKind.Not) {
+            buildBranch(((UnaryExpression) condition).expression, ifFalse, ifTrue);
+            return;
+        }
+
+        if (condition instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) condition;
+
+            if (binaryExpression.operator == OperatorKind.And || binaryExpression.operator == OperatorKind.Or) {
+                BasicBlock rightBlock = this.function.newBlock();
+
+                if (binaryExpression.operator == OperatorKind.And) {
+                    buildBranch(binaryExpression.left, rightBlock, ifFalse);
+                } else {
+                    buildBranch(binaryExpression.left, ifTrue, rightBlock);
+                }
+
+                this.block = rightBlock;
+                buildBranch(binaryExpression.right, ifTrue, ifFalse);
+                return;
+            }
+        }
+
+        this.block.terminator = new Branch(buildExpression(condition), ifTrue, ifFalse);
+    }
+
+    private Value buildExpression(Expression expression) {
+        return expression.accept(this.expressionBuilder);
+    }
+
+    private Value buildLocationExpression(LocationExpression locationExpression) {
+        Symbol symbol = locationExpression.symbol;
+        Value value = this.function.newValue(symbol.getTypeKind() == TypeKind.Boolean ? ValueType.BOOLEAN : ValueType.INTEGER);
+
+        if (symbol.getTypeKind() == TypeKind.Array || symbol.isReference()) {
+            emit(new LoadIndirect(value, buildAddress(locationExpression)));
+        } else {
+            emit(new Load(value, symbol.location));
+        }
+
+        return value;
+    }
+
+    // Ignoring + operator since it does nothing
+    private Value buildUnaryExpression(UnaryExpression unaryExpression) {
+        Value operand = buildExpression(unaryExpression.expression);
+
+        if (unaryExpression.operator != OperatorKind.Minus && unaryExpression.operator != OperatorKind.Not) {
+            return operand;
+        }
+
+        Value value = this.function.newValue(unaryExpression.operator == OperatorKind.Not ? ValueType.BOOLEAN : ValueType.INTEGER);
+        emit(new UnaryOperation(value, unaryExpression.operator, operand));
+        return value;
+    }
+
+    private Value buildBinaryExpression(BinaryExpression binaryExpression) {
+        Value left = buildExpression(binaryExpression.left);
+        Value right = buildExpression(binaryExpression.right);
+        Value value = this.function.newValue(isArithmetic(binaryExpression.operator) ? ValueType.INTEGER : ValueType.BOOLEAN);
+
+        emit(new BinaryOperation(value, binaryExpression.operator, left, right));
+        return value;
+    }
+
+    public static boolean isArithmetic(OperatorKind operatorKind) {
+        return operatorKind == OperatorKind.Add || operatorKind == OperatorKind.Subtract || operatorKind == OperatorKind.Multiply
+                || operatorKind == OperatorKind.Divide || operatorKind == OperatorKind.Mod;
+    }
+
+    // The address of a variable or array element, as passed to reference parameters
+    private Value buildAddress(LocationExpression locationExpression) {
+        Symbol symbol = locationExpression.symbol;
+        Value base = this.function.newValue(ValueType.ADDRESS);
+
+        if (symbol.isReference()) {
+            emit(new Load(base, symbol.location));
+        } else {
+            emit(new AddressOf(base, symbol.location));
+        }
+
+        if (symbol.getTypeKind() != TypeKind.Array || locationExpression.expression == null) {
+            return base;
+        }
+
+        Value index = buildExpression(locationExpression.expression);
+        Value address = this.function.newValue(ValueType.ADDRESS);
+        emit(new BinaryOperation(address, OperatorKind.Add, base, index));
+        return address;
+    }
+
+    private void emit(Operation operation) {
+        this.block.operations.add(operation);
+    }
+
+    private void jump(BasicBlock target) {
+        this.block.terminator = new Jump(target);
+    }
+
+    // Code after a break or continue is unreachable, but still needs a block to go in
+    private void jumpAway(BasicBlock target) {
+        jump(target);
+        this.block = this.function.newBlock();
+    }
+
+    // Calls the build method for the kind of statement visited
+    private class StatementBuilder implements StatementVisitor<Void, RuntimeException> {
+        @Override
+        public Void visitBlockStatement(BlockStatement statement) {
+            buildBlockStatement(statement, true);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStatement(IfStatement statement) {
+            buildIfStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStatement(WhileStatement statement) {
+            buildWhileStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitDoStatement(DoStatement statement) {
+            buildDoStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitForStatement(ForStatement statement) {
+            buildForStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCallStatement(FunctionCallStatement statement) {
+            buildFunctionCallStatement(statement);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignmentStatement(AssignmentStatement statement) {
+            buildAssignment(statement.locationExpression, statement.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitBreakStatement(BreakStatement statement) {
+            jumpAway(breakTargets.get(statement.loopStatement));
+            return null;
+        }
+
+        @Override
+        public Void visitContinueStatement(ContinueStatement statement) {
+            jumpAway(continueTargets.get(statement.loopStatement));
+            return null;
+        }
+    }
+
+    // Calls the build method for the kind of expression visited, returning the value holding its result
+    private class ExpressionBuilder implements ExpressionVisitor<Value, RuntimeException> {
+        @Override
+        public Value visitUnaryExpression(UnaryExpression expression) {
+            return buildUnaryExpression(expression);
+        }
+
+        @Override
+        public Value visitBinaryExpression(BinaryExpression expression) {
+            return buildBinaryExpression(expression);
+        }
+
+        @Override
+        public Value visitLocationExpression(LocationExpression expression) {
+            return buildLocationExpression(expression);
+        }
+
+        @Override
+        public Value visitIntegerExpression(IntegerExpression expression) {
+            Value value = function.newValue(ValueType.INTEGER);
+            emit(new Constant(value, expression.value));
+            return value;
+        }
+
+        @Override
+        public Value visitBooleanExpression(BooleanExpression expression) {
+            Value value = function.newValue(ValueType.BOOLEAN);
+            emit(new Constant(value, expression.value ? 1 : 0));
+            return value;
+        }
+    }
+}
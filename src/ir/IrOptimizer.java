@@ -0,0 +1,12 @@
+package ir;
+
+// Runs the passes over the control flow graphs of a program, for -O2
+public class IrOptimizer {
+
+    public void optimize(IrProgram program) {
+        new ConstantPropagator().propagate(program);
+
+        // Constants leave behind stores and loads that are no longer needed
+        new DeadStoreEliminator().eliminate(program);
+    }
+}
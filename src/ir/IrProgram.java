@@ -0,0 +1,14 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A whole program: its procedures and the size of its globals, which the program allocates before calling main
+public class IrProgram {
+    public int globalsSize;
+    public List<Function> functions;
+
+    public IrProgram() {
+        this.functions = new ArrayList<>();
+    }
+}
@@ -0,0 +1,27 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Jump implements Terminator {
+    public BasicBlock target;
+
+    public Jump(BasicBlock target) {
+        this.target = target;
+    }
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Collections.singletonList(this.target);
+    }
+
+    @Override
+    public Value getCondition() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "jump " + this.target;
+    }
+}
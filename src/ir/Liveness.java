@@ -0,0 +1,81 @@
+package ir;
+
+import symbols.Location;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Which variables of a function may still be read after each of its blocks. Only arguments and locals whose address
+// is never taken are followed: globals, and anything reached through an address, may be read by other procedures at
+// any time. Neither arguments nor locals are read once the procedure returns.
+public class Liveness {
+    private final Function function;
+    private final Set<Long> addressTaken;
+    private final Map<BasicBlock, Set<Long>> liveOut;
+
+    public Liveness(Function function) {
+        this.function = function;
+        this.addressTaken = function.getAddressTaken();
+        this.liveOut = new HashMap<>();
+
+        Map<BasicBlock, Set<Long>> uses = new HashMap<>();
+        Map<BasicBlock, Set<Long>> definitions = new HashMap<>();
+        Map<BasicBlock, Set<Long>> liveIn = new HashMap<>();
+
+        for (BasicBlock block : function.blocks) {
+            Set<Long> blockUses = new HashSet<>();
+            Set<Long> blockDefinitions = new HashSet<>();
+
+            for (Operation operation : block.operations) {
+                if (operation instanceof Load && isTracked(((Load) operation).location)) {
+                    long key = Locations.key(((Load) operation).location);
+
+                    if (!blockDefinitions.contains(key)) {
+                        blockUses.add(key);
+                    }
+                } else if (operation instanceof Store && isTracked(((Store) operation).location)) {
+                    blockDefinitions.add(Locations.key(((Store) operation).location));
+                }
+            }
+
+            uses.put(block, blockUses);
+            definitions.put(block, blockDefinitions);
+            liveIn.put(block, new HashSet<>(blockUses));
+            this.liveOut.put(block, new HashSet<>());
+        }
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = function.blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = function.blocks.get(i);
+                Set<Long> out = this.liveOut.get(block);
+
+                for (BasicBlock successor : block.getSuccessors()) {
+                    out.addAll(liveIn.get(successor));
+                }
+
+                Set<Long> in = new HashSet<>(out);
+                in.removeAll(definitions.get(block));
+                in.addAll(uses.get(block));
+
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public boolean isTracked(Location location) {
+        return location.frame == this.function.level && !this.addressTaken.contains(Locations.key(location));
+    }
+
+    public Set<Long> getLiveOut(BasicBlock block) {
+        return this.liveOut.get(block);
+    }
+}
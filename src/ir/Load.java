@@ -0,0 +1,32 @@
+package ir;
+
+import symbols.Location;
+
+import java.util.Collections;
+import java.util.List;
+
+// Reads the variable at a location
+public class Load implements Operation {
+    public Value result;
+    public Location location;
+
+    public Load(Value result, Location location) {
+        this.result = result;
+        this.location = location;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = load " + Locations.toString(this.location);
+    }
+}
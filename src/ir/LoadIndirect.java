@@ -0,0 +1,29 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class LoadIndirect implements Operation {
+    public Value result;
+    public Value address;
+
+    public LoadIndirect(Value result, Value address) {
+        this.result = result;
+        this.address = address;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.singletonList(this.address);
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = load [" + this.address + "]";
+    }
+}
@@ -0,0 +1,15 @@
+package ir;
+
+import symbols.Location;
+
+// Locations have no equality of their own, so the passes key variables by frame and displacement
+public class Locations {
+
+    public static long key(Location location) {
+        return ((long) location.frame << 32) | (location.displacement & 0xffffffffL);
+    }
+
+    public static String toString(Location location) {
+        return location.frame + ":" + location.displacement;
+    }
+}
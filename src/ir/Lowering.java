@@ -0,0 +1,322 @@
+package ir;
+
+import generator.CodeBuffer;
+import generator.GeneratorException;
+import generator.Instruction;
+import generator.OpCode;
+import symbols.Label;
+import symbols.Location;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Lowers the control flow graphs of a program to SM code, laid out by BlockLayout first. A value used once, later in
+// the same block, with nothing in between that stores, calls or does input or output, is computed right where it is
+// used, so expressions come out as the stack code the Generator emits for them. Any other value that is used is kept
+// in a temporary slot of the frame, after the locals.
+public class Lowering {
+    private CodeBuffer code;
+    private Function function;
+    private Map<BasicBlock, Label> labels;
+
+    // For the block being lowered
+    private Map<Value, Operation> definitions;
+    private Set<Value> inlined;
+    private Map<Value, Location> temporaries;
+
+    public List<Instruction> lower(IrProgram program) throws GeneratorException {
+        new BlockLayout().layout(program);
+
+        this.code = new CodeBuffer();
+        Function main = null;
+
+        for (Function function : program.functions) {
+            function.symbol.label = this.code.newLabel();
+
+            if (function.name.equals("main")) {
+                main = function;
+            }
+        }
+
+        if (main == null) {
+            throw new GeneratorException("No main procedure to call");
+        }
+
+        Label startLabel = this.code.newLabel();
+        emit(new Instruction(OpCode.INIT));
+
+        if (program.globalsSize != 0) {
+            emit(new Instruction(OpCode.ALLOC, program.globalsSize));
+        }
+
+        emit(new Instruction(OpCode.JMP, startLabel));
+
+        for (Function function : program.functions) {
+            lowerFunction(function);
+        }
+
+        emit(new Instruction(startLabel, OpCode.NOP));
+        emit(new Instruction(OpCode.CALL, main.symbol.label));
+
+        if (program.globalsSize != 0) {
+            emit(new Instruction(OpCode.ALLOC, -program.globalsSize));
+        }
+
+        emit(new Instruction(OpCode.HALT));
+
+        this.code.checkResolved();
+        return this.code.getInstructions();
+    }
+
+    private void lowerFunction(Function function) throws GeneratorException {
+        this.function = function;
+        this.labels = new HashMap<>();
+
+        // Temporaries are only live within a block, so every block starts from the same slot
+        int temporaryCount = 0;
+
+        for (BasicBlock block : function.blocks) {
+            temporaryCount = Math.max(temporaryCount, analyze(block).size());
+        }
+
+        int frameSize = function.frameSize + temporaryCount;
+
+        emit(new Instruction(function.symbol.label, OpCode.PROC, function.level));
+
+        if (frameSize != 0) {
+            emit(new Instruction(OpCode.ALLOC, frameSize));
+        }
+
+        for (int i = 0; i < function.blocks.size(); i++) {
+            BasicBlock block = function.blocks.get(i);
+            BasicBlock next = i + 1 < function.blocks.size() ? function.blocks.get(i + 1) : null;
+
+            emit(new Instruction(label(block), OpCode.NOP));
+            this.temporaries = analyze(block);
+
+            for (Operation operation : block.operations) {
+                lowerOperation(operation);
+            }
+
+            lowerTerminator(block.terminator, next, frameSize);
+        }
+    }
+
+    // Decides which values of a block are inlined, and gives the others that are used a temporary slot
+    private Map<Value, Location> analyze(BasicBlock block) {
+        this.definitions = new HashMap<>();
+        this.inlined = new HashSet<>();
+
+        Map<Value, Integer> positions = new HashMap<>();
+        Map<Value, Integer> uses = new HashMap<>();
+        List<Operation> operations = block.operations;
+
+        for (int i = 0; i <= operations.size(); i++) {
+            for (Value operand : operandsAt(block, i)) {
+                uses.merge(operand, 1, Integer::sum);
+            }
+
+            if (i < operations.size() && operations.get(i).getResult() != null) {
+                this.definitions.put(operations.get(i).getResult(), operations.get(i));
+                positions.put(operations.get(i).getResult(), i);
+            }
+        }
+
+        int lastEffect = -1;
+
+        for (int i = 0; i <= operations.size(); i++) {
+            for (Value operand : operandsAt(block, i)) {
+                if (uses.get(operand) == 1 && positions.get(operand) >= lastEffect) {
+                    this.inlined.add(operand);
+                }
+            }
+
+            if (i < operations.size() && hasEffect(operations.get(i))) {
+                lastEffect = i;
+            }
+        }
+
+        Map<Value, Location> temporaries = new HashMap<>();
+
+        for (Operation operation : operations) {
+            Value result = operation.getResult();
+
+            if (result != null && uses.containsKey(result) && !this.inlined.contains(result)) {
+                temporaries.put(result, new Location(this.function.level, this.function.frameSize + 1 + temporaries.size()));
+            }
+        }
+
+        return temporaries;
+    }
+
+    // The values the operation at index uses, where the terminator comes after the last operation
+    private List<Value> operandsAt(BasicBlock block, int index) {
+        if (index < block.operations.size()) {
+            return block.operations.get(index).getOperands();
+        }
+
+        Value condition = block.terminator.getCondition();
+        return condition != null ? Collections.singletonList(condition) : Collections.emptyList();
+    }
+
+    private boolean hasEffect(Operation operation) {
+        return operation instanceof Store || operation instanceof StoreIndirect || operation instanceof Call
+                || operation instanceof Read || operation instanceof Print;
+    }
+
+    private void lowerOperation(Operation operation) throws GeneratorException {
+        Value result = operation.getResult();
+
+        if (result == null) {
+            lowerEffect(operation);
+        } else if (this.temporaries.containsKey(result)) {
+            lowerValue(operation);
+            emit(new Instruction(OpCode.ST, this.temporaries.get(result)));
+        } else if (!this.inlined.contains(result) && (operation instanceof Read || operation instanceof BinaryOperation)) {
+            // Unused, but the input is still consumed and a division by zero still fails
+            lowerValue(operation);
+            emit(new Instruction(OpCode.POP));
+        }
+    }
+
+    private void lowerEffect(Operation operation) throws GeneratorException {
+        if (operation instanceof Store) {
+            Store store = (Store) operation;
+            pushValue(store.value);
+            emit(new Instruction(OpCode.ST, store.location));
+        } else if (operation instanceof StoreIndirect) {
+            StoreIndirect storeIndirect = (StoreIndirect) operation;
+            Operation address = inlinedDefinition(storeIndirect.address);
+
+            if (address instanceof Load) {
+                pushValue(storeIndirect.value);
+                emit(new Instruction(OpCode.STI, ((Load) address).location));
+            } else {
+                pushValue(storeIndirect.address);
+                pushValue(storeIndirect.value);
+                emit(new Instruction(OpCode.STL));
+            }
+        } else if (operation instanceof Print) {
+            pushValue(((Print) operation).value);
+            emit(new Instruction(OpCode.OUT));
+        } else {
+            Call call = (Call) operation;
+
+            for (Value argument : call.arguments) {
+                pushValue(argument);
+            }
+
+            emit(new Instruction(OpCode.CALL, call.callee.label));
+
+            for (int i = 0; i < call.arguments.size(); i++) {
+                emit(new Instruction(OpCode.POP));
+            }
+        }
+    }
+
+    private void pushValue(Value value) throws GeneratorException {
+        if (this.inlined.contains(value)) {
+            lowerValue(this.definitions.get(value));
+        } else {
+            emit(new Instruction(OpCode.LDV, this.temporaries.get(value)));
+        }
+    }
+
+    // The operation defining a value, if it is computed where it is used
+    private Operation inlinedDefinition(Value value) {
+        return this.inlined.contains(value) ? this.definitions.get(value) : null;
+    }
+
+    private void lowerValue(Operation operation) throws GeneratorException {
+        if (operation instanceof Constant) {
+            emit(new Instruction(null, OpCode.LDC, String.valueOf(((Constant) operation).value), null));
+        } else if (operation instanceof Load) {
+            emit(new Instruction(OpCode.LDV, ((Load) operation).location));
+        } else if (operation instanceof AddressOf) {
+            emit(new Instruction(OpCode.LDA, ((AddressOf) operation).location));
+        } else if (operation instanceof LoadIndirect) {
+            LoadIndirect loadIndirect = (LoadIndirect) operation;
+            Operation address = inlinedDefinition(loadIndirect.address);
+
+            if (address instanceof Load) {
+                emit(new Instruction(OpCode.LDI, ((Load) address).location));
+            } else {
+                pushValue(loadIndirect.address);
+                emit(new Instruction(OpCode.IND));
+            }
+        } else if (operation instanceof UnaryOperation) {
+            UnaryOperation unaryOperation = (UnaryOperation) operation;
+            pushValue(unaryOperation.operand);
+            emit(new Instruction(unaryOperation.operator.opCode));
+        } else if (operation instanceof BinaryOperation) {
+            BinaryOperation binaryOperation = (BinaryOperation) operation;
+            pushValue(binaryOperation.left);
+            pushValue(binaryOperation.right);
+            emit(new Instruction(binaryOperation.operator.opCode));
+        } else {
+            emit(new Instruction(OpCode.IN));
+        }
+    }
+
+    // Falls through to next where possible. A comparison computed only for the branch becomes a comparison jump.
+    private void lowerTerminator(Terminator terminator, BasicBlock next, int frameSize) throws GeneratorException {
+        if (terminator instanceof Return) {
+            if (frameSize != 0) {
+                emit(new Instruction(OpCode.ALLOC, -frameSize));
+            }
+
+            emit(new Instruction(OpCode.RET, this.function.level));
+            return;
+        }
+
+        if (terminator instanceof Jump) {
+            if (((Jump) terminator).target != next) {
+                emit(new Instruction(OpCode.JMP, label(((Jump) terminator).target)));
+            }
+            return;
+        }
+
+        Branch branch = (Branch) terminator;
+
+        if (branch.ifTrue == next) {
+            lowerConditionalJump(branch.condition, false, branch.ifFalse);
+        } else {
+            lowerConditionalJump(branch.condition, true, branch.ifTrue);
+
+            if (branch.ifFalse != next) {
+                emit(new Instruction(OpCode.JMP, label(branch.ifFalse)));
+            }
+        }
+    }
+
+    private void lowerConditionalJump(Value condition, boolean jumpWhen, BasicBlock target) throws GeneratorException {
+        Operation definition = inlinedDefinition(condition);
+
+        if (definition instanceof BinaryOperation) {
+            BinaryOperation comparison = (BinaryOperation) definition;
+            OpCode comparisonJump = comparison.operator.jump(jumpWhen);
+
+            if (comparisonJump != null) {
+                pushValue(comparison.left);
+                pushValue(comparison.right);
+                emit(new Instruction(comparisonJump, label(target)));
+                return;
+            }
+        }
+
+        pushValue(condition);
+        emit(new Instruction(jumpWhen ? OpCode.JMPT : OpCode.JMPF, label(target)));
+    }
+
+    private Label label(BasicBlock block) {
+        return this.labels.computeIfAbsent(block, b -> this.code.newLabel());
+    }
+
+    private void emit(Instruction instruction) throws GeneratorException {
+        this.code.emit(instruction);
+    }
+}
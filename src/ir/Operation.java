@@ -0,0 +1,11 @@
+package ir;
+
+import java.util.List;
+
+// A step of a BasicBlock. Operations that compute something define a Value, the others only have effects.
+public interface Operation {
+    // The value defined, or null
+    Value getResult();
+
+    List<Value> getOperands();
+}
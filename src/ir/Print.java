@@ -0,0 +1,27 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Print implements Operation {
+    public Value value;
+
+    public Print(Value value) {
+        this.value = value;
+    }
+
+    @Override
+    public Value getResult() {
+        return null;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.singletonList(this.value);
+    }
+
+    @Override
+    public String toString() {
+        return "print " + this.value;
+    }
+}
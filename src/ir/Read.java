@@ -0,0 +1,28 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+// Reads an integer from the input, for scan
+public class Read implements Operation {
+    public Value result;
+
+    public Read(Value result) {
+        this.result = result;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = read";
+    }
+}
@@ -0,0 +1,22 @@
+package ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Return implements Terminator {
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Value getCondition() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "return";
+    }
+}
@@ -0,0 +1,32 @@
+package ir;
+
+import symbols.Location;
+
+import java.util.Collections;
+import java.util.List;
+
+// Writes the variable at a location
+public class Store implements Operation {
+    public Location location;
+    public Value value;
+
+    public Store(Location location, Value value) {
+        this.location = location;
+        this.value = value;
+    }
+
+    @Override
+    public Value getResult() {
+        return null;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.singletonList(this.value);
+    }
+
+    @Override
+    public String toString() {
+        return "store " + Locations.toString(this.location) + ", " + this.value;
+    }
+}
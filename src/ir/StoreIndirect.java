@@ -0,0 +1,29 @@
+package ir;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class StoreIndirect implements Operation {
+    public Value address;
+    public Value value;
+
+    public StoreIndirect(Value address, Value value) {
+        this.address = address;
+        this.value = value;
+    }
+
+    @Override
+    public Value getResult() {
+        return null;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Arrays.asList(this.address, this.value);
+    }
+
+    @Override
+    public String toString() {
+        return "store [" + this.address + "], " + this.value;
+    }
+}
@@ -0,0 +1,10 @@
+package ir;
+
+import java.util.List;
+
+// How a BasicBlock ends: the blocks control may continue with, and the value it decides on, if any
+public interface Terminator {
+    List<BasicBlock> getSuccessors();
+
+    Value getCondition();
+}
@@ -0,0 +1,33 @@
+package ir;
+
+import nodes.OperatorKind;
+
+import java.util.Collections;
+import java.util.List;
+
+public class UnaryOperation implements Operation {
+    public Value result;
+    public OperatorKind operator;
+    public Value operand;
+
+    public UnaryOperation(Value result, OperatorKind operator, Value operand) {
+        this.result = result;
+        this.operator = operator;
+        this.operand = operand;
+    }
+
+    @Override
+    public Value getResult() {
+        return this.result;
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return Collections.singletonList(this.operand);
+    }
+
+    @Override
+    public String toString() {
+        return this.result + " = " + this.operator + " " + this.operand;
+    }
+}
@@ -0,0 +1,17 @@
+package ir;
+
+// A virtual value, defined by exactly one Operation and used within the same block
+public class Value {
+    public final int id;
+    public final ValueType type;
+
+    public Value(int id, ValueType type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    @Override
+    public String toString() {
+        return "%" + this.id;
+    }
+}
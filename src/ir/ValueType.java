@@ -0,0 +1,9 @@
+package ir;
+
+// What a value holds. Addresses are those of variables and array elements, passed to reference parameters and read
+// or written through.
+public enum ValueType {
+    INTEGER,
+    BOOLEAN,
+    ADDRESS
+}
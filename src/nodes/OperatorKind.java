@@ -1,20 +1,43 @@
 package nodes;
 
+import generator.OpCode;
+
+// Each binary operator carries the instruction computing it and, for comparisons, the jumps taken when it holds and
+// when it does not
 public enum OperatorKind {
-    Assign,
-    LessThan,
-    LessThanEquals,
-    GreaterThan,
-    GreaterThanEquals,
-    Equals,
-    NotEquals,
-    Not,
-    And,
-    Or,
-    Add,
-    Subtract,
-    Multiply,
-    Divide,
-    Mod,
-    Minus
+    Assign(null),
+    LessThan(OpCode.LT, OpCode.JLT, OpCode.JGE),
+    LessThanEquals(OpCode.LE, OpCode.JLE, OpCode.JGT),
+    GreaterThan(OpCode.GT, OpCode.JGT, OpCode.JLE),
+    GreaterThanEquals(OpCode.GE, OpCode.JGE, OpCode.JLT),
+    Equals(OpCode.EQ, OpCode.JEQ, OpCode.JNE),
+    NotEquals(OpCode.NE, OpCode.JNE, OpCode.JEQ),
+    Not(OpCode.NOT),
+    And(OpCode.AND),
+    Or(OpCode.OR),
+    Add(OpCode.ADD),
+    Subtract(OpCode.SUB),
+    Multiply(OpCode.MULT),
+    Divide(OpCode.DIV),
+    Mod(OpCode.MOD),
+    Minus(OpCode.NEG);
+
+    public final OpCode opCode;
+    public final OpCode jumpIfTrue;
+    public final OpCode jumpIfFalse;
+
+    OperatorKind(OpCode opCode) {
+        this(opCode, null, null);
+    }
+
+    OperatorKind(OpCode opCode, OpCode jumpIfTrue, OpCode jumpIfFalse) {
+        this.opCode = opCode;
+        this.jumpIfTrue = jumpIfTrue;
+        this.jumpIfFalse = jumpIfFalse;
+    }
+
+    // The comparison jump taken when the comparison is jumpWhen, or null when the operator is not a comparison
+    public OpCode jump(boolean jumpWhen) {
+        return jumpWhen ? this.jumpIfTrue : this.jumpIfFalse;
+    }
 }
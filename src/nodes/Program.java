@@ -1,6 +1,7 @@
 package nodes;
 
 import nodes.declarations.Declaration;
+import symbols.Symbol;
 import symbols.SymbolTable;
 
 import java.util.List;
@@ -9,6 +10,9 @@ public class Program implements ParserNode {
     public List<Declaration> declarations;
     public SymbolTable symbolTable;
 
+    // The main function, bound by the Checker
+    public Symbol main;
+
 
     public Program(List<Declaration> declarations) {
         this.declarations = declarations;
@@ -1,6 +1,7 @@
 package nodes.declarations;
 
 import nodes.statements.BlockStatement;
+import symbols.Symbol;
 import symbols.SymbolTable;
 
 import java.util.ArrayList;
@@ -12,6 +13,9 @@ public class FunctionDeclaration implements Declaration {
     public BlockStatement blockStatement;
     public SymbolTable symbolTable;
 
+    // The symbol the declaration introduces, bound by the Checker
+    public Symbol symbol;
+
     public FunctionDeclaration(String name, List<Parameter> parameters, BlockStatement blockStatement) {
         this.name = name;
         this.parameters = parameters;
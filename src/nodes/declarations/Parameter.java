@@ -1,5 +1,6 @@
 package nodes.declarations;
 
+import symbols.Symbol;
 import types.TypeKind;
 
 public class Parameter {
@@ -8,6 +9,9 @@ public class Parameter {
     public String name;
     public boolean isArray;
 
+    // The symbol the parameter introduces, bound by the Checker
+    public Symbol symbol;
+
     public Parameter(TypeKind typeKind, boolean isAddr, String name, boolean isArray) {
         this.typeKind = typeKind;
         this.isAddr = isAddr;
@@ -1,9 +1,14 @@
 package nodes.declarations;
 
+import symbols.Symbol;
+
 public class Variable {
     public String name;
     public Integer number;
 
+    // The symbol the declaration introduces, bound by the Checker
+    public Symbol symbol;
+
 
     public Variable(String name, int number) {
         this.name = name;
@@ -12,4 +12,9 @@ public class BinaryExpression implements Expression {
         this.operator = operator;
         this.right = right;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E {
+        return visitor.visitBinaryExpression(this);
+    }
 }
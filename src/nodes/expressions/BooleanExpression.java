@@ -6,4 +6,9 @@ public class BooleanExpression implements Expression {
     public BooleanExpression(Boolean value) {
         this.value = value;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E {
+        return visitor.visitBooleanExpression(this);
+    }
 }
@@ -3,4 +3,5 @@ package nodes.expressions;
 import nodes.ParserNode;
 
 public interface Expression extends ParserNode {
+    <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E;
 }
@@ -0,0 +1,14 @@
+package nodes.expressions;
+
+// One method for each kind of expression, called by Expression.accept
+public interface ExpressionVisitor<R, E extends Exception> {
+    R visitUnaryExpression(UnaryExpression expression) throws E;
+
+    R visitBinaryExpression(BinaryExpression expression) throws E;
+
+    R visitLocationExpression(LocationExpression expression) throws E;
+
+    R visitIntegerExpression(IntegerExpression expression) throws E;
+
+    R visitBooleanExpression(BooleanExpression expression) throws E;
+}
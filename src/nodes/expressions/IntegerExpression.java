@@ -6,4 +6,9 @@ public class IntegerExpression implements Expression {
     public IntegerExpression(Integer value) {
         this.value = value;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E {
+        return visitor.visitIntegerExpression(this);
+    }
 }
@@ -1,9 +1,14 @@
 package nodes.expressions;
 
+import symbols.Symbol;
+
 public class LocationExpression implements Expression {
     public String name;
     public Expression expression;
 
+    // The variable the name resolves to, bound by the Checker
+    public Symbol symbol;
+
     public LocationExpression(String name, Expression expression) {
         this.name = name;
         this.expression = expression;
@@ -12,4 +17,15 @@ public class LocationExpression implements Expression {
     public LocationExpression(String name) {
         this.name = name;
     }
+
+    public LocationExpression(String name, Expression expression, Symbol symbol) {
+        this.name = name;
+        this.expression = expression;
+        this.symbol = symbol;
+    }
+
+    @Override
+    public <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E {
+        return visitor.visitLocationExpression(this);
+    }
 }
@@ -10,4 +10,9 @@ public class UnaryExpression implements Expression {
         this.operator = operator;
         this.expression = expression;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(ExpressionVisitor<R, E> visitor) throws E {
+        return visitor.visitUnaryExpression(this);
+    }
 }
@@ -11,4 +11,9 @@ public class AssignmentStatement implements Statement {
         this.locationExpression = locationExpression;
         this.expression = expression;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitAssignmentStatement(this);
+    }
 }
@@ -14,4 +14,9 @@ public class BlockStatement implements Statement {
         this.variableDeclarations = variableDeclarations;
         this.statements = statements;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitBlockStatement(this);
+    }
 }
@@ -4,4 +4,9 @@ public class BreakStatement implements Statement {
     public LoopStatement loopStatement;
 
     public BreakStatement() { }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitBreakStatement(this);
+    }
 }
@@ -4,4 +4,9 @@ public class ContinueStatement implements Statement {
     public LoopStatement loopStatement;
 
     public ContinueStatement() { }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitContinueStatement(this);
+    }
 }
@@ -10,4 +10,9 @@ public class DoStatement extends LoopStatement {
         this.statement = statement;
         this.conditional = conditional;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitDoStatement(this);
+    }
 }
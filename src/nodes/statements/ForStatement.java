@@ -14,4 +14,9 @@ public class ForStatement extends LoopStatement {
         this.incrementer = incrementer;
         this.statement = statement;
     }
-}
\ No newline at end of file
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitForStatement(this);
+    }
+}
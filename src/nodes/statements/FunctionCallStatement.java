@@ -1,6 +1,7 @@
 package nodes.statements;
 
 import nodes.expressions.Expression;
+import symbols.Symbol;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,6 +10,9 @@ public class FunctionCallStatement implements Statement {
     public String name;
     public List<Expression> arguments;
 
+    // The function the name resolves to, bound by the Checker
+    public Symbol symbol;
+
     public FunctionCallStatement(String name, List<Expression> arguments) {
         this.name = name;
         this.arguments = arguments;
@@ -18,4 +22,9 @@ public class FunctionCallStatement implements Statement {
         this.name = name;
         this.arguments = new ArrayList<>();
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitFunctionCallStatement(this);
+    }
 }
@@ -12,4 +12,9 @@ public class IfStatement implements Statement {
         this.statement = statement;
         this.elseStatement = elseStatement;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitIfStatement(this);
+    }
 }
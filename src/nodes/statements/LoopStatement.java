@@ -1,7 +1,10 @@
 package nodes.statements;
 
+import symbols.Label;
+
 public abstract class LoopStatement implements Statement {
-    public String startLabel;
-    public String exitLabel;
+    public Label startLabel;
+    public Label exitLabel;
     public int level;
+    public int displacement;
 }
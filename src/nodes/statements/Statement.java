@@ -3,4 +3,5 @@ package nodes.statements;
 import nodes.ParserNode;
 
 public interface Statement extends ParserNode {
+    <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E;
 }
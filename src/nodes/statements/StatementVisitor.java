@@ -0,0 +1,23 @@
+package nodes.statements;
+
+// One method for each kind of statement, called by Statement.accept, so passes over the tree dispatch on the kind of a
+// statement with a single virtual call instead of testing it against every class in turn
+public interface StatementVisitor<R, E extends Exception> {
+    R visitBlockStatement(BlockStatement statement) throws E;
+
+    R visitIfStatement(IfStatement statement) throws E;
+
+    R visitWhileStatement(WhileStatement statement) throws E;
+
+    R visitDoStatement(DoStatement statement) throws E;
+
+    R visitForStatement(ForStatement statement) throws E;
+
+    R visitFunctionCallStatement(FunctionCallStatement statement) throws E;
+
+    R visitAssignmentStatement(AssignmentStatement statement) throws E;
+
+    R visitBreakStatement(BreakStatement statement) throws E;
+
+    R visitContinueStatement(ContinueStatement statement) throws E;
+}
@@ -10,4 +10,9 @@ public class WhileStatement extends LoopStatement {
         this.conditional = conditional;
         this.statement = statement;
     }
+
+    @Override
+    public <R, E extends Exception> R accept(StatementVisitor<R, E> visitor) throws E {
+        return visitor.visitWhileStatement(this);
+    }
 }
@@ -0,0 +1,106 @@
+package optimizer;
+
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.statements.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Which declared functions each function calls. Calls to the built-in scan and print are not part of the graph.
+public class CallGraph {
+    private final Map<String, FunctionDeclaration> functions;
+    private final Map<FunctionDeclaration, Set<FunctionDeclaration>> callees;
+
+    public CallGraph(Program program) {
+        this.functions = new LinkedHashMap<>();
+        this.callees = new HashMap<>();
+
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                FunctionDeclaration functionDeclaration = (FunctionDeclaration) declaration;
+                this.functions.put(functionDeclaration.name, functionDeclaration);
+            }
+        }
+
+        for (FunctionDeclaration functionDeclaration : this.functions.values()) {
+            Set<FunctionDeclaration> calls = new LinkedHashSet<>();
+            collectCalls(functionDeclaration.blockStatement, calls);
+            this.callees.put(functionDeclaration, calls);
+        }
+    }
+
+    public FunctionDeclaration getFunction(String name) {
+        return this.functions.get(name);
+    }
+
+    public Set<FunctionDeclaration> getCallees(FunctionDeclaration functionDeclaration) {
+        return this.callees.get(functionDeclaration);
+    }
+
+    // A function is recursive when it can reach itself through the calls it makes
+    public boolean isRecursive(FunctionDeclaration functionDeclaration) {
+        return reachableFrom(this.callees.get(functionDeclaration)).contains(functionDeclaration);
+    }
+
+    public Set<FunctionDeclaration> reachableFrom(String name) {
+        Set<FunctionDeclaration> start = new HashSet<>();
+
+        if (this.functions.containsKey(name)) {
+            start.add(this.functions.get(name));
+        }
+
+        Set<FunctionDeclaration> reachable = reachableFrom(start);
+        reachable.addAll(start);
+        return reachable;
+    }
+
+    private Set<FunctionDeclaration> reachableFrom(Set<FunctionDeclaration> start) {
+        Set<FunctionDeclaration> reachable = new HashSet<>();
+        Deque<FunctionDeclaration> pending = new ArrayDeque<>(start);
+
+        while (!pending.isEmpty()) {
+            for (FunctionDeclaration callee : this.callees.get(pending.pop())) {
+                if (reachable.add(callee)) {
+                    pending.push(callee);
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+    private void collectCalls(Statement statement, Set<FunctionDeclaration> calls) {
+        if (statement instanceof BlockStatement) {
+            for (Statement child : ((BlockStatement) statement).statements) {
+                collectCalls(child, calls);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collectCalls(ifStatement.statement, calls);
+
+            if (ifStatement.elseStatement != null) {
+                collectCalls(ifStatement.elseStatement, calls);
+            }
+        } else if (statement instanceof WhileStatement) {
+            collectCalls(((WhileStatement) statement).statement, calls);
+        } else if (statement instanceof DoStatement) {
+            collectCalls(((DoStatement) statement).statement, calls);
+        } else if (statement instanceof ForStatement) {
+            collectCalls(((ForStatement) statement).statement, calls);
+        } else if (statement instanceof FunctionCallStatement) {
+            FunctionDeclaration callee = this.functions.get(((FunctionCallStatement) statement).name);
+
+            if (callee != null) {
+                calls.add(callee);
+            }
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package optimizer;
+
+import nodes.OperatorKind;
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Folds constant expressions and prunes branches whose conditions are constant. Runs on a checked program.
+public class ConstantFolder {
+
+    public void fold(Program program) {
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                foldBlockStatement(((FunctionDeclaration) declaration).blockStatement);
+            }
+        }
+    }
+
+    private void foldBlockStatement(BlockStatement blockStatement) {
+        List<Statement> statements = new ArrayList<>();
+
+        for (Statement statement : blockStatement.statements) {
+            Statement folded = foldStatement(statement, blockStatement.symbolTable);
+
+            if (folded != null) {
+                statements.add(folded);
+            }
+        }
+
+        blockStatement.statements = statements;
+    }
+
+    // Returns the folded statement, or null when the statement has no effect
+    private Statement foldStatement(Statement statement, SymbolTable symbolTable) {
+        if (statement instanceof BlockStatement) {
+            foldBlockStatement((BlockStatement) statement);
+            return statement;
+        } else if (statement instanceof IfStatement) {
+            return foldIfStatement((IfStatement) statement, symbolTable);
+        } else if (statement instanceof WhileStatement) {
+            return foldWhileStatement((WhileStatement) statement, symbolTable);
+        } else if (statement instanceof DoStatement) {
+            return foldDoStatement((DoStatement) statement, symbolTable);
+        } else if (statement instanceof ForStatement) {
+            return foldForStatement((ForStatement) statement, symbolTable);
+        } else if (statement instanceof FunctionCallStatement) {
+            FunctionCallStatement functionCallStatement = (FunctionCallStatement) statement;
+            functionCallStatement.arguments.replaceAll(this::foldExpression);
+            return statement;
+        } else if (statement instanceof AssignmentStatement) {
+            foldAssignmentStatement((AssignmentStatement) statement);
+            return statement;
+        } else {
+            // break and continue
+            return statement;
+        }
+    }
+
+    private Statement foldIfStatement(IfStatement ifStatement, SymbolTable symbolTable) {
+        ifStatement.conditional = foldExpression(ifStatement.conditional);
+
+        if (ifStatement.conditional instanceof BooleanExpression) {
+            if (((BooleanExpression) ifStatement.conditional).value) {
+                return foldStatement(ifStatement.statement, symbolTable);
+            } else if (ifStatement.elseStatement != null) {
+                return foldStatement(ifStatement.elseStatement, symbolTable);
+            }
+
+            return null;
+        }
+
+        ifStatement.statement = foldNestedStatement(ifStatement.statement, symbolTable);
+
+        if (ifStatement.elseStatement != null) {
+            ifStatement.elseStatement = foldStatement(ifStatement.elseStatement, symbolTable);
+        }
+
+        return ifStatement;
+    }
+
+    private Statement foldWhileStatement(WhileStatement whileStatement, SymbolTable symbolTable) {
+        whileStatement.conditional = foldExpression(whileStatement.conditional);
+
+        if (isConstant(whileStatement.conditional, false)) {
+            return null;
+        }
+
+        whileStatement.statement = foldNestedStatement(whileStatement.statement, symbolTable);
+        return whileStatement;
+    }
+
+    private Statement foldDoStatement(DoStatement doStatement, SymbolTable symbolTable) {
+        doStatement.conditional = foldExpression(doStatement.conditional);
+        doStatement.statement = foldNestedStatement(doStatement.statement, symbolTable);
+
+        // The body of a do statement that never repeats only needs the loop if it breaks or continues out of it
+        if (isConstant(doStatement.conditional, false) && !jumpsOutOf(doStatement.statement, doStatement)) {
+            return doStatement.statement;
+        }
+
+        return doStatement;
+    }
+
+    private Statement foldForStatement(ForStatement forStatement, SymbolTable symbolTable) {
+        if (forStatement.initializer != null) {
+            foldAssignmentStatement(forStatement.initializer);
+        }
+
+        if (forStatement.condition != null) {
+            forStatement.condition = foldExpression(forStatement.condition);
+
+            if (isConstant(forStatement.condition, false)) {
+                return forStatement.initializer;
+            } else if (isConstant(forStatement.condition, true)) {
+                forStatement.condition = null;
+            }
+        }
+
+        if (forStatement.incrementer != null) {
+            foldAssignmentStatement(forStatement.incrementer);
+        }
+
+        forStatement.statement = foldNestedStatement(forStatement.statement, symbolTable);
+        return forStatement;
+    }
+
+    // Statements nested directly in an if or a loop cannot disappear, so an empty block takes their place
+    private Statement foldNestedStatement(Statement statement, SymbolTable symbolTable) {
+        Statement folded = foldStatement(statement, symbolTable);
+
+        if (folded == null) {
+            BlockStatement blockStatement = new BlockStatement(new ArrayList<>(), new ArrayList<>());
+            blockStatement.symbolTable = new SymbolTable();
+            blockStatement.symbolTable.parent = symbolTable;
+            return blockStatement;
+        }
+
+        return folded;
+    }
+
+    private void foldAssignmentStatement(AssignmentStatement assignmentStatement) {
+        foldExpression(assignmentStatement.locationExpression);
+        assignmentStatement.expression = foldExpression(assignmentStatement.expression);
+    }
+
+    private boolean jumpsOutOf(Statement statement, LoopStatement loopStatement) {
+        if (statement instanceof BreakStatement) {
+            return ((BreakStatement) statement).loopStatement == loopStatement;
+        } else if (statement instanceof ContinueStatement) {
+            return ((ContinueStatement) statement).loopStatement == loopStatement;
+        } else if (statement instanceof BlockStatement) {
+            for (Statement child : ((BlockStatement) statement).statements) {
+                if (jumpsOutOf(child, loopStatement)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            return jumpsOutOf(ifStatement.statement, loopStatement)
+                    || (ifStatement.elseStatement != null && jumpsOutOf(ifStatement.elseStatement, loopStatement));
+        } else if (statement instanceof WhileStatement) {
+            return jumpsOutOf(((WhileStatement) statement).statement, loopStatement);
+        } else if (statement instanceof DoStatement) {
+            return jumpsOutOf(((DoStatement) statement).statement, loopStatement);
+        } else if (statement instanceof ForStatement) {
+            return jumpsOutOf(((ForStatement) statement).statement, loopStatement);
+        }
+
+        return false;
+    }
+
+    private Expression foldExpression(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            return foldBinaryExpression((BinaryExpression) expression);
+        } else if (expression instanceof UnaryExpression) {
+            return foldUnaryExpression((UnaryExpression) expression);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+
+            if (locationExpression.expression != null) {
+                locationExpression.expression = foldExpression(locationExpression.expression);
+            }
+        }
+
+        return expression;
+    }
+
+    private Expression foldUnaryExpression(UnaryExpression unaryExpression) {
+        Expression operand = foldExpression(unaryExpression.expression);
+        OperatorKind operator = unaryExpression.operator;
+
+        if (operator == OperatorKind.Add) {
+            return operand;
+        } else if (operator == OperatorKind.Minus && operand instanceof IntegerExpression) {
+            return new IntegerExpression(-((IntegerExpression) operand).value);
+        } else if (operator == OperatorKind.Not && operand instanceof BooleanExpression) {
+            return new BooleanExpression(!((BooleanExpression) operand).value);
+        } else if (operand instanceof UnaryExpression && ((UnaryExpression) operand).operator == operator) {
+            // --x and !!b
+            return ((UnaryExpression) operand).expression;
+        } else if (operator == OperatorKind.Not && operand instanceof BinaryExpression) {
+            OperatorKind inverse = inverseComparison(((BinaryExpression) operand).operator);
+
+            if (inverse != null) {
+                BinaryExpression binaryExpression = (BinaryExpression) operand;
+                return new BinaryExpression(binaryExpression.left, inverse, binaryExpression.right);
+            }
+        }
+
+        unaryExpression.expression = operand;
+        return unaryExpression;
+    }
+
+    private Expression foldBinaryExpression(BinaryExpression binaryExpression) {
+        Expression left = foldExpression(binaryExpression.left);
+        Expression right = foldExpression(binaryExpression.right);
+        OperatorKind operator = binaryExpression.operator;
+
+        binaryExpression.left = left;
+        binaryExpression.right = right;
+
+        if (left instanceof IntegerExpression && right instanceof IntegerExpression) {
+            Expression folded = foldIntegers(operator, ((IntegerExpression) left).value, ((IntegerExpression) right).value);
+            return folded != null ? folded : binaryExpression;
+        } else if (left instanceof BooleanExpression && right instanceof BooleanExpression) {
+            return foldBooleans(operator, ((BooleanExpression) left).value, ((BooleanExpression) right).value);
+        }
+
+        switch (operator) {
+            case Add:
+                if (isConstant(right, 0)) return left;
+                if (isConstant(left, 0)) return right;
+                break;
+            case Subtract:
+                if (isConstant(right, 0)) return left;
+                if (isConstant(left, 0)) return new UnaryExpression(OperatorKind.Minus, right);
+                break;
+            case Multiply:
+                if (isConstant(right, 1)) return left;
+                if (isConstant(left, 1)) return right;
+                if (isConstant(right, 0) && cannotTrap(left)) return right;
+                if (isConstant(left, 0) && cannotTrap(right)) return left;
+                if (isConstant(right, -1)) return new UnaryExpression(OperatorKind.Minus, left);
+                if (isConstant(left, -1)) return new UnaryExpression(OperatorKind.Minus, right);
+                break;
+            case Divide:
+                if (isConstant(right, 1)) return left;
+                break;
+            case Mod:
+                if (isConstant(right, 1) && cannotTrap(left)) return new IntegerExpression(0);
+                break;
+            case And:
+                if (isConstant(right, true)) return left;
+                if (isConstant(left, true)) return right;
+                if (isConstant(right, false) && cannotTrap(left)) return right;
+                if (isConstant(left, false) && cannotTrap(right)) return left;
+                break;
+            case Or:
+                if (isConstant(right, false)) return left;
+                if (isConstant(left, false)) return right;
+                if (isConstant(right, true) && cannotTrap(left)) return right;
+                if (isConstant(left, true) && cannotTrap(right)) return left;
+                break;
+            case Equals:
+                // b == true and b == false
+                if (isConstant(right, true)) return left;
+                if (isConstant(left, true)) return right;
+                if (isConstant(right, false)) return foldUnaryExpression(new UnaryExpression(OperatorKind.Not, left));
+                if (isConstant(left, false)) return foldUnaryExpression(new UnaryExpression(OperatorKind.Not, right));
+                break;
+            case NotEquals:
+                if (isConstant(right, false)) return left;
+                if (isConstant(left, false)) return right;
+                if (isConstant(right, true)) return foldUnaryExpression(new UnaryExpression(OperatorKind.Not, left));
+                if (isConstant(left, true)) return foldUnaryExpression(new UnaryExpression(OperatorKind.Not, right));
+                break;
+            default:
+                break;
+        }
+
+        return binaryExpression;
+    }
+
+    // Returns null when the operation would trap at run time, so that it is left for the stack machine to report
+    private Expression foldIntegers(OperatorKind operator, int left, int right) {
+        switch (operator) {
+            case Add:
+                return new IntegerExpression(left + right);
+            case Subtract:
+                return new IntegerExpression(left - right);
+            case Multiply:
+                return new IntegerExpression(left * right);
+            case Divide:
+                return canDivide(left, right) ? new IntegerExpression(left / right) : null;
+            case Mod:
+                return canDivide(left, right) ? new IntegerExpression(left % right) : null;
+            case LessThan:
+                return new BooleanExpression(left < right);
+            case LessThanEquals:
+                return new BooleanExpression(left <= right);
+            case GreaterThan:
+                return new BooleanExpression(left > right);
+            case GreaterThanEquals:
+                return new BooleanExpression(left >= right);
+            case Equals:
+                return new BooleanExpression(left == right);
+            case NotEquals:
+                return new BooleanExpression(left != right);
+            default:
+                return null;
+        }
+    }
+
+    private Expression foldBooleans(OperatorKind operator, boolean left, boolean right) {
+        switch (operator) {
+            case And:
+                return new BooleanExpression(left && right);
+            case Or:
+                return new BooleanExpression(left || right);
+            case Equals:
+                return new BooleanExpression(left == right);
+            default:
+                return new BooleanExpression(left != right);
+        }
+    }
+
+    private boolean canDivide(int left, int right) {
+        return right != 0 && !(left == Integer.MIN_VALUE && right == -1);
+    }
+
+    private OperatorKind inverseComparison(OperatorKind operator) {
+        switch (operator) {
+            case LessThan:
+                return OperatorKind.GreaterThanEquals;
+            case LessThanEquals:
+                return OperatorKind.GreaterThan;
+            case GreaterThan:
+                return OperatorKind.LessThanEquals;
+            case GreaterThanEquals:
+                return OperatorKind.LessThan;
+            case Equals:
+                return OperatorKind.NotEquals;
+            case NotEquals:
+                return OperatorKind.Equals;
+            default:
+                return null;
+        }
+    }
+
+    // Expressions containing a division may fail at run time, so they are never discarded
+    static boolean cannotTrap(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+
+            if (binaryExpression.operator == OperatorKind.Divide || binaryExpression.operator == OperatorKind.Mod) {
+                return false;
+            }
+
+            return cannotTrap(binaryExpression.left) && cannotTrap(binaryExpression.right);
+        } else if (expression instanceof UnaryExpression) {
+            return cannotTrap(((UnaryExpression) expression).expression);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+            return locationExpression.expression == null || cannotTrap(locationExpression.expression);
+        }
+
+        return true;
+    }
+
+    static boolean isConstant(Expression expression, int value) {
+        return expression instanceof IntegerExpression && ((IntegerExpression) expression).value == value;
+    }
+
+    static boolean isConstant(Expression expression, boolean value) {
+        return expression instanceof BooleanExpression && ((BooleanExpression) expression).value == value;
+    }
+}
@@ -0,0 +1,115 @@
+package optimizer;
+
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Removes the functions that cannot be reached from main over the call graph, and the globals that none of the
+// remaining functions refer to
+public class DeadCodeEliminator {
+    private Set<Symbol> referenced;
+
+    public void eliminate(Program program) {
+        Set<FunctionDeclaration> reachable = new CallGraph(program).reachableFrom("main");
+        this.referenced = new HashSet<>();
+
+        for (FunctionDeclaration functionDeclaration : reachable) {
+            collectReferences(functionDeclaration.blockStatement);
+        }
+
+        List<Declaration> declarations = new ArrayList<>();
+
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                if (reachable.contains(declaration)) {
+                    declarations.add(declaration);
+                }
+            } else {
+                VariableDeclaration variableDeclaration = (VariableDeclaration) declaration;
+                variableDeclaration.variables.removeIf(variable -> !this.referenced.contains(variable.symbol));
+
+                if (!variableDeclaration.variables.isEmpty()) {
+                    declarations.add(declaration);
+                }
+            }
+        }
+
+        program.declarations = declarations;
+    }
+
+    private void collectReferences(Statement statement) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (Statement child : blockStatement.statements) {
+                collectReferences(child);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collectReferences(ifStatement.conditional);
+            collectReferences(ifStatement.statement);
+
+            if (ifStatement.elseStatement != null) {
+                collectReferences(ifStatement.elseStatement);
+            }
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            collectReferences(whileStatement.conditional);
+            collectReferences(whileStatement.statement);
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            collectReferences(doStatement.conditional);
+            collectReferences(doStatement.statement);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+
+            if (forStatement.initializer != null) {
+                collectReferences(forStatement.initializer);
+            }
+
+            if (forStatement.condition != null) {
+                collectReferences(forStatement.condition);
+            }
+
+            if (forStatement.incrementer != null) {
+                collectReferences(forStatement.incrementer);
+            }
+
+            collectReferences(forStatement.statement);
+        } else if (statement instanceof FunctionCallStatement) {
+            for (Expression argument : ((FunctionCallStatement) statement).arguments) {
+                collectReferences(argument);
+            }
+        } else if (statement instanceof AssignmentStatement) {
+            AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+            collectReferences(assignmentStatement.locationExpression);
+            collectReferences(assignmentStatement.expression);
+        }
+    }
+
+    private void collectReferences(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            collectReferences(binaryExpression.left);
+            collectReferences(binaryExpression.right);
+        } else if (expression instanceof UnaryExpression) {
+            collectReferences(((UnaryExpression) expression).expression);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+            this.referenced.add(locationExpression.symbol);
+
+            if (locationExpression.expression != null) {
+                collectReferences(locationExpression.expression);
+            }
+        }
+    }
+}
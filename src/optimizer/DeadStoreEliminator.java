@@ -0,0 +1,337 @@
+package optimizer;
+
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.declarations.Parameter;
+import nodes.declarations.Variable;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.Builtin;
+import symbols.Symbol;
+import symbols.SymbolTable;
+import types.FieldType;
+import types.FunctionType;
+import types.TypeKind;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Removes assignments to local variables whose value is never read afterwards.
+//
+// Liveness is computed backwards over the structured statements of each function. Loops iterate until the
+// variables live at their head stop changing; break continues with what is live after the loop and continue with
+// what is live where the loop tests its condition again. Only scalar locals and by-value parameters are
+// considered, since nothing outside of the function can read them. An assignment is treated as dead while its
+// variable is not live, so chains of dead assignments disappear together.
+public class DeadStoreEliminator {
+    private Set<Symbol> candidates;
+
+    // What is live after each loop, and where each loop continues
+    private Map<LoopStatement, Set<Symbol>> breakLive;
+    private Map<LoopStatement, Set<Symbol>> continueLive;
+
+    public void eliminate(Program program) {
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                eliminate((FunctionDeclaration) declaration);
+            }
+        }
+    }
+
+    private void eliminate(FunctionDeclaration functionDeclaration) {
+        this.candidates = new HashSet<>();
+        this.breakLive = new HashMap<>();
+        this.continueLive = new HashMap<>();
+
+        for (Parameter parameter : functionDeclaration.parameters) {
+            if (!parameter.isAddr && !parameter.isArray) {
+                this.candidates.add(parameter.symbol);
+            }
+        }
+
+        collectCandidates(functionDeclaration.blockStatement);
+        live(functionDeclaration.blockStatement, functionDeclaration.symbolTable, new HashSet<>(), true);
+    }
+
+    private void collectCandidates(Statement statement) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (VariableDeclaration variableDeclaration : blockStatement.variableDeclarations) {
+                for (Variable variable : variableDeclaration.variables) {
+                    if (variable.number == null) {
+                        this.candidates.add(variable.symbol);
+                    }
+                }
+            }
+
+            for (Statement child : blockStatement.statements) {
+                collectCandidates(child);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collectCandidates(ifStatement.statement);
+
+            if (ifStatement.elseStatement != null) {
+                collectCandidates(ifStatement.elseStatement);
+            }
+        } else if (statement instanceof LoopStatement) {
+            collectCandidates(body((LoopStatement) statement));
+        }
+    }
+
+    private Statement body(LoopStatement loopStatement) {
+        if (loopStatement instanceof WhileStatement) {
+            return ((WhileStatement) loopStatement).statement;
+        } else if (loopStatement instanceof DoStatement) {
+            return ((DoStatement) loopStatement).statement;
+        }
+
+        return ((ForStatement) loopStatement).statement;
+    }
+
+    // Returns the variables live before the statement, given those live after it. Dead assignments are only
+    // removed when remove is set, which is once the live variables around the statement are final.
+    private Set<Symbol> live(Statement statement, SymbolTable symbolTable, Set<Symbol> liveOut, boolean remove) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+            Set<Symbol> live = liveOut;
+
+            for (int i = blockStatement.statements.size() - 1; i >= 0; i--) {
+                Statement child = blockStatement.statements.get(i);
+
+                if (remove && isDead(child, live)) {
+                    blockStatement.statements.remove(i);
+                } else {
+                    live = live(child, blockStatement.symbolTable, live, remove);
+                }
+            }
+
+            return live;
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            ifStatement.statement = removeIfDead(ifStatement.statement, symbolTable, liveOut, remove);
+            Set<Symbol> live = new HashSet<>(live(ifStatement.statement, symbolTable, liveOut, remove));
+
+            if (ifStatement.elseStatement != null) {
+                ifStatement.elseStatement = removeIfDead(ifStatement.elseStatement, symbolTable, liveOut, remove);
+                live.addAll(live(ifStatement.elseStatement, symbolTable, liveOut, remove));
+            } else {
+                live.addAll(liveOut);
+            }
+
+            addUses(ifStatement.conditional, live);
+            return live;
+        } else if (statement instanceof WhileStatement) {
+            return liveWhileStatement((WhileStatement) statement, symbolTable, liveOut, remove);
+        } else if (statement instanceof DoStatement) {
+            return liveDoStatement((DoStatement) statement, symbolTable, liveOut, remove);
+        } else if (statement instanceof ForStatement) {
+            return liveForStatement((ForStatement) statement, symbolTable, liveOut, remove);
+        } else if (statement instanceof BreakStatement) {
+            return this.breakLive.get(((BreakStatement) statement).loopStatement);
+        } else if (statement instanceof ContinueStatement) {
+            return this.continueLive.get(((ContinueStatement) statement).loopStatement);
+        } else if (statement instanceof FunctionCallStatement) {
+            return liveFunctionCall((FunctionCallStatement) statement, liveOut);
+        }
+
+        AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+        Set<Symbol> live = new HashSet<>(liveOut);
+
+        if (isDead(assignmentStatement, liveOut)) {
+            return live;
+        }
+
+        LocationExpression locationExpression = assignmentStatement.locationExpression;
+
+        if (locationExpression.expression == null) {
+            live.remove(locationExpression.symbol);
+        } else {
+            addUses(locationExpression.expression, live);
+        }
+
+        addUses(assignmentStatement.expression, live);
+        return live;
+    }
+
+    private Set<Symbol> liveWhileStatement(WhileStatement whileStatement, SymbolTable symbolTable, Set<Symbol> liveOut, boolean remove) {
+        // Variables live where the condition is tested
+        Set<Symbol> head = new HashSet<>(liveOut);
+        addUses(whileStatement.conditional, head);
+        this.breakLive.put(whileStatement, liveOut);
+
+        while (true) {
+            this.continueLive.put(whileStatement, head);
+            Set<Symbol> next = new HashSet<>(head);
+            next.addAll(live(whileStatement.statement, symbolTable, head, false));
+
+            if (next.equals(head)) {
+                break;
+            }
+
+            head = next;
+        }
+
+        if (remove) {
+            whileStatement.statement = removeIfDead(whileStatement.statement, symbolTable, head, true);
+            live(whileStatement.statement, symbolTable, head, true);
+        }
+
+        return head;
+    }
+
+    private Set<Symbol> liveDoStatement(DoStatement doStatement, SymbolTable symbolTable, Set<Symbol> liveOut, boolean remove) {
+        // Variables live before the body, and where the condition is tested
+        Set<Symbol> head = new HashSet<>();
+        Set<Symbol> test = new HashSet<>(liveOut);
+        addUses(doStatement.conditional, test);
+        this.breakLive.put(doStatement, liveOut);
+
+        while (true) {
+            Set<Symbol> condition = new HashSet<>(test);
+            condition.addAll(head);
+            this.continueLive.put(doStatement, condition);
+            Set<Symbol> next = live(doStatement.statement, symbolTable, condition, false);
+
+            if (next.equals(head)) {
+                break;
+            }
+
+            head = next;
+        }
+
+        if (remove) {
+            Set<Symbol> condition = this.continueLive.get(doStatement);
+            doStatement.statement = removeIfDead(doStatement.statement, symbolTable, condition, true);
+            live(doStatement.statement, symbolTable, condition, true);
+        }
+
+        return head;
+    }
+
+    private Set<Symbol> liveForStatement(ForStatement forStatement, SymbolTable symbolTable, Set<Symbol> liveOut, boolean remove) {
+        // Variables live where the condition is tested, and before the incrementer
+        Set<Symbol> head = new HashSet<>();
+
+        if (forStatement.condition != null) {
+            head.addAll(liveOut);
+            addUses(forStatement.condition, head);
+        }
+
+        this.breakLive.put(forStatement, liveOut);
+        Set<Symbol> increment;
+
+        while (true) {
+            increment = forStatement.incrementer == null ? head : live(forStatement.incrementer, symbolTable, head, false);
+            this.continueLive.put(forStatement, increment);
+            Set<Symbol> next = new HashSet<>(head);
+            next.addAll(live(forStatement.statement, symbolTable, increment, false));
+
+            if (next.equals(head)) {
+                break;
+            }
+
+            head = next;
+        }
+
+        if (remove) {
+            forStatement.statement = removeIfDead(forStatement.statement, symbolTable, increment, true);
+            live(forStatement.statement, symbolTable, increment, true);
+
+            if (forStatement.incrementer != null && isDead(forStatement.incrementer, head)) {
+                forStatement.incrementer = null;
+            }
+
+            if (forStatement.initializer != null && isDead(forStatement.initializer, head)) {
+                forStatement.initializer = null;
+            }
+        }
+
+        return forStatement.initializer == null ? head : live(forStatement.initializer, symbolTable, head, false);
+    }
+
+    private Set<Symbol> liveFunctionCall(FunctionCallStatement functionCallStatement, Set<Symbol> liveOut) {
+        Set<Symbol> live = new HashSet<>(liveOut);
+
+        if (functionCallStatement.symbol.builtin == Builtin.SCAN) {
+            LocationExpression locationExpression = (LocationExpression) functionCallStatement.arguments.get(0);
+
+            if (locationExpression.expression == null) {
+                live.remove(locationExpression.symbol);
+            } else {
+                addUses(locationExpression.expression, live);
+            }
+
+            return live;
+        }
+
+        // A variable passed by reference may be read by the callee, so it counts as used
+        FunctionType functionType = (FunctionType) functionCallStatement.symbol.getType();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+            Expression argument = functionCallStatement.arguments.get(i);
+
+            if (field.isReference() || field.getTypeKind() == TypeKind.Array) {
+                LocationExpression locationExpression = (LocationExpression) argument;
+                live.add(locationExpression.symbol);
+
+                if (locationExpression.expression != null) {
+                    addUses(locationExpression.expression, live);
+                }
+            } else {
+                addUses(argument, live);
+            }
+        }
+
+        return live;
+    }
+
+    // An assignment is dead when it stores to a candidate that is not live, and its value cannot trap
+    private boolean isDead(Statement statement, Set<Symbol> liveOut) {
+        if (!(statement instanceof AssignmentStatement)) {
+            return false;
+        }
+
+        AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+        Symbol symbol = assignmentStatement.locationExpression.symbol;
+
+        return this.candidates.contains(symbol) && !liveOut.contains(symbol) && ConstantFolder.cannotTrap(assignmentStatement.expression);
+    }
+
+    // A dead assignment nested directly in an if or a loop is replaced by an empty block
+    private Statement removeIfDead(Statement statement, SymbolTable symbolTable, Set<Symbol> liveOut, boolean remove) {
+        if (!remove || !isDead(statement, liveOut)) {
+            return statement;
+        }
+
+        BlockStatement blockStatement = new BlockStatement(new ArrayList<>(), new ArrayList<>());
+        blockStatement.symbolTable = new SymbolTable();
+        blockStatement.symbolTable.parent = symbolTable;
+        return blockStatement;
+    }
+
+    private void addUses(Expression expression, Set<Symbol> live) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            addUses(binaryExpression.left, live);
+            addUses(binaryExpression.right, live);
+        } else if (expression instanceof UnaryExpression) {
+            addUses(((UnaryExpression) expression).expression, live);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+            live.add(locationExpression.symbol);
+
+            if (locationExpression.expression != null) {
+                addUses(locationExpression.expression, live);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package optimizer;
+
+import nodes.expressions.Expression;
+import nodes.expressions.LocationExpression;
+import nodes.statements.*;
+import symbols.Builtin;
+import symbols.Symbol;
+import types.FieldType;
+import types.FunctionType;
+import types.TypeKind;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The variables a statement may write, through the symbols the checker bound to its location expressions
+public class Effects {
+    // Variables that are assigned, scanned or passed by reference, and arrays whose elements are written
+    public final Set<Symbol> written = new HashSet<>();
+
+    // Calls to declared functions, which may write any global or anything passed to them by reference
+    public boolean callsFunctions;
+
+    public static Effects of(Statement statement) {
+        Effects effects = new Effects();
+        effects.collect(statement);
+        return effects;
+    }
+
+    public static Effects of(List<Statement> statements) {
+        Effects effects = new Effects();
+
+        for (Statement statement : statements) {
+            effects.collect(statement);
+        }
+
+        return effects;
+    }
+
+    private void collect(Statement statement) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (Statement child : blockStatement.statements) {
+                collect(child);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collect(ifStatement.statement);
+
+            if (ifStatement.elseStatement != null) {
+                collect(ifStatement.elseStatement);
+            }
+        } else if (statement instanceof WhileStatement) {
+            collect(((WhileStatement) statement).statement);
+        } else if (statement instanceof DoStatement) {
+            collect(((DoStatement) statement).statement);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+
+            if (forStatement.initializer != null) {
+                collect(forStatement.initializer);
+            }
+
+            if (forStatement.incrementer != null) {
+                collect(forStatement.incrementer);
+            }
+
+            collect(forStatement.statement);
+        } else if (statement instanceof AssignmentStatement) {
+            this.written.add(((AssignmentStatement) statement).locationExpression.symbol);
+        } else if (statement instanceof FunctionCallStatement) {
+            collectFunctionCall((FunctionCallStatement) statement);
+        }
+    }
+
+    private void collectFunctionCall(FunctionCallStatement functionCallStatement) {
+        Symbol symbol = functionCallStatement.symbol;
+
+        if (symbol.builtin == Builtin.PRINT) {
+            return;
+        }
+
+        if (symbol.builtin == null) {
+            this.callsFunctions = true;
+        }
+
+        FunctionType functionType = (FunctionType) symbol.getType();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+            Expression argument = functionCallStatement.arguments.get(i);
+
+            if (field.isReference() || field.getTypeKind() == TypeKind.Array) {
+                this.written.add(((LocationExpression) argument).symbol);
+            }
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package optimizer;
+
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.declarations.Parameter;
+import nodes.declarations.Variable;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.Symbol;
+import symbols.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Replaces calls to small, non-recursive functions with a block holding a copy of the function body.
+//
+// Every name in the copy is renamed to one that cannot be written in source ("t#3"), so the copy can sit inside the
+// caller's scopes without shadowing them. Locals of the callee get symbols of their own, bound to the copy. By-value
+// parameters become locals of the block, or are replaced by the argument when it is a constant or a variable the callee
+// cannot change. Reference and array parameters are replaced by the caller's location expression.
+public class Inliner {
+    // Largest function body, counted in statements and expressions, that is copied into its callers
+    private static final int MAXIMUM_SIZE = 40;
+
+    private CallGraph callGraph;
+    private SymbolTable globalSymbolTable;
+    private int uniqueNames;
+
+    // State of the call currently being inlined
+    private SymbolTable callerSymbolTable;
+    private SymbolTable inlineSymbolTable;
+    private Map<Symbol, Expression> substitutions;
+    private Map<Symbol, String> renames;
+    private Map<Symbol, Symbol> clones;
+    private Map<LoopStatement, LoopStatement> loops;
+
+    public void inline(Program program) {
+        this.callGraph = new CallGraph(program);
+        this.globalSymbolTable = program.symbolTable;
+        this.uniqueNames = 0;
+
+        // Functions can only call functions declared before them, so callees have already had their own calls inlined
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                FunctionDeclaration functionDeclaration = (FunctionDeclaration) declaration;
+                inlineBlockStatement(functionDeclaration, functionDeclaration.blockStatement);
+            }
+        }
+    }
+
+    private void inlineBlockStatement(FunctionDeclaration caller, BlockStatement blockStatement) {
+        blockStatement.statements.replaceAll(statement -> inlineStatement(caller, statement, blockStatement.symbolTable));
+    }
+
+    private Statement inlineStatement(FunctionDeclaration caller, Statement statement, SymbolTable symbolTable) {
+        if (statement instanceof BlockStatement) {
+            inlineBlockStatement(caller, (BlockStatement) statement);
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            ifStatement.statement = inlineStatement(caller, ifStatement.statement, symbolTable);
+
+            if (ifStatement.elseStatement != null) {
+                ifStatement.elseStatement = inlineStatement(caller, ifStatement.elseStatement, symbolTable);
+            }
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            whileStatement.statement = inlineStatement(caller, whileStatement.statement, symbolTable);
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            doStatement.statement = inlineStatement(caller, doStatement.statement, symbolTable);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+            forStatement.statement = inlineStatement(caller, forStatement.statement, symbolTable);
+        } else if (statement instanceof FunctionCallStatement) {
+            BlockStatement inlined = inlineFunctionCall(caller, (FunctionCallStatement) statement, symbolTable);
+
+            if (inlined != null) {
+                return inlined;
+            }
+        }
+
+        return statement;
+    }
+
+    // Returns the block replacing the call, or null when the call is left as it is
+    private BlockStatement inlineFunctionCall(FunctionDeclaration caller, FunctionCallStatement functionCallStatement, SymbolTable symbolTable) {
+        FunctionDeclaration callee = this.callGraph.getFunction(functionCallStatement.name);
+
+        if (callee == null || callee == caller || this.callGraph.isRecursive(callee) || size(callee.blockStatement) > MAXIMUM_SIZE) {
+            return null;
+        }
+
+        this.callerSymbolTable = symbolTable;
+        this.inlineSymbolTable = new SymbolTable();
+        this.inlineSymbolTable.parent = symbolTable;
+        this.substitutions = new HashMap<>();
+        this.renames = new HashMap<>();
+        this.clones = new HashMap<>();
+        this.loops = new HashMap<>();
+
+        Effects effects = Effects.of(callee.blockStatement);
+        Set<Symbol> calleeLocals = declaredSymbols(callee);
+        boolean writesSharedMemory = effects.callsFunctions || !calleeLocals.containsAll(effects.written);
+        Set<Symbol> referenceArguments = referenceArguments(callee, functionCallStatement);
+
+        List<VariableDeclaration> variableDeclarations = new ArrayList<>();
+        List<Statement> statements = new ArrayList<>();
+
+        for (int i = 0; i < callee.parameters.size(); i++) {
+            Parameter parameter = callee.parameters.get(i);
+            Symbol parameterSymbol = parameter.symbol;
+            Expression argument = functionCallStatement.arguments.get(i);
+
+            if (parameter.isArray) {
+                this.substitutions.put(parameterSymbol, argument);
+            } else if (parameter.isAddr) {
+                LocationExpression location = (LocationExpression) argument;
+
+                if (location.expression != null && !isStable(location.expression, referenceArguments, writesSharedMemory)) {
+                    return null;
+                }
+
+                this.substitutions.put(parameterSymbol, argument);
+            } else if (!effects.written.contains(parameterSymbol) && isSimple(argument) && isStable(argument, referenceArguments, writesSharedMemory)) {
+                this.substitutions.put(parameterSymbol, argument);
+            } else {
+                String name = uniqueName(parameter.name);
+                Variable variable = new Variable(name);
+                variable.symbol = new Symbol(parameterSymbol.getType());
+                this.inlineSymbolTable.addVariable(name, variable.symbol);
+                this.renames.put(parameterSymbol, name);
+                this.clones.put(parameterSymbol, variable.symbol);
+
+                List<Variable> variables = new ArrayList<>();
+                variables.add(variable);
+                variableDeclarations.add(new VariableDeclaration(parameter.typeKind, variables));
+                statements.add(new AssignmentStatement(new LocationExpression(name, null, variable.symbol), argument));
+            }
+        }
+
+        BlockStatement body = callee.blockStatement;
+        variableDeclarations.addAll(cloneVariableDeclarations(body.variableDeclarations, this.inlineSymbolTable));
+
+        for (Statement statement : body.statements) {
+            statements.add(cloneStatement(statement, this.inlineSymbolTable));
+        }
+
+        BlockStatement blockStatement = new BlockStatement(variableDeclarations, statements);
+        blockStatement.symbolTable = this.inlineSymbolTable;
+        return blockStatement;
+    }
+
+    // Parameters and locals of the callee, which nothing outside of the call can observe
+    private Set<Symbol> declaredSymbols(FunctionDeclaration functionDeclaration) {
+        Set<Symbol> symbols = new HashSet<>();
+
+        for (Parameter parameter : functionDeclaration.parameters) {
+            if (!parameter.isAddr) {
+                symbols.add(parameter.symbol);
+            }
+        }
+
+        collectDeclaredSymbols(functionDeclaration.blockStatement, symbols);
+        return symbols;
+    }
+
+    private void collectDeclaredSymbols(Statement statement, Set<Symbol> symbols) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (VariableDeclaration variableDeclaration : blockStatement.variableDeclarations) {
+                for (Variable variable : variableDeclaration.variables) {
+                    symbols.add(variable.symbol);
+                }
+            }
+
+            for (Statement child : blockStatement.statements) {
+                collectDeclaredSymbols(child, symbols);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            collectDeclaredSymbols(ifStatement.statement, symbols);
+
+            if (ifStatement.elseStatement != null) {
+                collectDeclaredSymbols(ifStatement.elseStatement, symbols);
+            }
+        } else if (statement instanceof WhileStatement) {
+            collectDeclaredSymbols(((WhileStatement) statement).statement, symbols);
+        } else if (statement instanceof DoStatement) {
+            collectDeclaredSymbols(((DoStatement) statement).statement, symbols);
+        } else if (statement instanceof ForStatement) {
+            collectDeclaredSymbols(((ForStatement) statement).statement, symbols);
+        }
+    }
+
+    // Caller variables passed to scalar reference parameters, which the callee may change
+    private Set<Symbol> referenceArguments(FunctionDeclaration callee, FunctionCallStatement functionCallStatement) {
+        Set<Symbol> symbols = new HashSet<>();
+
+        for (int i = 0; i < callee.parameters.size(); i++) {
+            Parameter parameter = callee.parameters.get(i);
+            Expression argument = functionCallStatement.arguments.get(i);
+
+            if (parameter.isAddr && !parameter.isArray && ((LocationExpression) argument).expression == null) {
+                symbols.add(((LocationExpression) argument).symbol);
+            }
+        }
+
+        return symbols;
+    }
+
+    // Constants and variables are cheap enough to be evaluated wherever the parameter is read
+    private boolean isSimple(Expression expression) {
+        return expression instanceof IntegerExpression || expression instanceof BooleanExpression
+                || (expression instanceof LocationExpression && ((LocationExpression) expression).expression == null);
+    }
+
+    // Whether an argument evaluates to the same value anywhere in the inlined body, so that it can be substituted
+    private boolean isStable(Expression expression, Set<Symbol> referenceArguments, boolean writesSharedMemory) {
+        if (expression instanceof IntegerExpression || expression instanceof BooleanExpression) {
+            return true;
+        } else if (expression instanceof UnaryExpression) {
+            return isStable(((UnaryExpression) expression).expression, referenceArguments, writesSharedMemory);
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return ConstantFolder.cannotTrap(binaryExpression)
+                    && isStable(binaryExpression.left, referenceArguments, writesSharedMemory)
+                    && isStable(binaryExpression.right, referenceArguments, writesSharedMemory);
+        }
+
+        LocationExpression locationExpression = (LocationExpression) expression;
+
+        if (locationExpression.expression != null) {
+            return false;
+        }
+
+        Symbol symbol = locationExpression.symbol;
+
+        if (referenceArguments.contains(symbol)) {
+            return false;
+        }
+
+        // Globals and the caller's own reference parameters can be reached by whatever the callee writes
+        boolean isShared = symbol.isReference() || this.globalSymbolTable.declares(symbol);
+        return !isShared || !writesSharedMemory;
+    }
+
+    private List<VariableDeclaration> cloneVariableDeclarations(List<VariableDeclaration> variableDeclarations, SymbolTable to) {
+        List<VariableDeclaration> clones = new ArrayList<>();
+
+        for (VariableDeclaration variableDeclaration : variableDeclarations) {
+            List<Variable> variables = new ArrayList<>();
+
+            for (Variable variable : variableDeclaration.variables) {
+                String name = uniqueName(variable.name);
+                Variable clone = variable.number == null ? new Variable(name) : new Variable(name, variable.number);
+                clone.symbol = new Symbol(variable.symbol.getType(), variable.symbol.isReference());
+
+                to.addVariable(name, clone.symbol);
+                this.renames.put(variable.symbol, name);
+                this.clones.put(variable.symbol, clone.symbol);
+
+                variables.add(clone);
+            }
+
+            clones.add(new VariableDeclaration(variableDeclaration.typeKind, variables));
+        }
+
+        return clones;
+    }
+
+    private Statement cloneStatement(Statement statement, SymbolTable to) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+            SymbolTable symbolTable = new SymbolTable();
+            symbolTable.parent = to;
+
+            List<VariableDeclaration> variableDeclarations = cloneVariableDeclarations(blockStatement.variableDeclarations, symbolTable);
+            List<Statement> statements = new ArrayList<>();
+
+            for (Statement child : blockStatement.statements) {
+                statements.add(cloneStatement(child, symbolTable));
+            }
+
+            BlockStatement clone = new BlockStatement(variableDeclarations, statements);
+            clone.symbolTable = symbolTable;
+            return clone;
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            Statement elseStatement = ifStatement.elseStatement == null ? null : cloneStatement(ifStatement.elseStatement, to);
+            return new IfStatement(cloneExpression(ifStatement.conditional), cloneStatement(ifStatement.statement, to), elseStatement);
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            WhileStatement clone = new WhileStatement(cloneExpression(whileStatement.conditional), null);
+            this.loops.put(whileStatement, clone);
+            clone.statement = cloneStatement(whileStatement.statement, to);
+            return clone;
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            DoStatement clone = new DoStatement(null, cloneExpression(doStatement.conditional));
+            this.loops.put(doStatement, clone);
+            clone.statement = cloneStatement(doStatement.statement, to);
+            return clone;
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+            ForStatement clone = new ForStatement(
+                    forStatement.initializer == null ? null : (AssignmentStatement) cloneStatement(forStatement.initializer, to),
+                    forStatement.condition == null ? null : cloneExpression(forStatement.condition),
+                    forStatement.incrementer == null ? null : (AssignmentStatement) cloneStatement(forStatement.incrementer, to),
+                    null);
+            this.loops.put(forStatement, clone);
+            clone.statement = cloneStatement(forStatement.statement, to);
+            return clone;
+        } else if (statement instanceof BreakStatement) {
+            BreakStatement clone = new BreakStatement();
+            clone.loopStatement = this.loops.get(((BreakStatement) statement).loopStatement);
+            return clone;
+        } else if (statement instanceof ContinueStatement) {
+            ContinueStatement clone = new ContinueStatement();
+            clone.loopStatement = this.loops.get(((ContinueStatement) statement).loopStatement);
+            return clone;
+        } else if (statement instanceof FunctionCallStatement) {
+            FunctionCallStatement functionCallStatement = (FunctionCallStatement) statement;
+            List<Expression> arguments = new ArrayList<>();
+
+            for (Expression argument : functionCallStatement.arguments) {
+                arguments.add(cloneExpression(argument));
+            }
+
+            FunctionCallStatement clone = new FunctionCallStatement(functionCallStatement.name, arguments);
+            clone.symbol = functionCallStatement.symbol;
+
+            if (clone.symbol.builtin == null) {
+                clone.name = nameFor(clone.symbol, clone.name);
+            }
+
+            return clone;
+        } else {
+            AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+            LocationExpression locationExpression = (LocationExpression) cloneExpression(assignmentStatement.locationExpression);
+            return new AssignmentStatement(locationExpression, cloneExpression(assignmentStatement.expression));
+        }
+    }
+
+    private Expression cloneExpression(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return new BinaryExpression(cloneExpression(binaryExpression.left), binaryExpression.operator, cloneExpression(binaryExpression.right));
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            return new UnaryExpression(unaryExpression.operator, cloneExpression(unaryExpression.expression));
+        } else if (expression instanceof IntegerExpression) {
+            return new IntegerExpression(((IntegerExpression) expression).value);
+        } else if (expression instanceof BooleanExpression) {
+            return new BooleanExpression(((BooleanExpression) expression).value);
+        }
+
+        LocationExpression locationExpression = (LocationExpression) expression;
+        Symbol symbol = locationExpression.symbol;
+        Expression index = locationExpression.expression == null ? null : cloneExpression(locationExpression.expression);
+
+        if (this.substitutions.containsKey(symbol)) {
+            Expression substitution = this.substitutions.get(symbol);
+
+            // An element of an array parameter becomes an element of the caller's array
+            if (index != null) {
+                LocationExpression element = (LocationExpression) substitution;
+                return new LocationExpression(element.name, index, element.symbol);
+            }
+
+            return copyExpression(substitution);
+        }
+
+        return new LocationExpression(nameFor(symbol, locationExpression.name), index, this.clones.getOrDefault(symbol, symbol));
+    }
+
+    // Copies an expression of the caller, whose names already resolve in the caller's scope
+    private Expression copyExpression(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return new BinaryExpression(copyExpression(binaryExpression.left), binaryExpression.operator, copyExpression(binaryExpression.right));
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            return new UnaryExpression(unaryExpression.operator, copyExpression(unaryExpression.expression));
+        } else if (expression instanceof IntegerExpression) {
+            return new IntegerExpression(((IntegerExpression) expression).value);
+        } else if (expression instanceof BooleanExpression) {
+            return new BooleanExpression(((BooleanExpression) expression).value);
+        }
+
+        LocationExpression locationExpression = (LocationExpression) expression;
+        Expression index = locationExpression.expression == null ? null : copyExpression(locationExpression.expression);
+        return new LocationExpression(locationExpression.name, index, locationExpression.symbol);
+    }
+
+    // Names from outside the callee keep their name, unless the caller has a variable of its own with that name
+    private String nameFor(Symbol symbol, String name) {
+        if (this.renames.containsKey(symbol)) {
+            return this.renames.get(symbol);
+        }
+
+        if (this.callerSymbolTable.lookup(name) == symbol) {
+            return name;
+        }
+
+        String alias = uniqueName(name);
+        this.inlineSymbolTable.addVariable(alias, symbol);
+        this.renames.put(symbol, alias);
+        return alias;
+    }
+
+    private String uniqueName(String name) {
+        return name + "#" + ++this.uniqueNames;
+    }
+
+    private int size(Statement statement) {
+        if (statement instanceof BlockStatement) {
+            int size = 1;
+
+            for (Statement child : ((BlockStatement) statement).statements) {
+                size += size(child);
+            }
+
+            return size;
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            int size = 1 + size(ifStatement.conditional) + size(ifStatement.statement);
+            return ifStatement.elseStatement == null ? size : size + size(ifStatement.elseStatement);
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            return 1 + size(whileStatement.conditional) + size(whileStatement.statement);
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            return 1 + size(doStatement.conditional) + size(doStatement.statement);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+            int size = 1 + size(forStatement.statement);
+            size += forStatement.initializer == null ? 0 : size(forStatement.initializer);
+            size += forStatement.condition == null ? 0 : size(forStatement.condition);
+            size += forStatement.incrementer == null ? 0 : size(forStatement.incrementer);
+            return size;
+        } else if (statement instanceof FunctionCallStatement) {
+            int size = 1;
+
+            for (Expression argument : ((FunctionCallStatement) statement).arguments) {
+                size += size(argument);
+            }
+
+            return size;
+        } else if (statement instanceof AssignmentStatement) {
+            AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+            return 1 + size(assignmentStatement.locationExpression) + size(assignmentStatement.expression);
+        }
+
+        return 1;
+    }
+
+    private int size(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return 1 + size(binaryExpression.left) + size(binaryExpression.right);
+        } else if (expression instanceof UnaryExpression) {
+            return 1 + size(((UnaryExpression) expression).expression);
+        } else if (expression instanceof LocationExpression && ((LocationExpression) expression).expression != null) {
+            return 1 + size(((LocationExpression) expression).expression);
+        }
+
+        return 1;
+    }
+}
@@ -0,0 +1,403 @@
+package optimizer;
+
+import nodes.OperatorKind;
+import nodes.Program;
+import nodes.declarations.Declaration;
+import nodes.declarations.FunctionDeclaration;
+import nodes.declarations.Variable;
+import nodes.declarations.VariableDeclaration;
+import nodes.expressions.*;
+import nodes.statements.*;
+import symbols.Symbol;
+import symbols.SymbolTable;
+import types.FieldType;
+import types.FunctionType;
+import types.LiteralType;
+import types.TypeKind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Moves expressions whose value cannot change while a loop runs out of the loop, into a temporary assigned right before
+// it. Temporaries are locals of the function named "#1", "#2", ..., which cannot clash with names from the source.
+//
+// Which variables a loop writes comes from the symbols the checker bound to its location expressions. Reads of globals
+// and of reference parameters are only invariant when the loop calls no functions and writes nothing another name could
+// alias. Loops are handled outermost first, so an expression leaves every loop it is invariant in.
+public class LoopInvariantCodeMotion {
+    private SymbolTable globalSymbolTable;
+    private FunctionDeclaration functionDeclaration;
+    private int temporaries;
+
+    // State of the loop currently being hoisted from
+    private SymbolTable loopSymbolTable;
+    private Set<Symbol> written;
+    private boolean writesSharedMemory;
+    private List<Statement> preheader;
+    private List<Expression> hoisted;
+    private List<Variable> hoistedVariables;
+
+    public void hoist(Program program) {
+        this.globalSymbolTable = program.symbolTable;
+        this.temporaries = 0;
+
+        for (Declaration declaration : program.declarations) {
+            if (declaration instanceof FunctionDeclaration) {
+                this.functionDeclaration = (FunctionDeclaration) declaration;
+                hoistBlockStatement(this.functionDeclaration.blockStatement);
+            }
+        }
+    }
+
+    private void hoistBlockStatement(BlockStatement blockStatement) {
+        List<Statement> statements = new ArrayList<>();
+
+        for (Statement statement : blockStatement.statements) {
+            if (statement instanceof LoopStatement) {
+                statements.addAll(hoistLoopStatement((LoopStatement) statement, blockStatement.symbolTable));
+            } else {
+                statements.add(hoistStatement(statement, blockStatement.symbolTable));
+            }
+        }
+
+        blockStatement.statements = statements;
+    }
+
+    private Statement hoistStatement(Statement statement, SymbolTable symbolTable) {
+        if (statement instanceof BlockStatement) {
+            hoistBlockStatement((BlockStatement) statement);
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            ifStatement.statement = hoistStatement(ifStatement.statement, symbolTable);
+
+            if (ifStatement.elseStatement != null) {
+                ifStatement.elseStatement = hoistStatement(ifStatement.elseStatement, symbolTable);
+            }
+        } else if (statement instanceof LoopStatement) {
+            List<Statement> statements = hoistLoopStatement((LoopStatement) statement, symbolTable);
+
+            // A loop nested directly in an if or another loop needs a block to hold its preheader
+            if (statements.size() > 1) {
+                BlockStatement blockStatement = new BlockStatement(new ArrayList<>(), statements);
+                blockStatement.symbolTable = new SymbolTable();
+                blockStatement.symbolTable.parent = symbolTable;
+                return blockStatement;
+            }
+        }
+
+        return statement;
+    }
+
+    // Returns the assignments to the temporaries followed by the loop
+    private List<Statement> hoistLoopStatement(LoopStatement loopStatement, SymbolTable symbolTable) {
+        List<Statement> statements = new ArrayList<>();
+        List<Statement> loop = new ArrayList<>();
+        loop.add(body(loopStatement));
+
+        if (loopStatement instanceof ForStatement && ((ForStatement) loopStatement).incrementer != null) {
+            loop.add(((ForStatement) loopStatement).incrementer);
+        }
+
+        Effects effects = Effects.of(loop);
+        this.loopSymbolTable = symbolTable;
+        this.written = effects.written;
+        this.writesSharedMemory = effects.callsFunctions;
+        this.preheader = new ArrayList<>();
+        this.hoisted = new ArrayList<>();
+        this.hoistedVariables = new ArrayList<>();
+
+        for (Symbol symbol : this.written) {
+            if (symbol.isReference() || isGlobal(symbol)) {
+                this.writesSharedMemory = true;
+            }
+        }
+
+        if (loopStatement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) loopStatement;
+            whileStatement.conditional = hoistExpression(whileStatement.conditional);
+            replaceInStatement(whileStatement.statement);
+        } else if (loopStatement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) loopStatement;
+            doStatement.conditional = hoistExpression(doStatement.conditional);
+            replaceInStatement(doStatement.statement);
+        } else {
+            ForStatement forStatement = (ForStatement) loopStatement;
+
+            if (forStatement.condition != null) {
+                forStatement.condition = hoistExpression(forStatement.condition);
+            }
+
+            if (forStatement.incrementer != null) {
+                replaceInStatement(forStatement.incrementer);
+            }
+
+            replaceInStatement(forStatement.statement);
+
+            // The initializer may set what the temporaries read, so it moves in front of them
+            if (!this.preheader.isEmpty() && forStatement.initializer != null) {
+                statements.add(forStatement.initializer);
+                forStatement.initializer = null;
+            }
+        }
+
+        statements.addAll(this.preheader);
+        statements.add(loopStatement);
+
+        // Loops nested in the body hoist what is only invariant in them into preheaders of their own
+        Statement body = hoistStatement(body(loopStatement), symbolTable);
+
+        if (loopStatement instanceof WhileStatement) {
+            ((WhileStatement) loopStatement).statement = body;
+        } else if (loopStatement instanceof DoStatement) {
+            ((DoStatement) loopStatement).statement = body;
+        } else {
+            ((ForStatement) loopStatement).statement = body;
+        }
+
+        return statements;
+    }
+
+    private Statement body(LoopStatement loopStatement) {
+        if (loopStatement instanceof WhileStatement) {
+            return ((WhileStatement) loopStatement).statement;
+        } else if (loopStatement instanceof DoStatement) {
+            return ((DoStatement) loopStatement).statement;
+        }
+
+        return ((ForStatement) loopStatement).statement;
+    }
+
+    private void replaceInStatement(Statement statement) {
+        if (statement instanceof BlockStatement) {
+            BlockStatement blockStatement = (BlockStatement) statement;
+
+            for (Statement child : blockStatement.statements) {
+                replaceInStatement(child);
+            }
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            ifStatement.conditional = hoistExpression(ifStatement.conditional);
+            replaceInStatement(ifStatement.statement);
+
+            if (ifStatement.elseStatement != null) {
+                replaceInStatement(ifStatement.elseStatement);
+            }
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            whileStatement.conditional = hoistExpression(whileStatement.conditional);
+            replaceInStatement(whileStatement.statement);
+        } else if (statement instanceof DoStatement) {
+            DoStatement doStatement = (DoStatement) statement;
+            doStatement.conditional = hoistExpression(doStatement.conditional);
+            replaceInStatement(doStatement.statement);
+        } else if (statement instanceof ForStatement) {
+            ForStatement forStatement = (ForStatement) statement;
+
+            if (forStatement.initializer != null) {
+                replaceInStatement(forStatement.initializer);
+            }
+
+            if (forStatement.condition != null) {
+                forStatement.condition = hoistExpression(forStatement.condition);
+            }
+
+            if (forStatement.incrementer != null) {
+                replaceInStatement(forStatement.incrementer);
+            }
+
+            replaceInStatement(forStatement.statement);
+        } else if (statement instanceof FunctionCallStatement) {
+            replaceInFunctionCall((FunctionCallStatement) statement);
+        } else if (statement instanceof AssignmentStatement) {
+            AssignmentStatement assignmentStatement = (AssignmentStatement) statement;
+            hoistIndex(assignmentStatement.locationExpression);
+            assignmentStatement.expression = hoistExpression(assignmentStatement.expression);
+        }
+    }
+
+    private void replaceInFunctionCall(FunctionCallStatement functionCallStatement) {
+        FunctionType functionType = (FunctionType) functionCallStatement.symbol.getType();
+
+        for (int i = 0; i < functionType.fields.size(); i++) {
+            FieldType field = functionType.fields.get(i);
+            Expression argument = functionCallStatement.arguments.get(i);
+
+            // Arguments passed by reference must stay locations, only their index can move
+            if (field.isReference() || field.getTypeKind() == TypeKind.Array) {
+                hoistIndex((LocationExpression) argument);
+            } else {
+                functionCallStatement.arguments.set(i, hoistExpression(argument));
+            }
+        }
+    }
+
+    private void hoistIndex(LocationExpression locationExpression) {
+        if (locationExpression.expression != null) {
+            locationExpression.expression = hoistExpression(locationExpression.expression);
+        }
+    }
+
+    // Replaces the largest invariant parts of an expression with temporaries
+    private Expression hoistExpression(Expression expression) {
+        if (isWorthHoisting(expression) && isInvariant(expression)) {
+            Variable temporary = temporaryFor(expression);
+            return new LocationExpression(temporary.name, null, temporary.symbol);
+        }
+
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            binaryExpression.left = hoistExpression(binaryExpression.left);
+            binaryExpression.right = hoistExpression(binaryExpression.right);
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            unaryExpression.expression = hoistExpression(unaryExpression.expression);
+        } else if (expression instanceof LocationExpression) {
+            hoistIndex((LocationExpression) expression);
+        }
+
+        return expression;
+    }
+
+    // Constants and plain local variables already load in a single instruction, and conditions on them already
+    // compile to a single fused compare and branch
+    private boolean isWorthHoisting(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+
+            switch (binaryExpression.operator) {
+                case Add:
+                case Subtract:
+                case Multiply:
+                case Divide:
+                case Mod:
+                    return true;
+                default:
+                    return isWorthHoisting(binaryExpression.left) || isWorthHoisting(binaryExpression.right);
+            }
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            return unaryExpression.operator == OperatorKind.Minus || isWorthHoisting(unaryExpression.expression);
+        } else if (expression instanceof LocationExpression) {
+            LocationExpression locationExpression = (LocationExpression) expression;
+            return locationExpression.expression == null && locationExpression.symbol.isReference();
+        }
+
+        return false;
+    }
+
+    private boolean isInvariant(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+
+            // A division that never ran inside the loop must not trap before it
+            if ((binaryExpression.operator == OperatorKind.Divide || binaryExpression.operator == OperatorKind.Mod)
+                    && !isSafeDivisor(binaryExpression.right)) {
+                return false;
+            }
+
+            return isInvariant(binaryExpression.left) && isInvariant(binaryExpression.right);
+        } else if (expression instanceof UnaryExpression) {
+            return isInvariant(((UnaryExpression) expression).expression);
+        } else if (expression instanceof IntegerExpression || expression instanceof BooleanExpression) {
+            return true;
+        }
+
+        LocationExpression locationExpression = (LocationExpression) expression;
+        Symbol symbol = locationExpression.symbol;
+
+        // Array elements are left in place, as are variables the preheader cannot see
+        if (locationExpression.expression != null || symbol.getTypeKind() == TypeKind.Array) {
+            return false;
+        } else if (this.loopSymbolTable.lookup(locationExpression.name) != symbol) {
+            return false;
+        } else if (this.written.contains(symbol)) {
+            return false;
+        }
+
+        return !(symbol.isReference() || isGlobal(symbol)) || !this.writesSharedMemory;
+    }
+
+    // Equal expressions share one temporary
+    private Variable temporaryFor(Expression expression) {
+        for (int i = 0; i < this.hoisted.size(); i++) {
+            if (isSame(this.hoisted.get(i), expression)) {
+                return this.hoistedVariables.get(i);
+            }
+        }
+
+        String name = "#" + ++this.temporaries;
+        TypeKind typeKind = typeOf(expression);
+        Variable temporary = new Variable(name);
+        temporary.symbol = new Symbol(new LiteralType(typeKind));
+
+        this.functionDeclaration.symbolTable.addVariable(name, temporary.symbol);
+
+        List<Variable> variables = new ArrayList<>();
+        variables.add(temporary);
+        this.functionDeclaration.blockStatement.variableDeclarations.add(new VariableDeclaration(typeKind, variables));
+
+        // Every variable in an invariant expression is visible from the scope of the loop
+        this.preheader.add(new AssignmentStatement(new LocationExpression(name, null, temporary.symbol), expression));
+        this.hoisted.add(expression);
+        this.hoistedVariables.add(temporary);
+        return temporary;
+    }
+
+    private boolean isSame(Expression left, Expression right) {
+        if (left instanceof BinaryExpression && right instanceof BinaryExpression) {
+            BinaryExpression leftBinary = (BinaryExpression) left;
+            BinaryExpression rightBinary = (BinaryExpression) right;
+            return leftBinary.operator == rightBinary.operator
+                    && isSame(leftBinary.left, rightBinary.left)
+                    && isSame(leftBinary.right, rightBinary.right);
+        } else if (left instanceof UnaryExpression && right instanceof UnaryExpression) {
+            UnaryExpression leftUnary = (UnaryExpression) left;
+            UnaryExpression rightUnary = (UnaryExpression) right;
+            return leftUnary.operator == rightUnary.operator
+                    && isSame(leftUnary.expression, rightUnary.expression);
+        } else if (left instanceof IntegerExpression && right instanceof IntegerExpression) {
+            return ((IntegerExpression) left).value.equals(((IntegerExpression) right).value);
+        } else if (left instanceof BooleanExpression && right instanceof BooleanExpression) {
+            return ((BooleanExpression) left).value.equals(((BooleanExpression) right).value);
+        } else if (left instanceof LocationExpression && right instanceof LocationExpression) {
+            // Invariant expressions have no indices
+            return ((LocationExpression) left).symbol == ((LocationExpression) right).symbol;
+        }
+
+        return false;
+    }
+
+    private TypeKind typeOf(Expression expression) {
+        if (expression instanceof BinaryExpression) {
+            switch (((BinaryExpression) expression).operator) {
+                case Add:
+                case Subtract:
+                case Multiply:
+                case Divide:
+                case Mod:
+                    return TypeKind.Integer;
+                default:
+                    return TypeKind.Boolean;
+            }
+        } else if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            return unaryExpression.operator == OperatorKind.Not ? TypeKind.Boolean : typeOf(unaryExpression.expression);
+        } else if (expression instanceof IntegerExpression) {
+            return TypeKind.Integer;
+        } else if (expression instanceof BooleanExpression) {
+            return TypeKind.Boolean;
+        }
+
+        return ((LocationExpression) expression).symbol.getTypeKind();
+    }
+
+    // Dividing by anything but 0 or -1 cannot trap
+    private boolean isSafeDivisor(Expression expression) {
+        return expression instanceof IntegerExpression && !ConstantFolder.isConstant(expression, 0) && !ConstantFolder.isConstant(expression, -1);
+    }
+
+    private boolean isGlobal(Symbol symbol) {
+        return this.globalSymbolTable.declares(symbol);
+    }
+}
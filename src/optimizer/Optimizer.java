@@ -0,0 +1,20 @@
+package optimizer;
+
+import nodes.Program;
+
+// Runs the optimizations on the syntax tree of a checked program, before code generation
+public class Optimizer {
+
+    public void optimize(Program program) {
+        new ConstantFolder().fold(program);
+        new Inliner().inline(program);
+
+        // Inlined arguments may be constants that fold into the copied bodies
+        new ConstantFolder().fold(program);
+
+        // Inlining leaves functions without callers behind
+        new DeadCodeEliminator().eliminate(program);
+        new LoopInvariantCodeMotion().hoist(program);
+        new DeadStoreEliminator().eliminate(program);
+    }
+}
@@ -0,0 +1,7 @@
+package symbols;
+
+// The functions every program can call without declaring them, which are generated as instructions rather than calls
+public enum Builtin {
+    SCAN,
+    PRINT
+}
@@ -0,0 +1,35 @@
+package symbols;
+
+// A position in the generated code that jumps and calls refer to. Its index is known once the instruction it labels
+// has been emitted.
+public class Label {
+    private String name;
+    public int index;
+
+    // Named by the CodeBuffer that takes it
+    public Label() {
+        this.index = -1;
+    }
+
+    public Label(String name) {
+        this.name = name;
+        this.index = -1;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isBound() {
+        return this.index >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -4,9 +4,12 @@ import types.Type;
 import types.TypeKind;
 
 public class Symbol {
-    public String label;
+    public Label label;
     public Location location;
 
+    // Set for the symbols of scan and print
+    public Builtin builtin;
+
     private Type type;
     private boolean reference;
 
@@ -1,51 +1,103 @@
 package symbols;
 
-import java.util.HashMap;
-import java.util.Map;
-
+// The names declared in one scope, kept in two arrays with open addressing rather than in a map. Most scopes declare
+// a handful of names, and a scope that declares none allocates nothing. Names are resolved once, by the Checker,
+// which binds the Symbol to the node naming it; later passes use the bound Symbol.
 public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 4;
+
     public SymbolTable parent;
-    Map<String, Symbol> variables;
 
-    public SymbolTable() {
-        this.variables = new HashMap<>();
-    }
+    private String[] names;
+    private Symbol[] symbols;
+    private int size;
 
     public void addVariable(String name, Symbol symbol) {
-        if (this.variables.containsKey(name)) {
+        if (this.names == null) {
+            this.names = new String[INITIAL_CAPACITY];
+            this.symbols = new Symbol[INITIAL_CAPACITY];
+        }
+
+        int index = indexOf(name);
+
+        if (this.names[index] != null) {
             throw new NullPointerException(String.format("`%s` already exists in scope", name));
         }
 
-        this.variables.put(name, symbol);
-   }
+        this.names[index] = name;
+        this.symbols[index] = symbol;
 
-    public boolean hasVariable(String name) {
+        if (++this.size * 2 > this.names.length) {
+            rehash();
+        }
+    }
 
-        SymbolTable currTable = this;
+    // The symbol a name resolves to here or in an enclosing scope, or null when it is not declared
+    public Symbol lookup(String name) {
+        for (SymbolTable table = this; table != null; table = table.parent) {
+            if (table.names != null) {
+                int index = table.indexOf(name);
 
-        while (currTable != null) {
-            if (currTable.variables.containsKey(name)) {
-                return true;
+                if (table.names[index] != null) {
+                    return table.symbols[index];
+                }
             }
+        }
 
-            currTable = currTable.parent;
+        return null;
+    }
+
+    public boolean hasVariable(String name) {
+        return lookup(name) != null;
+    }
+
+    // Whether the symbol is declared in this table itself, rather than in one of its parents
+    public boolean declares(Symbol symbol) {
+        if (this.symbols != null) {
+            for (Symbol declared : this.symbols) {
+                if (declared == symbol) {
+                    return true;
+                }
+            }
         }
 
         return false;
     }
 
     public Symbol getVariable(String name) {
+        Symbol symbol = lookup(name);
 
-        SymbolTable currTable = this;
+        if (symbol == null) {
+            throw new NullPointerException(String.format("%s does not exist in scope", name));
+        }
 
-        while (currTable != null) {
-            if (currTable.variables.containsKey(name)) {
-                return currTable.variables.get(name);
-            }
+        return symbol;
+    }
 
-            currTable = currTable.parent;
+    // The slot holding name, or the empty slot it would go in
+    private int indexOf(String name) {
+        int mask = this.names.length - 1;
+        int index = name.hashCode() & mask;
+
+        while (this.names[index] != null && !this.names[index].equals(name)) {
+            index = (index + 1) & mask;
         }
 
-        throw new NullPointerException(String.format("%s does not exist in scope", name));
+        return index;
+    }
+
+    private void rehash() {
+        String[] names = this.names;
+        Symbol[] symbols = this.symbols;
+        this.names = new String[names.length * 2];
+        this.symbols = new Symbol[names.length * 2];
+
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                int index = indexOf(names[i]);
+                this.names[index] = names[i];
+                this.symbols[index] = symbols[i];
+            }
+        }
     }
 }
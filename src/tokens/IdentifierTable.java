@@ -0,0 +1,78 @@
+package tokens;
+
+// Interns identifiers straight from the characters of the Lexer's buffer, so an identifier seen before is returned
+// without allocating a String for it again. Open addressing, kept at most half full.
+public class IdentifierTable {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String[] entries;
+    private int size;
+
+    public IdentifierTable() {
+        this.entries = new String[INITIAL_CAPACITY];
+    }
+
+    public String intern(char[] buffer, int start, int length) {
+        int hash = 0;
+
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+
+        int mask = this.entries.length - 1;
+        int index = hash & mask;
+
+        for (String entry = this.entries[index]; entry != null; entry = this.entries[index]) {
+            if (matches(entry, buffer, start, length)) {
+                return entry;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        String identifier = new String(buffer, start, length);
+        this.entries[index] = identifier;
+
+        if (++this.size * 2 > this.entries.length) {
+            rehash();
+        }
+
+        return identifier;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private static boolean matches(String entry, char[] buffer, int start, int length) {
+        if (entry.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (entry.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void rehash() {
+        String[] entries = this.entries;
+        this.entries = new String[entries.length * 2];
+        int mask = this.entries.length - 1;
+
+        for (String entry : entries) {
+            if (entry != null) {
+                int index = entry.hashCode() & mask;
+
+                while (this.entries[index] != null) {
+                    index = (index + 1) & mask;
+                }
+
+                this.entries[index] = entry;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package tokens;
+
+import java_cup.runtime.Symbol;
+
+// A symbol made by a TokenFactory. Its line and column are packed into a long at each end instead of being kept in
+// two Location objects, and left and right hold the character offsets, as for any other Symbol.
+public class Token extends Symbol {
+    public final String name;
+    public final long start;
+    public final long end;
+
+    public Token(String name, int id, long start, long end, int left, int right, Object value) {
+        super(id, left, right, value);
+        this.name = name;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static long position(int line, int column) {
+        return ((long) line << 32) | (column & 0xffffffffL);
+    }
+
+    public static int line(long position) {
+        return (int) (position >>> 32);
+    }
+
+    public static int column(long position) {
+        return (int) position;
+    }
+
+    // In the form of a ComplexSymbolFactory.Location, so errors read the same with either factory
+    public static String describe(long position, int offset) {
+        return "unknown:" + line(position) + "/" + column(position) + "(" + offset + ")";
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " " + describe(this.start, this.left) + " - " + describe(this.end, this.right);
+    }
+}
@@ -0,0 +1,54 @@
+package tokens;
+
+import java_cup.runtime.Symbol;
+import java_cup.runtime.SymbolFactory;
+
+// A SymbolFactory for the Lexer and the Parser that makes a single Token per symbol, where the ComplexSymbolFactory
+// makes a ComplexSymbol and, for each token, two Locations. Symbols the parser reduces to span from the start of
+// their first symbol to the end of their last.
+public class TokenFactory implements SymbolFactory {
+    public Token newToken(String name, int id, int line, int column, int offset, int length, Object value) {
+        return new Token(name, id, Token.position(line, column), Token.position(line, column + length - 1), offset, offset + length, value);
+    }
+
+    @Override
+    public Symbol newSymbol(String name, int id, Symbol left, Symbol right, Object value) {
+        return new Token(name, id, start(left), end(right), left.left, right.right, value);
+    }
+
+    @Override
+    public Symbol newSymbol(String name, int id, Symbol left, Symbol right) {
+        return newSymbol(name, id, left, right, null);
+    }
+
+    // An empty production, which sits at the end of the symbol before it
+    @Override
+    public Symbol newSymbol(String name, int id, Symbol left, Object value) {
+        return new Token(name, id, end(left), end(left), left.right, left.right, value);
+    }
+
+    @Override
+    public Symbol newSymbol(String name, int id, Object value) {
+        return new Token(name, id, 0, 0, -1, -1, value);
+    }
+
+    @Override
+    public Symbol newSymbol(String name, int id) {
+        return newSymbol(name, id, null);
+    }
+
+    @Override
+    public Symbol startSymbol(String name, int id, int state) {
+        Symbol symbol = newSymbol(name, id);
+        symbol.parse_state = state;
+        return symbol;
+    }
+
+    private static long start(Symbol symbol) {
+        return symbol instanceof Token ? ((Token) symbol).start : 0;
+    }
+
+    private static long end(Symbol symbol) {
+        return symbol instanceof Token ? ((Token) symbol).end : 0;
+    }
+}
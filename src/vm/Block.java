@@ -0,0 +1,21 @@
+package vm;
+
+// The statements a basic block compiles to, run one after the other. Unless one of them jumps, the block continues
+// with the instruction at end.
+public class Block {
+    private final Handler[] statements;
+    private final int end;
+
+    public Block(Handler[] statements, int end) {
+        this.statements = statements;
+        this.end = end;
+    }
+
+    public void run(Machine machine) throws VMException {
+        machine.pc = this.end;
+
+        for (Handler statement : this.statements) {
+            statement.execute(machine);
+        }
+    }
+}
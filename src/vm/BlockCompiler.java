@@ -0,0 +1,359 @@
+package vm;
+
+import generator.OpCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Compiles the instructions of a basic block into a Block. Values pushed within the block are kept as Nodes until an
+// instruction consumes them, so an expression runs as one tree instead of an instruction at a time. Every node stores
+// its value in the stack slot it would have been pushed to, counted from the top of the stack when the block started
+// (or since it was last flushed), so memory is left as the Interpreter leaves it. Instructions that are not turned into
+// nodes or statements flush the pending values onto the stack and run their Handler.
+public class BlockCompiler {
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    private final Image image;
+
+    private final List<Handler> statements;
+
+    // The values pushed so far and not yet consumed, bottom first, with the highest slot each one writes to
+    private final List<Node> pending;
+    private final List<Integer> heights;
+    private final List<Boolean> evaluated;
+
+    public BlockCompiler(Image image) {
+        this.image = image;
+        this.statements = new ArrayList<>();
+        this.pending = new ArrayList<>();
+        this.heights = new ArrayList<>();
+        this.evaluated = new ArrayList<>();
+    }
+
+    // The blocks of the image, indexed by the instruction each one starts at
+    public Block[] compile() {
+        boolean[] leaders = leaders(this.image);
+        Block[] blocks = new Block[this.image.size()];
+        int start = 0;
+
+        for (int i = 1; i <= this.image.size(); i++) {
+            if (i == this.image.size() || leaders[i]) {
+                blocks[start] = compile(start, i);
+                start = i;
+            }
+        }
+
+        return blocks;
+    }
+
+    // A block from start to the next leader, for control that reaches the middle of a block, as a corrupted return
+    // address can make it do
+    public Block compileAt(int start) {
+        boolean[] leaders = leaders(this.image);
+        int end = start + 1;
+
+        while (end < this.image.size() && !leaders[end]) {
+            end++;
+        }
+
+        return compile(start, end);
+    }
+
+    // Blocks start at the first instruction, at every target, and after every instruction that may jump or stop
+    public static boolean[] leaders(Image image) {
+        boolean[] leaders = new boolean[image.size()];
+
+        if (leaders.length > 0) {
+            leaders[0] = true;
+        }
+
+        for (int i = 0; i < image.size(); i++) {
+            OpCode opCode = OPCODES[image.code[i * Image.WIDTH]];
+
+            if (opCode.hasLabelArgument()) {
+                leaders[image.code[i * Image.WIDTH + 1]] = true;
+            }
+
+            if ((opCode.hasLabelArgument() || opCode == OpCode.RET || opCode == OpCode.HALT) && i + 1 < leaders.length) {
+                leaders[i + 1] = true;
+            }
+        }
+
+        return leaders;
+    }
+
+    private Block compile(int start, int end) {
+        this.statements.clear();
+        this.pending.clear();
+        this.heights.clear();
+        this.evaluated.clear();
+
+        for (int i = start; i < end; i++) {
+            int offset = i * Image.WIDTH;
+            compile(OPCODES[this.image.code[offset]], this.image.code[offset + 1], this.image.code[offset + 2]);
+        }
+
+        flush();
+        return new Block(this.statements.toArray(new Handler[0]), end);
+    }
+
+    private void compile(OpCode opCode, int a1, int a2) {
+        int slot = this.pending.size() + 1;
+
+        switch (opCode) {
+            case LDC:
+                push(machine -> machine.m[machine.sp + slot] = a1, slot);
+                return;
+            case LDA:
+                push(machine -> machine.m[machine.sp + slot] = machine.d[a1] + a2, slot);
+                return;
+            case LDV:
+                push(machine -> machine.m[machine.sp + slot] = machine.m[machine.d[a1] + a2], slot);
+                return;
+            case LDI:
+                push(machine -> machine.m[machine.sp + slot] = machine.m[machine.m[machine.d[a1] + a2]], slot);
+                return;
+            case NOP:
+                return;
+            default:
+                break;
+        }
+
+        if (this.pending.size() >= 2 && binary(opCode, a1)) {
+            return;
+        }
+
+        if (this.pending.size() >= 1 && unary(opCode, a1, a2)) {
+            return;
+        }
+
+        flush();
+        this.statements.add(Handlers.of(opCode, a1, a2));
+    }
+
+    private boolean unary(OpCode opCode, int a1, int a2) {
+        int slot = this.pending.size();
+        Node x = this.pending.get(slot - 1);
+
+        switch (opCode) {
+            case NEG:
+                replace(1, machine -> machine.m[machine.sp + slot] = -x.eval(machine));
+                return true;
+            case NOT:
+                replace(1, machine -> machine.m[machine.sp + slot] = x.eval(machine) == 0 ? 1 : 0);
+                return true;
+            case IND:
+                replace(1, machine -> {
+                    int address = x.eval(machine);
+                    return machine.m[machine.sp + slot] = machine.m[address];
+                });
+                return true;
+            case ST:
+                consume(1, machine -> {
+                    int value = x.eval(machine);
+                    machine.m[machine.d[a1] + a2] = value;
+                });
+                return true;
+            case STI:
+                consume(1, machine -> {
+                    int value = x.eval(machine);
+                    machine.m[machine.m[machine.d[a1] + a2]] = value;
+                });
+                return true;
+            case OUT:
+                consume(1, machine -> machine.print(x.eval(machine)));
+                return true;
+            case POP:
+                consume(1, machine -> x.eval(machine));
+                return true;
+            case JMPF:
+                branch(1, machine -> x.eval(machine) == 0, a1);
+                return true;
+            case JMPT:
+                branch(1, machine -> x.eval(machine) != 0, a1);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean binary(OpCode opCode, int a1) {
+        int slot = this.pending.size() - 1;
+        Node x = this.pending.get(slot - 1);
+        Node y = this.pending.get(slot);
+        int ordinal = opCode.ordinal();
+
+        switch (opCode) {
+            case ADD:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = left + y.eval(machine);
+                });
+                return true;
+            case SUB:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = left - y.eval(machine);
+                });
+                return true;
+            case MULT:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = left * y.eval(machine);
+                });
+                return true;
+            case DIV:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = left / y.eval(machine);
+                });
+                return true;
+            case MOD:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = left % y.eval(machine);
+                });
+                return true;
+            case AND:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    int right = y.eval(machine);
+                    return machine.m[machine.sp + slot] = left != 0 && right != 0 ? 1 : 0;
+                });
+                return true;
+            case OR:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    int right = y.eval(machine);
+                    return machine.m[machine.sp + slot] = left != 0 || right != 0 ? 1 : 0;
+                });
+                return true;
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+                replace(2, machine -> {
+                    int left = x.eval(machine);
+                    return machine.m[machine.sp + slot] = Superinstruction.holds(ordinal, left, y.eval(machine)) ? 1 : 0;
+                });
+                return true;
+            case STL:
+                consume(2, machine -> {
+                    int address = x.eval(machine);
+                    machine.m[address] = y.eval(machine);
+                });
+                return true;
+            default:
+                if (!opCode.isComparisonJump()) {
+                    return false;
+                }
+
+                branch(2, machine -> {
+                    int left = x.eval(machine);
+                    return Superinstruction.holds(ordinal, left, y.eval(machine));
+                }, a1);
+                return true;
+        }
+    }
+
+    private void push(Node node, int height) {
+        this.pending.add(node);
+        this.heights.add(height);
+        this.evaluated.add(false);
+    }
+
+    // Replaces the top operands with a node computed from them
+    private void replace(int operands, Node node) {
+        int height = pop(operands);
+        push(node, height);
+    }
+
+    // Runs a statement that pops the top operands. The values below them are computed first, as they would have been
+    // pushed before.
+    private void consume(int operands, Handler statement) {
+        int height = pop(operands);
+        materialize();
+
+        this.statements.add(machine -> {
+            machine.reserve(height);
+            statement.execute(machine);
+        });
+    }
+
+    private interface Condition {
+        boolean holds(Machine machine);
+    }
+
+    // Ends the block with a jump that pops the top operands. What is left below them stays on the stack.
+    private void branch(int operands, Condition condition, int target) {
+        int height = pop(operands);
+        materialize();
+        int depth = this.pending.size();
+        clear();
+
+        this.statements.add(machine -> {
+            machine.reserve(height);
+            boolean taken = condition.holds(machine);
+            machine.sp += depth;
+
+            if (taken) {
+                machine.pc = target;
+            }
+        });
+    }
+
+    private int pop(int operands) {
+        int height = 0;
+
+        for (int i = 0; i < operands; i++) {
+            int top = this.pending.size() - 1;
+            height = Math.max(height, this.heights.get(top));
+            this.pending.remove(top);
+            this.heights.remove(top);
+            this.evaluated.remove(top);
+        }
+
+        return height;
+    }
+
+    // Computes every pending value that has not been yet, leaving nodes that read it back from its slot
+    private void materialize() {
+        for (int i = 0; i < this.pending.size(); i++) {
+            if (this.evaluated.get(i)) {
+                continue;
+            }
+
+            Node node = this.pending.get(i);
+            int height = this.heights.get(i);
+            int slot = i + 1;
+
+            this.statements.add(machine -> {
+                machine.reserve(height);
+                node.eval(machine);
+            });
+
+            this.pending.set(i, machine -> machine.m[machine.sp + slot]);
+            this.heights.set(i, slot);
+            this.evaluated.set(i, true);
+        }
+    }
+
+    // Pushes the pending values onto the stack
+    private void flush() {
+        materialize();
+        int depth = this.pending.size();
+        clear();
+
+        if (depth > 0) {
+            this.statements.add(machine -> machine.sp += depth);
+        }
+    }
+
+    private void clear() {
+        this.pending.clear();
+        this.heights.clear();
+        this.evaluated.clear();
+    }
+}
@@ -0,0 +1,165 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The code of one JVM method. Branches refer to labels, which are patched once the whole method has been written.
+public class Bytecode {
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2e;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int IASTORE = 0x4f;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int IREM = 0x70;
+    public static final int INEG = 0x74;
+    public static final int IINC = 0x84;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int RETURN = 0xb1;
+    public static final int GETFIELD = 0xb4;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int ARRAYLENGTH = 0xbe;
+
+    // Branch offsets are 16 bits, so longer methods are not supported
+    private static final int MAX_LENGTH = 0x7fff;
+
+    private byte[] code;
+    private int length;
+    private int maxStack;
+    private int maxLocals;
+
+    private final List<Integer> labels;
+    private final List<int[]> branches;
+
+    public Bytecode(int maxStack, int maxLocals) {
+        this.code = new byte[256];
+        this.maxStack = maxStack;
+        this.maxLocals = maxLocals;
+        this.labels = new ArrayList<>();
+        this.branches = new ArrayList<>();
+    }
+
+    public void op(int opcode) {
+        u1(opcode);
+    }
+
+    public void op(int opcode, int operand) {
+        u1(opcode);
+        u2(operand);
+    }
+
+    public void iload(int local) {
+        local(ILOAD, local);
+    }
+
+    public void istore(int local) {
+        local(ISTORE, local);
+    }
+
+    public void aload(int local) {
+        local(ALOAD, local);
+    }
+
+    public void astore(int local) {
+        local(ASTORE, local);
+    }
+
+    public void iinc(int local, int amount) {
+        u1(IINC);
+        u1(local);
+        u1(amount);
+    }
+
+    // Pushes an int using the shortest instruction, or through the constant pool of the class
+    public void iconst(int value, ClassWriter classWriter) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            op(LDC_W, classWriter.integer(value));
+        }
+    }
+
+    public int newLabel() {
+        this.labels.add(-1);
+        return this.labels.size() - 1;
+    }
+
+    public void bind(int label) {
+        this.labels.set(label, this.length);
+    }
+
+    public void branch(int opcode, int label) {
+        this.branches.add(new int[] { this.length, label });
+        u1(opcode);
+        u2(0);
+    }
+
+    public int getMaxStack() {
+        return this.maxStack;
+    }
+
+    public int getMaxLocals() {
+        return this.maxLocals;
+    }
+
+    public byte[] toByteArray() {
+        if (this.length > MAX_LENGTH) {
+            throw new IllegalStateException("Method is too long");
+        }
+
+        for (int[] branch : this.branches) {
+            int offset = this.labels.get(branch[1]) - branch[0];
+            this.code[branch[0] + 1] = (byte) (offset >> 8);
+            this.code[branch[0] + 2] = (byte) offset;
+        }
+
+        return Arrays.copyOf(this.code, this.length);
+    }
+
+    private void local(int opcode, int local) {
+        if (local > 0xff) {
+            throw new IllegalStateException("Too many locals");
+        }
+
+        u1(opcode);
+        u1(local);
+    }
+
+    private void u1(int value) {
+        if (this.length == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+
+        this.code[this.length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+}
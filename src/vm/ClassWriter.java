@@ -0,0 +1,186 @@
+package vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes a class file with a constant pool and methods, and nothing else. Classes are written as version 49, the last
+// version whose methods may be verified without a StackMapTable.
+public class ClassWriter {
+    private static final int VERSION = 49;
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constants;
+    private final DataOutputStream constantPool;
+    private final Map<String, Integer> indices;
+    private int constantCount;
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final List<byte[]> methods;
+
+    public ClassWriter(String name, String superName, String... interfaces) {
+        this.constants = new ByteArrayOutputStream();
+        this.constantPool = new DataOutputStream(this.constants);
+        this.indices = new HashMap<>();
+        this.constantCount = 1;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.methods = new ArrayList<>();
+    }
+
+    public int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    public int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    public int classReference(String className) {
+        int nameIndex = utf8(className);
+
+        return constant("C" + className, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    public int fieldReference(String owner, String fieldName, String descriptor) {
+        return memberReference(CONSTANT_FIELDREF, owner, fieldName, descriptor);
+    }
+
+    public int methodReference(String owner, String methodName, String descriptor) {
+        return memberReference(CONSTANT_METHODREF, owner, methodName, descriptor);
+    }
+
+    private int memberReference(int tag, String owner, String memberName, String descriptor) {
+        int ownerIndex = classReference(owner);
+        int nameIndex = utf8(memberName);
+        int descriptorIndex = utf8(descriptor);
+
+        int nameAndType = constant("N" + memberName + ":" + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+
+        return constant(tag + owner + "." + memberName + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    public void addMethod(int access, String methodName, String descriptor, Bytecode code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] instructions = code.toByteArray();
+
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(methodName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length);
+            out.writeShort(code.getMaxStack());
+            out.writeShort(code.getMaxLocals());
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.methods.add(bytes.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        int thisIndex = classReference(this.name);
+        int superIndex = classReference(this.superName);
+        int[] interfaceIndices = new int[this.interfaces.length];
+
+        for (int i = 0; i < this.interfaces.length; i++) {
+            interfaceIndices[i] = classReference(this.interfaces[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(this.constantCount);
+            out.write(this.constants.toByteArray());
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(interfaceIndices.length);
+
+            for (int interfaceIndex : interfaceIndices) {
+                out.writeShort(interfaceIndex);
+            }
+
+            out.writeShort(0);
+            out.writeShort(this.methods.size());
+
+            for (byte[] method : this.methods) {
+                out.write(method);
+            }
+
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private int constant(String key, ConstantWriter writer) {
+        Integer index = this.indices.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            writer.write(this.constantPool);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.indices.put(key, this.constantCount);
+        return this.constantCount++;
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
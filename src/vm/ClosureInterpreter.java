@@ -0,0 +1,42 @@
+package vm;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+// Runs an Image as a Block per basic block, compiled by the BlockCompiler before running
+public class ClosureInterpreter implements Engine {
+    private final InputStream in;
+    private final PrintStream out;
+
+    public ClosureInterpreter(InputStream in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    @Override
+    public void run(Image image) throws VMException {
+        BlockCompiler blockCompiler = new BlockCompiler(image);
+        Block[] blocks = blockCompiler.compile();
+        Machine machine = new Machine(new Input(this.in), this.out, image.levels);
+
+        // Errors are reported at the last instruction of the block they happen in
+        try {
+            while (!machine.halted) {
+                Block block = blocks[machine.pc];
+
+                // The other cores carry on from whatever instruction control reaches, so this one does too
+                if (block == null) {
+                    block = blocks[machine.pc] = blockCompiler.compileAt(machine.pc);
+                }
+
+                block.run(machine);
+            }
+        } catch (ArithmeticException e) {
+            throw new VMException(String.format("Division by zero at instruction %d", machine.pc - 1));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new VMException(String.format("Invalid memory access at instruction %d", machine.pc - 1));
+        } finally {
+            this.out.flush();
+        }
+    }
+}
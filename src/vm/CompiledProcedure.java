@@ -0,0 +1,7 @@
+package vm;
+
+// An SM procedure translated to JVM bytecode by the ProcedureCompiler. Running it does what interpreting it from its
+// PROC to its RET would, and returns the stack pointer after the RET.
+public interface CompiledProcedure {
+    int run(Interpreter interpreter, int sp) throws VMException;
+}
@@ -0,0 +1,43 @@
+package vm;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+// The ways an Image can be run, selected with -dispatch
+public enum Dispatch {
+    // A switch over the opcode of each instruction, in the Interpreter
+    SWITCH,
+
+    // An array of handlers decoded before running, one per instruction, in the HandlerInterpreter
+    HANDLERS,
+
+    // A tree of closures per basic block, in the ClosureInterpreter
+    CLOSURES,
+
+    // Register code translated from the stack code, in the RegisterInterpreter
+    REGISTERS;
+
+    public static Dispatch of(String name) {
+        for (Dispatch dispatch : Dispatch.values()) {
+            if (dispatch.name().equalsIgnoreCase(name)) {
+                return dispatch;
+            }
+        }
+
+        return null;
+    }
+
+    // Only the Interpreter compiles hot procedures
+    public Engine create(InputStream in, PrintStream out, boolean jit) {
+        switch (this) {
+            case HANDLERS:
+                return new HandlerInterpreter(in, out);
+            case CLOSURES:
+                return new ClosureInterpreter(in, out);
+            case REGISTERS:
+                return new RegisterInterpreter(in, out);
+            default:
+                return new Interpreter(in, out, true, jit);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package vm;
+
+// Runs an Image. The engines differ only in how they dispatch instructions, see Dispatch.
+public interface Engine {
+    void run(Image image) throws VMException;
+}
@@ -0,0 +1,6 @@
+package vm;
+
+// What one instruction does to a Machine, with its arguments already decoded
+public interface Handler {
+    void execute(Machine machine) throws VMException;
+}
@@ -0,0 +1,43 @@
+package vm;
+
+import generator.OpCode;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+// Runs an Image by decoding each instruction into a Handler first, so running one is a call instead of a switch
+public class HandlerInterpreter implements Engine {
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    private final InputStream in;
+    private final PrintStream out;
+
+    public HandlerInterpreter(InputStream in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    @Override
+    public void run(Image image) throws VMException {
+        Handler[] handlers = new Handler[image.size()];
+
+        for (int i = 0; i < handlers.length; i++) {
+            int offset = i * Image.WIDTH;
+            handlers[i] = Handlers.of(OPCODES[image.code[offset]], image.code[offset + 1], image.code[offset + 2]);
+        }
+
+        Machine machine = new Machine(new Input(this.in), this.out, image.levels);
+
+        try {
+            while (!machine.halted) {
+                handlers[machine.pc++].execute(machine);
+            }
+        } catch (ArithmeticException e) {
+            throw new VMException(String.format("Division by zero at instruction %d", machine.pc - 1));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new VMException(String.format("Invalid memory access at instruction %d", machine.pc - 1));
+        } finally {
+            this.out.flush();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package vm;
+
+import generator.OpCode;
+
+// The Handler for each instruction, doing what the Interpreter does for it
+public class Handlers {
+
+    public static Handler of(OpCode opCode, int a1, int a2) {
+        switch (opCode) {
+            case ADD:
+                return machine -> machine.m[machine.sp - 1] += machine.m[machine.sp--];
+            case SUB:
+                return machine -> machine.m[machine.sp - 1] -= machine.m[machine.sp--];
+            case MULT:
+                return machine -> machine.m[machine.sp - 1] *= machine.m[machine.sp--];
+            case DIV:
+                return machine -> machine.m[machine.sp - 1] /= machine.m[machine.sp--];
+            case MOD:
+                return machine -> machine.m[machine.sp - 1] %= machine.m[machine.sp--];
+            case AND:
+                return machine -> {
+                    machine.m[machine.sp - 1] = machine.m[machine.sp - 1] != 0 && machine.m[machine.sp] != 0 ? 1 : 0;
+                    machine.sp--;
+                };
+            case OR:
+                return machine -> {
+                    machine.m[machine.sp - 1] = machine.m[machine.sp - 1] != 0 || machine.m[machine.sp] != 0 ? 1 : 0;
+                    machine.sp--;
+                };
+            case NEG:
+                return machine -> machine.m[machine.sp] = -machine.m[machine.sp];
+            case NOT:
+                return machine -> machine.m[machine.sp] = machine.m[machine.sp] == 0 ? 1 : 0;
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+                return machine -> {
+                    machine.m[machine.sp - 1] = Superinstruction.holds(opCode.ordinal(), machine.m[machine.sp - 1], machine.m[machine.sp]) ? 1 : 0;
+                    machine.sp--;
+                };
+            case IN:
+                return machine -> machine.push(machine.readInteger());
+            case OUT:
+                return machine -> machine.print(machine.m[machine.sp--]);
+            case NOP:
+                return machine -> { };
+            case LDC:
+                return machine -> machine.push(a1);
+            case LDA:
+                return machine -> machine.push(machine.d[a1] + a2);
+            case LDV:
+                return machine -> machine.push(machine.m[machine.d[a1] + a2]);
+            case LDI:
+                return machine -> machine.push(machine.m[machine.m[machine.d[a1] + a2]]);
+            case ST:
+                return machine -> machine.m[machine.d[a1] + a2] = machine.m[machine.sp--];
+            case STI:
+                return machine -> machine.m[machine.m[machine.d[a1] + a2]] = machine.m[machine.sp--];
+            case JMP:
+                return machine -> machine.pc = a1;
+            case JMPF:
+                return machine -> {
+                    if (machine.m[machine.sp--] == 0) machine.pc = a1;
+                };
+            case JMPT:
+                return machine -> {
+                    if (machine.m[machine.sp--] != 0) machine.pc = a1;
+                };
+            case INIT:
+                return machine -> {
+                    machine.sp = 0;
+                    machine.d[0] = 0;
+                };
+            case HALT:
+                return machine -> machine.halted = true;
+            case ALLOC:
+                return machine -> {
+                    machine.reserve(a1);
+                    machine.sp += a1;
+                };
+            case CALL:
+                return machine -> {
+                    machine.push(machine.pc);
+                    machine.pc = a1;
+                };
+            case PROC:
+            case ENTER:
+                return machine -> {
+                    machine.push(machine.d[a1]);
+                    machine.d[a1] = machine.sp;
+                };
+            case RET:
+                return machine -> {
+                    machine.d[a1] = machine.m[machine.sp--];
+                    machine.pc = machine.m[machine.sp--];
+                };
+            case EXIT:
+                return machine -> machine.d[a1] = machine.m[machine.sp--];
+            case DUP:
+                return machine -> machine.push(machine.m[machine.sp]);
+            case POP:
+                return machine -> machine.sp--;
+            case STL:
+                return machine -> {
+                    machine.m[machine.m[machine.sp - 1]] = machine.m[machine.sp];
+                    machine.sp -= 2;
+                };
+            case IND:
+                return machine -> machine.m[machine.sp] = machine.m[machine.m[machine.sp]];
+            default:
+                return machine -> {
+                    if (Superinstruction.holds(opCode.ordinal(), machine.m[machine.sp - 1], machine.m[machine.sp])) machine.pc = a1;
+                    machine.sp -= 2;
+                };
+        }
+    }
+}
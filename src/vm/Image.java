@@ -0,0 +1,36 @@
+package vm;
+
+// A decoded SM program. Each instruction takes three consecutive ints of code: the ordinal of its OpCode and its two
+// arguments, with labels already resolved to instruction indices.
+public class Image {
+    public static final int WIDTH = 3;
+
+    public final int[] code;
+
+    // The label defined at each instruction, or null
+    public final String[] labels;
+
+    // One more than the deepest display level the program uses
+    public final int levels;
+
+    public Image(int[] code, String[] labels, int levels) {
+        this.code = code;
+        this.labels = labels;
+        this.levels = levels;
+    }
+
+    public int size() {
+        return this.labels.length;
+    }
+
+    // The index of the instruction defining a label, or -1
+    public int indexOf(String label) {
+        for (int i = 0; i < this.labels.length; i++) {
+            if (label.equals(this.labels[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,122 @@
+package vm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Binary form of an Image, loaded by mapping the file instead of parsing text.
+//
+// All values are big endian ints:
+//   header     magic "SMB1", version, number of instructions, display levels, number of labels
+//   constants  the labels, each as its instruction index, its length in bytes and its UTF-8 bytes padded to an int
+//   code       three ints per instruction: opcode ordinal and two arguments, jump targets as instruction indices
+public class ImageFile {
+    private static final int MAGIC = 0x534D4231;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    public static void write(Image image, String path) throws IOException {
+        int labels = 0;
+        int constantsSize = 0;
+
+        for (String label : image.labels) {
+            if (label != null) {
+                labels++;
+                constantsSize += 2 * Integer.BYTES + padded(label.getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + constantsSize + image.code.length * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(image.size()).putInt(image.levels).putInt(labels);
+
+        for (int i = 0; i < image.labels.length; i++) {
+            if (image.labels[i] != null) {
+                byte[] bytes = image.labels[i].getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(i).putInt(bytes.length).put(bytes);
+                buffer.position(buffer.position() + padded(bytes.length) - bytes.length);
+            }
+        }
+
+        buffer.asIntBuffer().put(image.code);
+        buffer.rewind();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static Image read(String path) throws IOException, VMException {
+        Path file = Paths.get(path);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new VMException(String.format("%s is not an SM binary", path));
+            }
+
+            if (buffer.getInt() != VERSION) {
+                throw new VMException(String.format("%s has an unsupported version", path));
+            }
+
+            int size = buffer.getInt();
+            int levels = buffer.getInt();
+            int labelCount = buffer.getInt();
+
+            if (size < 0 || levels < 0 || labelCount < 0 || labelCount > size) {
+                throw new VMException(String.format("%s is corrupt", path));
+            }
+
+            // Sizes are checked against what is left of the file before anything is allocated for them
+            if ((long) size * Image.WIDTH * Integer.BYTES > buffer.remaining()) {
+                throw new VMException(String.format("%s is truncated", path));
+            }
+
+            String[] labels = new String[size];
+
+            for (int i = 0; i < labelCount; i++) {
+                if (buffer.remaining() < 2 * Integer.BYTES) {
+                    throw new VMException(String.format("%s is truncated", path));
+                }
+
+                int index = buffer.getInt();
+                int length = buffer.getInt();
+
+                if (index < 0 || index >= size || length < 0) {
+                    throw new VMException(String.format("%s is corrupt", path));
+                }
+
+                if (length > buffer.remaining() || padded(length) > buffer.remaining()) {
+                    throw new VMException(String.format("%s is truncated", path));
+                }
+
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                buffer.position(buffer.position() + padded(length) - length);
+                labels[index] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            IntBuffer code = buffer.asIntBuffer();
+
+            if (code.remaining() != size * Image.WIDTH) {
+                throw new VMException(String.format("%s is truncated", path));
+            }
+
+            int[] codeArray = new int[size * Image.WIDTH];
+            code.get(codeArray);
+            return new Image(codeArray, labels, levels);
+        }
+    }
+
+    private static int padded(int length) {
+        return (length + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+    }
+}
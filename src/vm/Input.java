@@ -0,0 +1,42 @@
+package vm;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads the integers an SM program scans, like cin does: once input is missing or malformed, every read is 0
+public class Input {
+    private final InputStream in;
+    private boolean failed;
+
+    public Input(InputStream in) {
+        this.in = in;
+    }
+
+    public int readInteger() throws VMException {
+        if (this.failed) {
+            return 0;
+        }
+
+        try {
+            int c = this.in.read();
+
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = this.in.read();
+            }
+
+            StringBuilder token = new StringBuilder();
+
+            while (c != -1 && !Character.isWhitespace(c)) {
+                token.append((char) c);
+                c = this.in.read();
+            }
+
+            return Integer.parseInt(token.toString());
+        } catch (NumberFormatException e) {
+            this.failed = true;
+            return 0;
+        } catch (IOException e) {
+            throw new VMException("Could not read input: " + e.getMessage());
+        }
+    }
+}
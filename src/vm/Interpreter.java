@@ -0,0 +1,386 @@
+package vm;
+
+import generator.OpCode;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// Runs an Image with the semantics of the SM emulator in dist/SM.cpp. Memory grows as the stack does, instead of
+// being limited to a fixed number of cells. Frequent sequences of instructions run as a single Superinstruction, and
+// with compile, hot procedures run as JVM bytecode once the Jit has compiled them.
+public class Interpreter implements Engine {
+    private static final OpCode[] OPCODES = OpCode.values();
+    private static final int ALLOC = OpCode.ALLOC.ordinal();
+    private static final int INITIAL_MEMORY = 1024;
+
+    // How many compiled procedures may be running inside one another. Each one's calls nest Java frames, so past this
+    // depth callees are interpreted instead, which runs any further calls in execute's loop without growing the stack.
+    private static final int MAX_COMPILED_DEPTH = 512;
+
+    private final InputStream in;
+    private final PrintStream out;
+    private final boolean superinstructions;
+    private final boolean compile;
+    private Input input;
+
+    private int[] code;
+    private Jit jit;
+    private int compiledDepth;
+
+    // Memory and the display, which compiled procedures use as well
+    int[] m;
+    int[] d;
+
+    public Interpreter(InputStream in, PrintStream out) {
+        this(in, out, true, false);
+    }
+
+    public Interpreter(InputStream in, PrintStream out, boolean superinstructions, boolean compile) {
+        this.in = in;
+        this.out = out;
+        this.superinstructions = superinstructions;
+        this.compile = compile;
+    }
+
+    @Override
+    public void run(Image image) throws VMException {
+        this.code = this.superinstructions ? Superinstruction.fuse(image) : image.code;
+        this.m = new int[INITIAL_MEMORY];
+        this.d = new int[image.levels];
+        this.jit = this.compile ? new Jit(image) : null;
+        this.input = new Input(this.in);
+        this.compiledDepth = 0;
+
+        try {
+            execute(0, 0, -1);
+        } finally {
+            this.out.flush();
+        }
+    }
+
+    // Runs from pc until HALT, or until a RET leaves the stack pointer at stopSp or below, and returns the stack pointer
+    private int execute(int pc, int sp, int stopSp) throws VMException {
+        int[] code = this.code;
+        int[] m = this.m;
+        int[] d = this.d;
+
+        try {
+            while (true) {
+                int offset = pc * Image.WIDTH;
+                int a1 = code[offset + 1];
+                int a2 = code[offset + 2];
+
+                // Every instruction pushes at most one value, except ALLOC, and a superinstruction writes at most two
+                if (sp + 2 >= m.length || (code[offset] == ALLOC && sp + a1 >= m.length)) {
+                    m = Arrays.copyOf(m, Math.max(m.length * 2, sp + a1 + 1));
+                }
+
+                pc++;
+
+                if (code[offset] >= Superinstruction.FIRST) {
+                    // The operands of the rest of the sequence follow those of its first instruction. What the sequence
+                    // leaves above the top of the stack is written too, since locals start out with whatever is there.
+                    switch (Superinstruction.of(code[offset])) {
+                        case LDV_LDC_ADD_ST:
+                            m[sp + 1] = m[d[a1] + a2] + code[offset + 4];
+                            m[sp + 2] = code[offset + 5];
+                            m[d[code[offset + 10]] + code[offset + 11]] = m[sp + 1];
+                            pc += 3;
+                            break;
+                        case LDV_LDC_COMPARE_JMPF:
+                            m[sp + 2] = code[offset + 4];
+                            m[sp + 1] = Superinstruction.holds(code[offset + 6], m[d[a1] + a2], m[sp + 2]) ? 1 : 0;
+                            pc = m[sp + 1] != 0 ? pc + 3 : code[offset + 10];
+                            break;
+                        case LDV_LDV_COMPARE_JMPF:
+                            m[sp + 2] = m[d[code[offset + 4]] + code[offset + 5]];
+                            m[sp + 1] = Superinstruction.holds(code[offset + 6], m[d[a1] + a2], m[sp + 2]) ? 1 : 0;
+                            pc = m[sp + 1] != 0 ? pc + 3 : code[offset + 10];
+                            break;
+                        case LDV_LDV_ADD_IND:
+                            m[sp + 2] = m[d[code[offset + 4]] + code[offset + 5]];
+                            m[sp + 1] = m[m[d[a1] + a2] + m[sp + 2]];
+                            sp++;
+                            pc += 3;
+                            break;
+                        case LDA_LDV_ADD_IND:
+                            m[sp + 2] = m[d[code[offset + 4]] + code[offset + 5]];
+                            m[sp + 1] = m[d[a1] + a2 + m[sp + 2]];
+                            sp++;
+                            pc += 3;
+                            break;
+                        case LDV_LDC_JUMP:
+                            m[sp + 1] = m[d[a1] + a2];
+                            m[sp + 2] = code[offset + 4];
+                            pc = Superinstruction.holds(code[offset + 6], m[sp + 1], m[sp + 2]) ? code[offset + 7] : pc + 2;
+                            break;
+                        case LDV_LDV_JUMP:
+                            m[sp + 1] = m[d[a1] + a2];
+                            m[sp + 2] = m[d[code[offset + 4]] + code[offset + 5]];
+                            pc = Superinstruction.holds(code[offset + 6], m[sp + 1], m[sp + 2]) ? code[offset + 7] : pc + 2;
+                            break;
+                        case LDV_LDV_ADD:
+                            m[sp + 2] = m[d[code[offset + 4]] + code[offset + 5]];
+                            m[sp + 1] = m[d[a1] + a2] + m[sp + 2];
+                            sp++;
+                            pc += 2;
+                            break;
+                        case LDV_LDC_ADD:
+                            m[sp + 1] = m[d[a1] + a2] + code[offset + 4];
+                            m[sp + 2] = code[offset + 5];
+                            sp++;
+                            pc += 2;
+                            break;
+                        case PROC_ALLOC:
+                            m[++sp] = d[a1];
+                            d[a1] = sp;
+                            sp += code[offset + 4];
+
+                            if (sp + 2 >= m.length) {
+                                m = Arrays.copyOf(m, Math.max(m.length * 2, sp + 3));
+                            }
+
+                            pc++;
+                            break;
+                        case ALLOC_RET:
+                            sp += a1;
+                            d[code[offset + 4]] = m[sp--];
+                            pc = m[sp--];
+
+                            if (sp <= stopSp) {
+                                this.m = m;
+                                return sp;
+                            }
+                            break;
+                    }
+
+                    continue;
+                }
+
+                switch (OPCODES[code[offset]]) {
+                    case ADD:
+                        m[sp - 1] += m[sp];
+                        sp--;
+                        break;
+                    case SUB:
+                        m[sp - 1] -= m[sp];
+                        sp--;
+                        break;
+                    case MULT:
+                        m[sp - 1] *= m[sp];
+                        sp--;
+                        break;
+                    case DIV:
+                        m[sp - 1] /= m[sp];
+                        sp--;
+                        break;
+                    case MOD:
+                        m[sp - 1] %= m[sp];
+                        sp--;
+                        break;
+                    case AND:
+                        m[sp - 1] = m[sp - 1] != 0 && m[sp] != 0 ? 1 : 0;
+                        sp--;
+                        break;
+                    case OR:
+                        m[sp - 1] = m[sp - 1] != 0 || m[sp] != 0 ? 1 : 0;
+                        sp--;
+                        break;
+                    case NEG:
+                        m[sp] = -m[sp];
+                        break;
+                    case NOT:
+                        m[sp] = m[sp] == 0 ? 1 : 0;
+                        break;
+                    case EQ:
+                        m[sp - 1] = m[sp - 1] == m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case NE:
+                        m[sp - 1] = m[sp - 1] != m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case LT:
+                        m[sp - 1] = m[sp - 1] < m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case GT:
+                        m[sp - 1] = m[sp - 1] > m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case LE:
+                        m[sp - 1] = m[sp - 1] <= m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case GE:
+                        m[sp - 1] = m[sp - 1] >= m[sp] ? 1 : 0;
+                        sp--;
+                        break;
+                    case IN:
+                        m[++sp] = readInteger();
+                        break;
+                    case OUT:
+                        this.out.println(m[sp--]);
+                        break;
+                    case NOP:
+                        break;
+                    case LDC:
+                        m[++sp] = a1;
+                        break;
+                    case LDA:
+                        m[++sp] = d[a1] + a2;
+                        break;
+                    case LDV:
+                        m[++sp] = m[d[a1] + a2];
+                        break;
+                    case LDI:
+                        m[++sp] = m[m[d[a1] + a2]];
+                        break;
+                    case ST:
+                        m[d[a1] + a2] = m[sp--];
+                        break;
+                    case STI:
+                        m[m[d[a1] + a2]] = m[sp--];
+                        break;
+                    case JMP:
+                        pc = a1;
+                        break;
+                    case JMPF:
+                        if (m[sp--] == 0) pc = a1;
+                        break;
+                    case JMPT:
+                        if (m[sp--] != 0) pc = a1;
+                        break;
+                    case INIT:
+                        sp = 0;
+                        d[0] = 0;
+                        break;
+                    case HALT:
+                        this.m = m;
+                        return sp;
+                    case ALLOC:
+                        sp += a1;
+                        break;
+                    case CALL:
+                        m[++sp] = pc;
+
+                        if (this.jit != null && this.compiledDepth < MAX_COMPILED_DEPTH) {
+                            CompiledProcedure procedure = this.jit.lookup(a1);
+
+                            // The return address is where the compiled procedure returns to
+                            if (procedure != null) {
+                                this.m = m;
+                                sp = runCompiled(procedure, sp);
+                                m = this.m;
+                                break;
+                            }
+                        }
+
+                        pc = a1;
+                        break;
+                    case PROC:
+                    case ENTER:
+                        m[++sp] = d[a1];
+                        d[a1] = sp;
+                        break;
+                    case RET:
+                        d[a1] = m[sp--];
+                        pc = m[sp--];
+
+                        if (sp <= stopSp) {
+                            this.m = m;
+                            return sp;
+                        }
+                        break;
+                    case EXIT:
+                        d[a1] = m[sp--];
+                        break;
+                    case DUP:
+                        m[sp + 1] = m[sp];
+                        sp++;
+                        break;
+                    case POP:
+                        sp--;
+                        break;
+                    case STL:
+                        m[m[sp - 1]] = m[sp];
+                        sp -= 2;
+                        break;
+                    case IND:
+                        m[sp] = m[m[sp]];
+                        break;
+                    case JLT:
+                        if (m[sp - 1] < m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                    case JLE:
+                        if (m[sp - 1] <= m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                    case JGT:
+                        if (m[sp - 1] > m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                    case JGE:
+                        if (m[sp - 1] >= m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                    case JEQ:
+                        if (m[sp - 1] == m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                    case JNE:
+                        if (m[sp - 1] != m[sp]) pc = a1;
+                        sp -= 2;
+                        break;
+                }
+            }
+        } catch (ArithmeticException e) {
+            throw new VMException(String.format("Division by zero at instruction %d", pc - 1));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new VMException(String.format("Invalid memory access at instruction %d", pc - 1));
+        }
+    }
+
+    // Calls a procedure for a compiled procedure, compiled or not, and returns the stack pointer after it returns
+    int call(int target, int sp, int returnAddress) throws VMException {
+        grow(sp + 1);
+        this.m[++sp] = returnAddress;
+
+        CompiledProcedure procedure = this.compiledDepth < MAX_COMPILED_DEPTH ? this.jit.lookup(target) : null;
+
+        if (procedure != null) {
+            return runCompiled(procedure, sp);
+        }
+
+        return execute(target, sp, sp - 1);
+    }
+
+    private int runCompiled(CompiledProcedure procedure, int sp) throws VMException {
+        this.compiledDepth++;
+
+        try {
+            return procedure.run(this, sp);
+        } finally {
+            this.compiledDepth--;
+        }
+    }
+
+    // Memory, with room for a value at top
+    int[] grow(int top) {
+        if (top >= this.m.length) {
+            this.m = Arrays.copyOf(this.m, Math.max(this.m.length * 2, top + 1));
+        }
+
+        return this.m;
+    }
+
+    void print(int value) {
+        this.out.println(value);
+    }
+
+    int readInteger() throws VMException {
+        return this.input.readInteger();
+    }
+}
@@ -0,0 +1,65 @@
+package vm;
+
+import java.lang.invoke.MethodHandles;
+
+// Decides which procedures are hot and compiles them to JVM bytecode, loaded as hidden classes. A procedure that loops
+// is compiled when it is first called, any other once it has been called CALL_THRESHOLD times. Procedures that
+// cannot be compiled keep being interpreted.
+public class Jit {
+    public static final int CALL_THRESHOLD = 50;
+
+    private final Image image;
+
+    // Indexed by the instruction each procedure starts at
+    private final int[] calls;
+    private final ProcedureCompiler[] compilers;
+    private final CompiledProcedure[] procedures;
+    private final boolean[] interpreted;
+
+    public Jit(Image image) {
+        this.image = image;
+        this.calls = new int[image.size()];
+        this.compilers = new ProcedureCompiler[image.size()];
+        this.procedures = new CompiledProcedure[image.size()];
+        this.interpreted = new boolean[image.size()];
+    }
+
+    // The compiled procedure starting at target, if it is compiled by now
+    public CompiledProcedure lookup(int target) {
+        CompiledProcedure procedure = this.procedures[target];
+
+        if (procedure != null || this.interpreted[target]) {
+            return procedure;
+        }
+
+        ProcedureCompiler compiler = this.compilers[target];
+
+        if (compiler == null) {
+            compiler = new ProcedureCompiler(this.image, target);
+
+            if (!compiler.analyze()) {
+                this.interpreted[target] = true;
+                return null;
+            }
+
+            this.compilers[target] = compiler;
+        }
+
+        if (!compiler.hasLoop() && ++this.calls[target] < CALL_THRESHOLD) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(compiler.compile("vm/Procedure" + target), true);
+            procedure = (CompiledProcedure) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | IllegalStateException e) {
+            this.interpreted[target] = true;
+            return null;
+        } finally {
+            this.compilers[target] = null;
+        }
+
+        this.procedures[target] = procedure;
+        return procedure;
+    }
+}
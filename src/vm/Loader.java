@@ -0,0 +1,83 @@
+package vm;
+
+import generator.CodeBuffer;
+import generator.GeneratorException;
+import generator.Instruction;
+import generator.OpCode;
+
+import java.util.List;
+
+// Decodes generated instructions into an Image, once, so that running them needs no string handling
+public class Loader {
+
+    public Image load(List<Instruction> instructions) throws VMException {
+        try {
+            return load(CodeBuffer.of(instructions));
+        } catch (GeneratorException e) {
+            throw new VMException(e.getMessage());
+        }
+    }
+
+    // The buffer has already resolved every jump and call to the index of its target
+    public Image load(CodeBuffer codeBuffer) throws VMException {
+        String[] labels = new String[codeBuffer.size()];
+        int[] code = new int[codeBuffer.size() * Image.WIDTH];
+        int levels = 1;
+
+        for (int i = 0; i < codeBuffer.size(); i++) {
+            Instruction instruction = codeBuffer.get(i);
+            OpCode opCode = instruction.getOpCode();
+            int offset = i * Image.WIDTH;
+
+            if (instruction.getLabel() != null) {
+                labels[i] = instruction.getLabel().getName();
+            }
+
+            code[offset] = opCode.ordinal();
+
+            if (opCode.hasLabelArgument()) {
+                code[offset + 1] = codeBuffer.getTarget(i);
+            } else {
+                code[offset + 1] = parse(instruction.getArg1());
+            }
+
+            code[offset + 2] = parse(instruction.getArg2());
+
+            if (usesLevel(opCode)) {
+                levels = Math.max(levels, code[offset + 1] + 1);
+            }
+        }
+
+        return new Image(code, labels, levels);
+    }
+
+    private int parse(String argument) throws VMException {
+        if (argument == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            throw new VMException(String.format("Invalid argument %s", argument));
+        }
+    }
+
+    // Opcodes whose first argument is a display level
+    private boolean usesLevel(OpCode opCode) {
+        switch (opCode) {
+            case LDA:
+            case LDV:
+            case LDI:
+            case ST:
+            case STI:
+            case PROC:
+            case RET:
+            case ENTER:
+            case EXIT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package vm;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// The state of a program run by the HandlerInterpreter or the ClosureInterpreter, which the handlers they run share
+public class Machine {
+    private static final int INITIAL_MEMORY = 1024;
+
+    public int[] m;
+    public final int[] d;
+    public int sp;
+    public int pc;
+    public boolean halted;
+
+    private final Input input;
+    private final PrintStream out;
+
+    public Machine(Input input, PrintStream out, int levels) {
+        this.m = new int[INITIAL_MEMORY];
+        this.d = new int[levels];
+        this.input = input;
+        this.out = out;
+    }
+
+    public void push(int value) {
+        if (this.sp + 1 >= this.m.length) {
+            grow(this.sp + 1);
+        }
+
+        this.m[++this.sp] = value;
+    }
+
+    // Makes room for cells more values above the top of the stack
+    public void reserve(int cells) {
+        if (this.sp + cells >= this.m.length) {
+            grow(this.sp + cells);
+        }
+    }
+
+    private void grow(int top) {
+        this.m = Arrays.copyOf(this.m, Math.max(this.m.length * 2, top + 1));
+    }
+
+    public int readInteger() throws VMException {
+        return this.input.readInteger();
+    }
+
+    public void print(int value) {
+        this.out.println(value);
+    }
+}
@@ -0,0 +1,7 @@
+package vm;
+
+// A value pushed within a basic block, computed when the instruction that pops it runs. Evaluating a node also stores
+// its value where the stack would hold it.
+public interface Node {
+    int eval(Machine machine);
+}
@@ -0,0 +1,576 @@
+package vm;
+
+import generator.OpCode;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+// Translates one SM procedure, everything reachable from its PROC without following calls, into the run method of a
+// class implementing CompiledProcedure.
+//
+// The values an instruction pushes are kept in JVM locals, one per position on the operand stack, which needs the
+// number of them before each instruction to be the same on every path to it. They are only written to memory when
+// the SM stack itself is used: before a call, which takes its arguments from there, and before ALLOC, ENTER, EXIT
+// and RET. Memory above the top of the stack is therefore not left as the interpreter would leave it, which only
+// shows in programs that read variables they never assigned.
+public class ProcedureCompiler {
+    private static final OpCode[] OPCODES = OpCode.values();
+    private static final int MAX_DEPTH = 200;
+    private static final int MAX_STACK = 16;
+
+    private static final String INTERPRETER = "vm/Interpreter";
+    private static final String DESCRIPTOR = "(Lvm/Interpreter;I)I";
+
+    // Locals of the run method, followed by the operand stack and two scratch locals
+    private static final int INTERPRETER_LOCAL = 1;
+    private static final int SP = 2;
+    private static final int M = 3;
+    private static final int D = 4;
+    private static final int OPERANDS = 5;
+
+    private final Image image;
+    private final int entry;
+
+    // The number of values in JVM locals before each instruction, or -1 for instructions the procedure never reaches
+    private final int[] depths;
+    private int maxDepth;
+    private boolean hasLoop;
+
+    private ClassWriter classWriter;
+    private Bytecode code;
+    private int[] labels;
+    private int depth;
+    private int scratch;
+
+    public ProcedureCompiler(Image image, int entry) {
+        this.image = image;
+        this.entry = entry;
+        this.depths = new int[image.size()];
+    }
+
+    // Whether the procedure can be compiled, which every other method requires
+    public boolean analyze() {
+        Arrays.fill(this.depths, -1);
+        Deque<Integer> pending = new ArrayDeque<>();
+        this.depths[this.entry] = 0;
+        pending.push(this.entry);
+
+        while (!pending.isEmpty()) {
+            int index = pending.pop();
+            OpCode opCode = opCode(index);
+
+            if (opCode == OpCode.INIT || opCode == OpCode.HALT || (opCode == OpCode.PROC && index != this.entry)) {
+                return false;
+            }
+
+            int after = depthAfter(opCode, this.depths[index]);
+
+            if (after > MAX_DEPTH) {
+                return false;
+            }
+
+            this.maxDepth = Math.max(this.maxDepth, after);
+
+            if (opCode.isJump() && !reach(argument(index), after, pending)) {
+                return false;
+            }
+
+            if (opCode.isJump() && argument(index) <= index) {
+                this.hasLoop = true;
+            }
+
+            if (opCode != OpCode.JMP && opCode != OpCode.RET && !reach(index + 1, after, pending)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean reach(int index, int depth, Deque<Integer> pending) {
+        if (index < 0 || index >= this.depths.length) {
+            return false;
+        }
+
+        if (this.depths[index] == -1) {
+            this.depths[index] = depth;
+            pending.push(index);
+        }
+
+        return this.depths[index] == depth;
+    }
+
+    // Values move to memory before instructions that use the SM stack itself
+    private int depthAfter(OpCode opCode, int depth) {
+        switch (opCode) {
+            case PROC:
+            case ENTER:
+            case EXIT:
+            case ALLOC:
+            case CALL:
+            case RET:
+                return 0;
+            case LDC:
+            case LDA:
+            case LDV:
+            case LDI:
+            case IN:
+            case DUP:
+                return depth + 1;
+            case POP:
+            case ST:
+            case STI:
+            case OUT:
+            case JMPF:
+            case JMPT:
+                return Math.max(depth - 1, 0);
+            case STL:
+            case JLT:
+            case JLE:
+            case JGT:
+            case JGE:
+            case JEQ:
+            case JNE:
+                return Math.max(depth - 2, 0);
+            case NEG:
+            case NOT:
+            case IND:
+                return Math.max(depth - 1, 0) + 1;
+            case JMP:
+            case NOP:
+                return depth;
+            default:
+                return Math.max(depth - 2, 0) + 1;
+        }
+    }
+
+    // Procedures that loop are worth compiling the first time they are called
+    public boolean hasLoop() {
+        return this.hasLoop;
+    }
+
+    public byte[] compile(String className) {
+        this.classWriter = new ClassWriter(className, "java/lang/Object", "vm/CompiledProcedure");
+        this.scratch = OPERANDS + this.maxDepth;
+        this.code = new Bytecode(MAX_STACK, this.scratch + 2);
+        this.labels = new int[this.depths.length];
+
+        for (int i = 0; i < this.depths.length; i++) {
+            this.labels[i] = this.depths[i] == -1 ? -1 : this.code.newLabel();
+        }
+
+        this.code.aload(INTERPRETER_LOCAL);
+        this.code.op(Bytecode.GETFIELD, this.classWriter.fieldReference(INTERPRETER, "m", "[I"));
+        this.code.astore(M);
+        this.code.aload(INTERPRETER_LOCAL);
+        this.code.op(Bytecode.GETFIELD, this.classWriter.fieldReference(INTERPRETER, "d", "[I"));
+        this.code.astore(D);
+
+        for (int i = 0; i < this.depths.length; i++) {
+            if (this.depths[i] != -1) {
+                this.code.bind(this.labels[i]);
+                this.depth = this.depths[i];
+                compileInstruction(i);
+            }
+        }
+
+        Bytecode constructor = new Bytecode(1, 1);
+        constructor.aload(0);
+        constructor.op(Bytecode.INVOKESPECIAL, this.classWriter.methodReference("java/lang/Object", "<init>", "()V"));
+        constructor.op(Bytecode.RETURN);
+
+        this.classWriter.addMethod(ClassWriter.ACC_PUBLIC, "<init>", "()V", constructor);
+        this.classWriter.addMethod(ClassWriter.ACC_PUBLIC, "run", DESCRIPTOR, this.code);
+        return this.classWriter.toByteArray();
+    }
+
+    private void compileInstruction(int index) {
+        OpCode opCode = opCode(index);
+        int a1 = argument(index);
+        int a2 = this.image.code[index * Image.WIDTH + 2];
+
+        switch (opCode) {
+            case ADD:
+                arithmetic(Bytecode.IADD);
+                break;
+            case SUB:
+                arithmetic(Bytecode.ISUB);
+                break;
+            case MULT:
+                arithmetic(Bytecode.IMUL);
+                break;
+            case DIV:
+                arithmetic(Bytecode.IDIV);
+                break;
+            case MOD:
+                arithmetic(Bytecode.IREM);
+                break;
+            case AND:
+            case OR:
+                load(2);
+                this.code.istore(this.scratch + 1);
+                this.code.istore(this.scratch);
+                logical(opCode == OpCode.AND);
+                push();
+                break;
+            case NEG:
+                load(1);
+                this.code.op(Bytecode.INEG);
+                push();
+                break;
+            case NOT:
+                load(1);
+                condition(Bytecode.IFEQ);
+                push();
+                break;
+            case EQ:
+                comparison(Bytecode.IF_ICMPEQ);
+                break;
+            case NE:
+                comparison(Bytecode.IF_ICMPNE);
+                break;
+            case LT:
+                comparison(Bytecode.IF_ICMPLT);
+                break;
+            case GT:
+                comparison(Bytecode.IF_ICMPGT);
+                break;
+            case LE:
+                comparison(Bytecode.IF_ICMPLE);
+                break;
+            case GE:
+                comparison(Bytecode.IF_ICMPGE);
+                break;
+            case IN:
+                this.code.aload(INTERPRETER_LOCAL);
+                this.code.op(Bytecode.INVOKEVIRTUAL, this.classWriter.methodReference(INTERPRETER, "readInteger", "()I"));
+                push();
+                break;
+            case OUT:
+                this.code.aload(INTERPRETER_LOCAL);
+                load(1);
+                this.code.op(Bytecode.INVOKEVIRTUAL, this.classWriter.methodReference(INTERPRETER, "print", "(I)V"));
+                break;
+            case NOP:
+                break;
+            case LDC:
+                iconst(a1);
+                push();
+                break;
+            case LDA:
+                address(a1, a2);
+                push();
+                break;
+            case LDV:
+                this.code.aload(M);
+                address(a1, a2);
+                this.code.op(Bytecode.IALOAD);
+                push();
+                break;
+            case LDI:
+                this.code.aload(M);
+                this.code.aload(M);
+                address(a1, a2);
+                this.code.op(Bytecode.IALOAD);
+                this.code.op(Bytecode.IALOAD);
+                push();
+                break;
+            case ST:
+                this.code.aload(M);
+                address(a1, a2);
+                load(1);
+                this.code.op(Bytecode.IASTORE);
+                break;
+            case STI:
+                this.code.aload(M);
+                this.code.aload(M);
+                address(a1, a2);
+                this.code.op(Bytecode.IALOAD);
+                load(1);
+                this.code.op(Bytecode.IASTORE);
+                break;
+            case JMP:
+                this.code.branch(Bytecode.GOTO, this.labels[a1]);
+                break;
+            case JMPF:
+                load(1);
+                this.code.branch(Bytecode.IFEQ, this.labels[a1]);
+                break;
+            case JMPT:
+                load(1);
+                this.code.branch(Bytecode.IFNE, this.labels[a1]);
+                break;
+            case JLT:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPLT, this.labels[a1]);
+                break;
+            case JLE:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPLE, this.labels[a1]);
+                break;
+            case JGT:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPGT, this.labels[a1]);
+                break;
+            case JGE:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPGE, this.labels[a1]);
+                break;
+            case JEQ:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPEQ, this.labels[a1]);
+                break;
+            case JNE:
+                load(2);
+                this.code.branch(Bytecode.IF_ICMPNE, this.labels[a1]);
+                break;
+            case ALLOC:
+                flush();
+
+                if (a1 > 0) {
+                    reserve(a1);
+                }
+
+                addToSp(a1);
+                break;
+            case CALL:
+                flush();
+                this.code.aload(INTERPRETER_LOCAL);
+                iconst(a1);
+                this.code.iload(SP);
+                iconst(index + 1);
+                this.code.op(Bytecode.INVOKEVIRTUAL, this.classWriter.methodReference(INTERPRETER, "call", "(III)I"));
+                this.code.istore(SP);
+
+                // The callee may have grown memory
+                this.code.aload(INTERPRETER_LOCAL);
+                this.code.op(Bytecode.GETFIELD, this.classWriter.fieldReference(INTERPRETER, "m", "[I"));
+                this.code.astore(M);
+                break;
+            case PROC:
+            case ENTER:
+                flush();
+                reserve(1);
+                this.code.iinc(SP, 1);
+                this.code.aload(M);
+                this.code.iload(SP);
+                display(a1);
+                this.code.op(Bytecode.IASTORE);
+                this.code.aload(D);
+                iconst(a1);
+                this.code.iload(SP);
+                this.code.op(Bytecode.IASTORE);
+                break;
+            case RET:
+            case EXIT:
+                flush();
+                this.code.aload(D);
+                iconst(a1);
+                this.code.aload(M);
+                this.code.iload(SP);
+                this.code.op(Bytecode.IALOAD);
+                this.code.op(Bytecode.IASTORE);
+
+                // The return address is where the caller continues anyway
+                if (opCode == OpCode.RET) {
+                    addToSp(-2);
+                    this.code.iload(SP);
+                    this.code.op(Bytecode.IRETURN);
+                } else {
+                    addToSp(-1);
+                }
+                break;
+            case DUP:
+                if (this.depth > 0) {
+                    this.code.iload(OPERANDS + this.depth - 1);
+                } else {
+                    this.code.aload(M);
+                    this.code.iload(SP);
+                    this.code.op(Bytecode.IALOAD);
+                }
+
+                push();
+                break;
+            case POP:
+                if (this.depth > 0) {
+                    this.depth--;
+                } else {
+                    addToSp(-1);
+                }
+                break;
+            case STL:
+                this.code.aload(M);
+                load(2);
+                this.code.op(Bytecode.IASTORE);
+                break;
+            case IND:
+                this.code.aload(M);
+                load(1);
+                this.code.op(Bytecode.IALOAD);
+                push();
+                break;
+            default:
+                throw new IllegalStateException(String.format("%s cannot be compiled", opCode.name()));
+        }
+    }
+
+    private void arithmetic(int opcode) {
+        load(2);
+        this.code.op(opcode);
+        push();
+    }
+
+    private void comparison(int opcode) {
+        load(2);
+        condition(opcode);
+        push();
+    }
+
+    // Replaces the operands of a branch instruction with 1 when it would branch, and 0 otherwise
+    private void condition(int opcode) {
+        int holds = this.code.newLabel();
+        int end = this.code.newLabel();
+
+        this.code.branch(opcode, holds);
+        iconst(0);
+        this.code.branch(Bytecode.GOTO, end);
+        this.code.bind(holds);
+        iconst(1);
+        this.code.bind(end);
+    }
+
+    // Both operands of AND and OR are in the scratch locals, and are evaluated like SM does, without short circuiting
+    private void logical(boolean and) {
+        int decided = this.code.newLabel();
+        int end = this.code.newLabel();
+        int branch = and ? Bytecode.IFEQ : Bytecode.IFNE;
+
+        this.code.iload(this.scratch);
+        this.code.branch(branch, decided);
+        this.code.iload(this.scratch + 1);
+        this.code.branch(branch, decided);
+        iconst(and ? 1 : 0);
+        this.code.branch(Bytecode.GOTO, end);
+        this.code.bind(decided);
+        iconst(and ? 0 : 1);
+        this.code.bind(end);
+    }
+
+    // Moves the top count values of the SM stack onto the JVM stack, the deepest first. Values that are not in JVM
+    // locals are popped from memory.
+    private void load(int count) {
+        int fromLocals = Math.min(count, this.depth);
+        int fromMemory = count - fromLocals;
+
+        for (int i = fromMemory - 1; i >= 0; i--) {
+            this.code.aload(M);
+            this.code.iload(SP);
+
+            if (i > 0) {
+                iconst(i);
+                this.code.op(Bytecode.ISUB);
+            }
+
+            this.code.op(Bytecode.IALOAD);
+        }
+
+        if (fromMemory > 0) {
+            addToSp(-fromMemory);
+        }
+
+        for (int i = this.depth - fromLocals; i < this.depth; i++) {
+            this.code.iload(OPERANDS + i);
+        }
+
+        this.depth -= fromLocals;
+    }
+
+    // Makes the value on the JVM stack the new top of the SM stack
+    private void push() {
+        this.code.istore(OPERANDS + this.depth);
+        this.depth++;
+    }
+
+    // Writes the values in JVM locals to memory, above the top of the stack
+    private void flush() {
+        if (this.depth == 0) {
+            return;
+        }
+
+        reserve(this.depth);
+
+        for (int i = 0; i < this.depth; i++) {
+            this.code.aload(M);
+            this.code.iload(SP);
+            iconst(i + 1);
+            this.code.op(Bytecode.IADD);
+            this.code.iload(OPERANDS + i);
+            this.code.op(Bytecode.IASTORE);
+        }
+
+        addToSp(this.depth);
+        this.depth = 0;
+    }
+
+    // Grows memory unless it already has room for cells more values
+    private void reserve(int cells) {
+        int enough = this.code.newLabel();
+
+        this.code.iload(SP);
+        iconst(cells);
+        this.code.op(Bytecode.IADD);
+        this.code.aload(M);
+        this.code.op(Bytecode.ARRAYLENGTH);
+        this.code.branch(Bytecode.IF_ICMPLT, enough);
+        this.code.aload(INTERPRETER_LOCAL);
+        this.code.iload(SP);
+        iconst(cells);
+        this.code.op(Bytecode.IADD);
+        this.code.op(Bytecode.INVOKEVIRTUAL, this.classWriter.methodReference(INTERPRETER, "grow", "(I)[I"));
+        this.code.astore(M);
+        this.code.bind(enough);
+    }
+
+    private void addToSp(int amount) {
+        if (amount == 0) {
+            return;
+        }
+
+        if (amount >= Byte.MIN_VALUE && amount <= Byte.MAX_VALUE) {
+            this.code.iinc(SP, amount);
+        } else {
+            this.code.iload(SP);
+            iconst(amount);
+            this.code.op(Bytecode.IADD);
+            this.code.istore(SP);
+        }
+    }
+
+    private void display(int level) {
+        this.code.aload(D);
+        iconst(level);
+        this.code.op(Bytecode.IALOAD);
+    }
+
+    private void address(int level, int displacement) {
+        display(level);
+
+        if (displacement != 0) {
+            iconst(displacement);
+            this.code.op(Bytecode.IADD);
+        }
+    }
+
+    private void iconst(int value) {
+        this.code.iconst(value, this.classWriter);
+    }
+
+    private OpCode opCode(int index) {
+        return OPCODES[this.image.code[index * Image.WIDTH]];
+    }
+
+    private int argument(int index) {
+        return this.image.code[index * Image.WIDTH + 1];
+    }
+}
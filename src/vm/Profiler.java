@@ -0,0 +1,211 @@
+package vm;
+
+import generator.OpCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Runs an Image like the HandlerInterpreter while counting where it spends its time: how often each instruction runs,
+// how often each conditional jump is taken, and for each procedure how often it is called and how many instructions
+// run in it (exclusive) and in it or anything it calls (inclusive). Procedures are keyed by the label they start at,
+// the one the Generator assigns to their Symbol. Instructions outside any procedure are counted under TOP_LEVEL. A tail
+// call counts as a call of the callee, and ends the procedure making it.
+public class Profiler implements Engine {
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    public static final String TOP_LEVEL = "(top level)";
+
+    private final InputStream in;
+    private final PrintStream out;
+
+    private Image image;
+    private long total;
+
+    // Indexed by instruction
+    private long[] counts;
+    private long[] taken;
+    private long[] notTaken;
+
+    // Indexed by the instruction each procedure starts at, with the top level at 0
+    private long[] calls;
+    private long[] inclusive;
+    private long[] exclusive;
+    private int[] active;
+
+    // The procedures being run and the total when each was called, innermost last
+    private int[] entries;
+    private long[] starts;
+    private int depth;
+
+    public Profiler(InputStream in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    @Override
+    public void run(Image image) throws VMException {
+        Handler[] handlers = new Handler[image.size()];
+        OpCode[] opCodes = new OpCode[image.size()];
+
+        for (int i = 0; i < handlers.length; i++) {
+            int offset = i * Image.WIDTH;
+            opCodes[i] = OPCODES[image.code[offset]];
+            handlers[i] = Handlers.of(opCodes[i], image.code[offset + 1], image.code[offset + 2]);
+        }
+
+        reset(image);
+        Machine machine = new Machine(new Input(this.in), this.out, image.levels);
+        int pc = 0;
+
+        try {
+            while (!machine.halted) {
+                pc = machine.pc++;
+
+                // Procedures are entered at their PROC, which both a CALL and the JMP of a tail call lead to
+                if (opCodes[pc] == OpCode.PROC) {
+                    enter(pc);
+                }
+
+                handlers[pc].execute(machine);
+
+                this.total++;
+                this.counts[pc]++;
+                this.exclusive[this.entries[this.depth - 1]]++;
+
+                if (opCodes[pc].isConditionalJump()) {
+                    if (machine.pc == pc + 1) {
+                        this.notTaken[pc]++;
+                    } else {
+                        this.taken[pc]++;
+                    }
+                } else if (opCodes[pc] == OpCode.JMP && opCodes[machine.pc] == OpCode.PROC && this.depth > 1) {
+                    // A tail call replaces the procedure making it, so the callee returns straight to its caller
+                    exit();
+                } else if (opCodes[pc] == OpCode.RET && this.depth > 1) {
+                    exit();
+                }
+            }
+
+            while (this.depth > 0) {
+                exit();
+            }
+        } catch (ArithmeticException e) {
+            throw new VMException(String.format("Division by zero at instruction %d", pc));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new VMException(String.format("Invalid memory access at instruction %d", pc));
+        } finally {
+            this.out.flush();
+        }
+    }
+
+    private void reset(Image image) {
+        this.image = image;
+        this.total = 0;
+        this.counts = new long[image.size()];
+        this.taken = new long[image.size()];
+        this.notTaken = new long[image.size()];
+        this.calls = new long[image.size()];
+        this.inclusive = new long[image.size()];
+        this.exclusive = new long[image.size()];
+        this.active = new int[image.size()];
+        this.entries = new int[16];
+        this.starts = new long[16];
+        this.depth = 0;
+
+        enter(0);
+    }
+
+    private void enter(int entry) {
+        if (this.depth == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, this.depth * 2);
+            this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+        }
+
+        this.entries[this.depth] = entry;
+        this.starts[this.depth] = this.total;
+        this.depth++;
+
+        this.calls[entry]++;
+        this.active[entry]++;
+    }
+
+    // Only the outermost of recursive calls adds to the inclusive total, so no instruction is counted twice
+    private void exit() {
+        this.depth--;
+        int entry = this.entries[this.depth];
+
+        if (--this.active[entry] == 0) {
+            this.inclusive[entry] += this.total - this.starts[this.depth];
+        }
+    }
+
+    // Writes what the last run counted as JSON. Procedures and instructions that never ran are left out.
+    public void write(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+
+        out.println("{");
+        out.printf("  \"instructions\": %d,%n", this.total);
+
+        out.println("  \"procedures\": [");
+        String separator = "";
+
+        for (int i = 0; i < this.image.size(); i++) {
+            if (this.calls[i] == 0) {
+                continue;
+            }
+
+            out.print(separator);
+            out.printf("    { \"label\": %s, \"instruction\": %d, \"calls\": %d, \"inclusive\": %d, \"exclusive\": %d }",
+                    quote(i == 0 ? TOP_LEVEL : this.image.labels[i]), i, this.calls[i], this.inclusive[i], this.exclusive[i]);
+            separator = String.format(",%n");
+        }
+
+        out.println();
+        out.println("  ],");
+
+        out.println("  \"branches\": [");
+        separator = "";
+
+        for (int i = 0; i < this.image.size(); i++) {
+            if (this.counts[i] == 0 || !OPCODES[this.image.code[i * Image.WIDTH]].isConditionalJump()) {
+                continue;
+            }
+
+            out.print(separator);
+            out.printf("    { \"instruction\": %d, \"opCode\": %s, \"target\": %s, \"taken\": %d, \"notTaken\": %d }",
+                    i, quote(OPCODES[this.image.code[i * Image.WIDTH]].name()), quote(this.image.labels[this.image.code[i * Image.WIDTH + 1]]),
+                    this.taken[i], this.notTaken[i]);
+            separator = String.format(",%n");
+        }
+
+        out.println();
+        out.println("  ],");
+
+        out.println("  \"counts\": [");
+        separator = "";
+
+        for (int i = 0; i < this.image.size(); i++) {
+            if (this.counts[i] == 0) {
+                continue;
+            }
+
+            out.print(separator);
+            out.printf("    { \"instruction\": %d, \"label\": %s, \"opCode\": %s, \"count\": %d }",
+                    i, quote(this.image.labels[i]), quote(OPCODES[this.image.code[i * Image.WIDTH]].name()), this.counts[i]);
+            separator = String.format(",%n");
+        }
+
+        out.println();
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
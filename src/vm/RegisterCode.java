@@ -0,0 +1,37 @@
+package vm;
+
+// Code for the RegisterInterpreter, WIDTH ints per instruction: the ordinal of its RegisterOp and three operands.
+//
+// An operand naming a memory cell holds a base in its low 8 bits, 0 for the stack pointer or 1 + level for a display
+// entry, and a signed offset from that base in the rest.
+public class RegisterCode {
+    public static final int WIDTH = 4;
+    public static final int BASE_BITS = 8;
+    public static final int BASE_MASK = (1 << BASE_BITS) - 1;
+
+    public final int[] code;
+
+    // The index of the SM instruction each instruction was translated from, for reporting errors
+    public final int[] origins;
+
+    // How far above the stack pointer the code writes, at most
+    public final int margin;
+
+    public RegisterCode(int[] code, int[] origins, int margin) {
+        this.code = code;
+        this.origins = origins;
+        this.margin = margin;
+    }
+
+    public int size() {
+        return this.origins.length;
+    }
+
+    public static int slot(int position) {
+        return position << BASE_BITS;
+    }
+
+    public static int variable(int level, int displacement) {
+        return (displacement << BASE_BITS) | (level + 1);
+    }
+}
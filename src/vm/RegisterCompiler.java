@@ -0,0 +1,299 @@
+package vm;
+
+import generator.OpCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Translates the stack code of an Image into RegisterCode, a basic block at a time. Within a block, the stack is
+// followed symbolically: a constant or variable that is pushed is used where it is, by the instruction that pops it,
+// and a computed value is written straight to the stack slot it would have been pushed to, counted from the stack
+// pointer at the start of the block. Only at the end of a block, or before an instruction that uses the stack itself,
+// are the values left on the stack written to their slots and the stack pointer moved, once.
+//
+// Constants and variables are not copied to the stack as they are pushed, so memory above the top of the stack is not
+// left as the Interpreter leaves it, which only shows in programs that read variables they never assigned.
+public class RegisterCompiler {
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    private final Image image;
+
+    private int[] code;
+    private int[] origins;
+    private int size;
+    private int margin;
+    private int origin;
+
+    // The index of each jump's target field, and the SM instruction it targets
+    private final List<int[]> jumps;
+
+    // What the stack of the block holds above the position the stack pointer started at, or below it once popped
+    // past. Positions without an entry hold their own slot.
+    private final Map<Integer, Entry> stack;
+    private int top;
+
+    public RegisterCompiler(Image image) {
+        this.image = image;
+        this.jumps = new ArrayList<>();
+        this.stack = new HashMap<>();
+    }
+
+    public RegisterCode compile() {
+        this.code = new int[Math.max(image.size(), 1) * RegisterCode.WIDTH];
+        this.origins = new int[Math.max(image.size(), 1)];
+        this.size = 0;
+        this.margin = 2;
+        this.jumps.clear();
+        this.stack.clear();
+        this.top = 0;
+
+        boolean[] leaders = BlockCompiler.leaders(this.image);
+        int[] starts = new int[this.image.size()];
+
+        for (int i = 0; i < this.image.size(); i++) {
+            if (leaders[i]) {
+                flush();
+            }
+
+            starts[i] = this.size;
+            this.origin = i;
+
+            int offset = i * Image.WIDTH;
+            translate(OPCODES[this.image.code[offset]], this.image.code[offset + 1], this.image.code[offset + 2]);
+        }
+
+        flush();
+
+        for (int[] jump : this.jumps) {
+            this.code[jump[0]] = starts[jump[1]];
+        }
+
+        return new RegisterCode(Arrays.copyOf(this.code, this.size * RegisterCode.WIDTH), Arrays.copyOf(this.origins, this.size), this.margin);
+    }
+
+    private void translate(OpCode opCode, int a1, int a2) {
+        switch (opCode) {
+            case NOP:
+                return;
+            case LDC:
+                push(new Entry(true, a1));
+                return;
+            case LDV:
+                push(new Entry(false, RegisterCode.variable(a1, a2)));
+                return;
+            case LDA:
+                emit(RegisterOp.ADDR, slot(this.top + 1), a1, a2);
+                push(null);
+                return;
+            case LDI:
+                emit(RegisterOp.LOADI, slot(this.top + 1), RegisterCode.variable(a1, a2), 0);
+                push(null);
+                return;
+            case IN:
+                emit(RegisterOp.IN, slot(this.top + 1), 0, 0);
+                push(null);
+                return;
+            case DUP:
+                push(entry(this.top));
+                return;
+            case POP:
+                pop();
+                return;
+            case NEG:
+            case NOT:
+            case IND: {
+                int position = this.top;
+                int x = register(pop(), position);
+                emit(opCode == OpCode.NEG ? RegisterOp.NEG : opCode == OpCode.NOT ? RegisterOp.NOT : RegisterOp.LOADI, slot(position), x, 0);
+                push(null);
+                return;
+            }
+            case ST: {
+                int variable = RegisterCode.variable(a1, a2);
+                Entry x = pop();
+                materializeReads(variable);
+                emit(x.constant ? RegisterOp.MOVI : RegisterOp.MOV, variable, x.value, 0);
+                return;
+            }
+            case STI: {
+                int x = register(pop(), this.top + 1);
+                materializeReads(-1);
+                emit(RegisterOp.STOREI, RegisterCode.variable(a1, a2), x, 0);
+                return;
+            }
+            case STL: {
+                int value = register(pop(), this.top + 1);
+                int address = register(pop(), this.top + 1);
+                materializeReads(-1);
+                emit(RegisterOp.STOREI, address, value, 0);
+                return;
+            }
+            case OUT:
+                emit(RegisterOp.OUT, register(pop(), this.top + 1), 0, 0);
+                return;
+            case JMP:
+                flush();
+                jump(RegisterOp.JMP, 0, 0, a1);
+                return;
+            case JMPF:
+            case JMPT: {
+                int x = register(pop(), this.top + 1);
+                int adjustment = flush();
+                jump(opCode == OpCode.JMPF ? RegisterOp.JF : RegisterOp.JT, rebase(x, adjustment), 0, a1);
+                return;
+            }
+            default:
+                break;
+        }
+
+        if (opCode.isComparisonJump()) {
+            Entry y = pop();
+            int x = register(pop(), this.top + 1);
+            int right = y.constant ? y.value : register(y, this.top + 2);
+            int adjustment = flush();
+            RegisterOp registerOp = RegisterOp.valueOf(opCode.name() + (y.constant ? "I" : ""));
+            jump(registerOp, rebase(x, adjustment), y.constant ? right : rebase(right, adjustment), a1);
+            return;
+        }
+
+        // ADD to GE, past NEG and NOT above
+        if (opCode.ordinal() <= OpCode.GE.ordinal()) {
+            binary(opCode);
+            return;
+        }
+
+        // INIT, HALT, ALLOC, CALL, PROC, ENTER, EXIT and RET
+        flush();
+        RegisterOp registerOp = RegisterOp.valueOf(opCode.name());
+
+        if (registerOp == RegisterOp.CALL) {
+            jump(registerOp, 0, 0, a1);
+        } else {
+            emit(registerOp, a1, a2, 0);
+        }
+    }
+
+    // An immediate right operand is kept as such where there is an instruction taking one
+    private void binary(OpCode opCode) {
+        Entry y = pop();
+        int position = this.top;
+        int x = register(pop(), position);
+        boolean immediate = y.constant && opCode != OpCode.AND && opCode != OpCode.OR;
+        int right = immediate ? y.value : register(y, position + 1);
+
+        emit(RegisterOp.valueOf(opCode.name() + (immediate ? "I" : "")), slot(position), x, right);
+        push(null);
+    }
+
+    private static final class Entry {
+        final boolean constant;
+        final int value;
+
+        Entry(boolean constant, int value) {
+            this.constant = constant;
+            this.value = value;
+        }
+    }
+
+    private Entry entry(int position) {
+        Entry entry = this.stack.get(position);
+        return entry != null ? entry : new Entry(false, RegisterCode.slot(position));
+    }
+
+    // A null entry is a value computed into its own slot
+    private void push(Entry entry) {
+        this.top++;
+
+        if (entry == null) {
+            this.stack.remove(this.top);
+        } else {
+            this.stack.put(this.top, entry);
+        }
+    }
+
+    private Entry pop() {
+        Entry entry = entry(this.top);
+        this.stack.remove(this.top);
+        this.top--;
+        return entry;
+    }
+
+    // The entry as a memory operand, writing a constant to the slot at position first
+    private int register(Entry entry, int position) {
+        if (!entry.constant) {
+            return entry.value;
+        }
+
+        emit(RegisterOp.MOVI, slot(position), entry.value, 0);
+        return slot(position);
+    }
+
+    private int slot(int position) {
+        this.margin = Math.max(this.margin, position + 1);
+        return RegisterCode.slot(position);
+    }
+
+    // Copies variables still waiting on the stack to their slots before a store may change them: any variable, or
+    // only the given one
+    private void materializeReads(int variable) {
+        for (Map.Entry<Integer, Entry> entry : new ArrayList<>(this.stack.entrySet())) {
+            Entry value = entry.getValue();
+
+            if (!value.constant && (value.value & RegisterCode.BASE_MASK) != 0 && (variable == -1 || value.value == variable)) {
+                emit(RegisterOp.MOV, slot(entry.getKey()), value.value, 0);
+                this.stack.remove(entry.getKey());
+            }
+        }
+    }
+
+    // Writes what the block left on the stack to its slots and moves the stack pointer past it, returning by how much
+    private int flush() {
+        for (Map.Entry<Integer, Entry> entry : this.stack.entrySet()) {
+            Entry value = entry.getValue();
+            int slot = slot(entry.getKey());
+
+            if (value.constant) {
+                emit(RegisterOp.MOVI, slot, value.value, 0);
+            } else if (value.value != slot) {
+                emit(RegisterOp.MOV, slot, value.value, 0);
+            }
+        }
+
+        int adjustment = this.top;
+        this.stack.clear();
+        this.top = 0;
+
+        if (adjustment != 0) {
+            emit(RegisterOp.ADJ, adjustment, 0, 0);
+        }
+
+        return adjustment;
+    }
+
+    // An operand relative to the stack pointer, after the stack pointer moved by adjustment
+    private int rebase(int operand, int adjustment) {
+        return (operand & RegisterCode.BASE_MASK) == 0 ? operand - RegisterCode.slot(adjustment) : operand;
+    }
+
+    private void jump(RegisterOp registerOp, int x, int y, int target) {
+        this.jumps.add(new int[] { this.size * RegisterCode.WIDTH + 3, target });
+        emit(registerOp, x, y, 0);
+    }
+
+    private void emit(RegisterOp registerOp, int a, int b, int c) {
+        if (this.size == this.origins.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+            this.origins = Arrays.copyOf(this.origins, this.origins.length * 2);
+        }
+
+        int offset = this.size * RegisterCode.WIDTH;
+        this.code[offset] = registerOp.ordinal();
+        this.code[offset + 1] = a;
+        this.code[offset + 2] = b;
+        this.code[offset + 3] = c;
+        this.origins[this.size++] = this.origin;
+    }
+}
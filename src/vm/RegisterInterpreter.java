@@ -0,0 +1,241 @@
+package vm;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// Runs an Image by translating it to RegisterCode first. Each instruction reads and writes memory cells named by its
+// operands, so expressions take as many instructions as they have operators rather than one per value pushed.
+public class RegisterInterpreter implements Engine {
+    private static final RegisterOp[] OPS = RegisterOp.values();
+    private static final int INITIAL_MEMORY = 1024;
+
+    private final InputStream in;
+    private final PrintStream out;
+
+    public RegisterInterpreter(InputStream in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    @Override
+    public void run(Image image) throws VMException {
+        RegisterCode registerCode = new RegisterCompiler(image).compile();
+        int[] code = registerCode.code;
+        int margin = registerCode.margin;
+        Input input = new Input(this.in);
+
+        // r[0] is the stack pointer and r[1 + level] the display entry for level, the bases operands are relative to
+        int[] r = new int[image.levels + 1];
+        int[] m = new int[Math.max(INITIAL_MEMORY, margin + 1)];
+        int pc = 0;
+
+        try {
+            while (true) {
+                int offset = pc * RegisterCode.WIDTH;
+                int a = code[offset + 1];
+                int b = code[offset + 2];
+                int c = code[offset + 3];
+                pc++;
+
+                switch (OPS[code[offset]]) {
+                    case MOV:
+                        m[address(r, a)] = m[address(r, b)];
+                        break;
+                    case MOVI:
+                        m[address(r, a)] = b;
+                        break;
+                    case ADDR:
+                        m[address(r, a)] = r[b + 1] + c;
+                        break;
+                    case LOADI:
+                        m[address(r, a)] = m[m[address(r, b)]];
+                        break;
+                    case STOREI:
+                        m[m[address(r, a)]] = m[address(r, b)];
+                        break;
+                    case ADD:
+                        m[address(r, a)] = m[address(r, b)] + m[address(r, c)];
+                        break;
+                    case SUB:
+                        m[address(r, a)] = m[address(r, b)] - m[address(r, c)];
+                        break;
+                    case MULT:
+                        m[address(r, a)] = m[address(r, b)] * m[address(r, c)];
+                        break;
+                    case DIV:
+                        m[address(r, a)] = m[address(r, b)] / m[address(r, c)];
+                        break;
+                    case MOD:
+                        m[address(r, a)] = m[address(r, b)] % m[address(r, c)];
+                        break;
+                    case AND:
+                        m[address(r, a)] = m[address(r, b)] != 0 && m[address(r, c)] != 0 ? 1 : 0;
+                        break;
+                    case OR:
+                        m[address(r, a)] = m[address(r, b)] != 0 || m[address(r, c)] != 0 ? 1 : 0;
+                        break;
+                    case EQ:
+                        m[address(r, a)] = m[address(r, b)] == m[address(r, c)] ? 1 : 0;
+                        break;
+                    case NE:
+                        m[address(r, a)] = m[address(r, b)] != m[address(r, c)] ? 1 : 0;
+                        break;
+                    case LT:
+                        m[address(r, a)] = m[address(r, b)] < m[address(r, c)] ? 1 : 0;
+                        break;
+                    case GT:
+                        m[address(r, a)] = m[address(r, b)] > m[address(r, c)] ? 1 : 0;
+                        break;
+                    case LE:
+                        m[address(r, a)] = m[address(r, b)] <= m[address(r, c)] ? 1 : 0;
+                        break;
+                    case GE:
+                        m[address(r, a)] = m[address(r, b)] >= m[address(r, c)] ? 1 : 0;
+                        break;
+                    case ADDI:
+                        m[address(r, a)] = m[address(r, b)] + c;
+                        break;
+                    case SUBI:
+                        m[address(r, a)] = m[address(r, b)] - c;
+                        break;
+                    case MULTI:
+                        m[address(r, a)] = m[address(r, b)] * c;
+                        break;
+                    case DIVI:
+                        m[address(r, a)] = m[address(r, b)] / c;
+                        break;
+                    case MODI:
+                        m[address(r, a)] = m[address(r, b)] % c;
+                        break;
+                    case EQI:
+                        m[address(r, a)] = m[address(r, b)] == c ? 1 : 0;
+                        break;
+                    case NEI:
+                        m[address(r, a)] = m[address(r, b)] != c ? 1 : 0;
+                        break;
+                    case LTI:
+                        m[address(r, a)] = m[address(r, b)] < c ? 1 : 0;
+                        break;
+                    case GTI:
+                        m[address(r, a)] = m[address(r, b)] > c ? 1 : 0;
+                        break;
+                    case LEI:
+                        m[address(r, a)] = m[address(r, b)] <= c ? 1 : 0;
+                        break;
+                    case GEI:
+                        m[address(r, a)] = m[address(r, b)] >= c ? 1 : 0;
+                        break;
+                    case NEG:
+                        m[address(r, a)] = -m[address(r, b)];
+                        break;
+                    case NOT:
+                        m[address(r, a)] = m[address(r, b)] == 0 ? 1 : 0;
+                        break;
+                    case IN:
+                        m[address(r, a)] = input.readInteger();
+                        break;
+                    case OUT:
+                        this.out.println(m[address(r, a)]);
+                        break;
+                    case JMP:
+                        pc = c;
+                        break;
+                    case JF:
+                        if (m[address(r, a)] == 0) pc = c;
+                        break;
+                    case JT:
+                        if (m[address(r, a)] != 0) pc = c;
+                        break;
+                    case JLT:
+                        if (m[address(r, a)] < m[address(r, b)]) pc = c;
+                        break;
+                    case JLE:
+                        if (m[address(r, a)] <= m[address(r, b)]) pc = c;
+                        break;
+                    case JGT:
+                        if (m[address(r, a)] > m[address(r, b)]) pc = c;
+                        break;
+                    case JGE:
+                        if (m[address(r, a)] >= m[address(r, b)]) pc = c;
+                        break;
+                    case JEQ:
+                        if (m[address(r, a)] == m[address(r, b)]) pc = c;
+                        break;
+                    case JNE:
+                        if (m[address(r, a)] != m[address(r, b)]) pc = c;
+                        break;
+                    case JLTI:
+                        if (m[address(r, a)] < b) pc = c;
+                        break;
+                    case JLEI:
+                        if (m[address(r, a)] <= b) pc = c;
+                        break;
+                    case JGTI:
+                        if (m[address(r, a)] > b) pc = c;
+                        break;
+                    case JGEI:
+                        if (m[address(r, a)] >= b) pc = c;
+                        break;
+                    case JEQI:
+                        if (m[address(r, a)] == b) pc = c;
+                        break;
+                    case JNEI:
+                        if (m[address(r, a)] != b) pc = c;
+                        break;
+                    case ADJ:
+                        r[0] += a;
+                        m = grow(m, r[0] + margin);
+                        break;
+                    case INIT:
+                        r[0] = 0;
+                        r[1] = 0;
+                        break;
+                    case HALT:
+                        return;
+                    case ALLOC:
+                        r[0] += a;
+                        m = grow(m, r[0] + margin);
+                        break;
+                    case CALL:
+                        m = grow(m, r[0] + 1 + margin);
+                        m[++r[0]] = pc;
+                        pc = c;
+                        break;
+                    case PROC:
+                    case ENTER:
+                        m = grow(m, r[0] + 1 + margin);
+                        m[++r[0]] = r[a + 1];
+                        r[a + 1] = r[0];
+                        break;
+                    case EXIT:
+                        r[a + 1] = m[r[0]--];
+                        break;
+                    case RET:
+                        r[a + 1] = m[r[0]--];
+                        pc = m[r[0]--];
+                        break;
+                }
+            }
+        } catch (ArithmeticException e) {
+            throw new VMException(String.format("Division by zero at instruction %d", registerCode.origins[pc - 1]));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new VMException(String.format("Invalid memory access at instruction %d", registerCode.origins[pc - 1]));
+        } finally {
+            this.out.flush();
+        }
+    }
+
+    private static int address(int[] r, int operand) {
+        return r[operand & RegisterCode.BASE_MASK] + (operand >> RegisterCode.BASE_BITS);
+    }
+
+    // Memory, with room for a value at top
+    private static int[] grow(int[] m, int top) {
+        if (top >= m.length) {
+            return Arrays.copyOf(m, Math.max(m.length * 2, top + 1));
+        }
+
+        return m;
+    }
+}
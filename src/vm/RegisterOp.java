@@ -0,0 +1,79 @@
+package vm;
+
+// The instructions of RegisterCode. Operands name memory cells directly, relative to the stack pointer or to a display
+// entry, instead of going through the top of the stack. Immediates and targets are plain ints.
+public enum RegisterOp {
+    // dst = src, dst = immediate, dst = d[level] + displacement
+    MOV,
+    MOVI,
+    ADDR,
+
+    // dst = m[src], and m[address] = src
+    LOADI,
+    STOREI,
+
+    // dst = x op y
+    ADD,
+    SUB,
+    MULT,
+    DIV,
+    MOD,
+    AND,
+    OR,
+    EQ,
+    NE,
+    LT,
+    GT,
+    LE,
+    GE,
+
+    // dst = x op immediate
+    ADDI,
+    SUBI,
+    MULTI,
+    DIVI,
+    MODI,
+    EQI,
+    NEI,
+    LTI,
+    GTI,
+    LEI,
+    GEI,
+
+    // dst = op src
+    NEG,
+    NOT,
+
+    IN,
+    OUT,
+
+    // Jumps to target when src is zero, non-zero, or when x and y, or x and an immediate, compare as the opcode says
+    JMP,
+    JF,
+    JT,
+    JLT,
+    JLE,
+    JGT,
+    JGE,
+    JEQ,
+    JNE,
+    JLTI,
+    JLEI,
+    JGTI,
+    JGEI,
+    JEQI,
+    JNEI,
+
+    // sp += amount, when a block leaves values on the stack or takes them off it
+    ADJ,
+
+    // The SM instructions that use the stack itself, run as the Interpreter runs them
+    INIT,
+    HALT,
+    ALLOC,
+    CALL,
+    PROC,
+    ENTER,
+    EXIT,
+    RET
+}
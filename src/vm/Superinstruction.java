@@ -0,0 +1,144 @@
+package vm;
+
+import generator.OpCode;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Sequences of instructions that the Interpreter runs with a single dispatch. They were chosen from how often each
+// sequence executes when running the inputs/*.cmm programs, at -O0 and -O1, and are listed longest first since that
+// is the order they are tried in.
+public enum Superinstruction {
+    // x = y + c, and x = y - c with c negated
+    LDV_LDC_ADD_ST(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDC), EnumSet.of(OpCode.ADD, OpCode.SUB), EnumSet.of(OpCode.ST)),
+
+    // Loop conditions when comparisons are not turned into jumps
+    LDV_LDC_COMPARE_JMPF(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDC), EnumSet.range(OpCode.EQ, OpCode.GE), EnumSet.of(OpCode.JMPF)),
+    LDV_LDV_COMPARE_JMPF(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDV), EnumSet.range(OpCode.EQ, OpCode.GE), EnumSet.of(OpCode.JMPF)),
+
+    // Reading an array element, whose address is either a slot or a reference
+    LDV_LDV_ADD_IND(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.ADD), EnumSet.of(OpCode.IND)),
+    LDA_LDV_ADD_IND(EnumSet.of(OpCode.LDA), EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.ADD), EnumSet.of(OpCode.IND)),
+
+    // Loop conditions when comparisons are turned into jumps
+    LDV_LDC_JUMP(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDC), EnumSet.range(OpCode.JLT, OpCode.JNE)),
+    LDV_LDV_JUMP(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDV), EnumSet.range(OpCode.JLT, OpCode.JNE)),
+
+    LDV_LDV_ADD(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.ADD)),
+    LDV_LDC_ADD(EnumSet.of(OpCode.LDV), EnumSet.of(OpCode.LDC), EnumSet.of(OpCode.ADD, OpCode.SUB)),
+
+    // Procedure prologue and epilogue
+    PROC_ALLOC(EnumSet.of(OpCode.PROC), EnumSet.of(OpCode.ALLOC)),
+    ALLOC_RET(EnumSet.of(OpCode.ALLOC), EnumSet.of(OpCode.RET));
+
+    private static final OpCode[] OPCODES = OpCode.values();
+    private static final Superinstruction[] SUPERINSTRUCTIONS = Superinstruction.values();
+
+    // Superinstructions are numbered after the opcodes
+    public static final int FIRST = OPCODES.length;
+
+    private final Set<OpCode>[] pattern;
+
+    @SafeVarargs
+    Superinstruction(Set<OpCode>... pattern) {
+        this.pattern = pattern;
+    }
+
+    public int length() {
+        return this.pattern.length;
+    }
+
+    public static Superinstruction of(int opCode) {
+        return SUPERINSTRUCTIONS[opCode - FIRST];
+    }
+
+    // A copy of the image's code in which the first instruction of every sequence is replaced by its superinstruction.
+    // The rest of the sequence is left in place to hold its operands, so the Image itself, and the .sm or .smb file it
+    // came from, are unchanged.
+    public static int[] fuse(Image image) {
+        int[] code = image.code.clone();
+        int i = 0;
+
+        while (i < image.size()) {
+            Superinstruction superinstruction = find(image, i);
+
+            if (superinstruction == null) {
+                i++;
+                continue;
+            }
+
+            int offset = i * Image.WIDTH;
+            code[offset] = FIRST + superinstruction.ordinal();
+
+            // Subtracting a constant is adding its negation. The constant itself is kept in the unused second operand of
+            // LDC, since it is what the sequence leaves on the stack.
+            if (superinstruction == LDV_LDC_ADD_ST || superinstruction == LDV_LDC_ADD) {
+                code[offset + Image.WIDTH + 2] = code[offset + Image.WIDTH + 1];
+
+                if (code[offset + 2 * Image.WIDTH] == OpCode.SUB.ordinal()) {
+                    code[offset + Image.WIDTH + 1] = -code[offset + Image.WIDTH + 1];
+                }
+            }
+
+            i += superinstruction.length();
+        }
+
+        return code;
+    }
+
+    private static Superinstruction find(Image image, int index) {
+        for (Superinstruction superinstruction : SUPERINSTRUCTIONS) {
+            if (superinstruction.matches(image, index)) {
+                return superinstruction;
+            }
+        }
+
+        return null;
+    }
+
+    // Only the first instruction of a sequence may be the target of a jump or call
+    private boolean matches(Image image, int index) {
+        if (index + this.pattern.length > image.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < this.pattern.length; i++) {
+            if (!this.pattern[i].contains(OPCODES[image.code[(index + i) * Image.WIDTH]])) {
+                return false;
+            }
+
+            if (i > 0 && image.labels[index + i] != null) {
+                return false;
+            }
+        }
+
+        // Only a frame being released can be fused with the return, since RET reads the stack right after it
+        return this != ALLOC_RET || image.code[index * Image.WIDTH + 1] <= 0;
+    }
+
+    // Whether a comparison, or the comparison a jump makes, holds between two values
+    public static boolean holds(int opCode, int left, int right) {
+        switch (OPCODES[opCode]) {
+            case EQ:
+            case JEQ:
+                return left == right;
+            case NE:
+            case JNE:
+                return left != right;
+            case LT:
+            case JLT:
+                return left < right;
+            case GT:
+            case JGT:
+                return left > right;
+            case LE:
+            case JLE:
+                return left <= right;
+            case GE:
+            case JGE:
+                return left >= right;
+            default:
+                return false;
+        }
+    }
+}
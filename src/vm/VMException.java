@@ -0,0 +1,5 @@
+package vm;
+
+public class VMException extends Exception {
+    public VMException(String message) { super(message); }
+}